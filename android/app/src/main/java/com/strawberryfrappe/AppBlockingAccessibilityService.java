@@ -2,125 +2,728 @@ package com.strawberryfrappe;
 
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.os.Build;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
 
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Accessibility Service for detecting and blocking specified apps
  * Monitors app launches and automatically closes blocked apps during active sessions
+ * Also meters foreground time for apps with a daily budget, with or without a session.
+ * Blocked attempts (and, with switch analytics enabled, foreground switches) are published
+ * on the BlockingEventBus; persistence, the JS bridge and analytics consume them there.
+ * Content changes are subscribed to only while a session is active and domains are blocked,
+ * and are dropped at once unless they come from a known browser; browsers are then checked
+ * for a blocked domain in their URL bar at most every DOMAIN_CHECK_INTERVAL_MS.
+ * During sessions, window set changes are diffed too (VisibleWindows), so blocked apps in
+ * split-screen, freeform or picture-in-picture are caught and covered one window at a time.
  */
 public class AppBlockingAccessibilityService extends AccessibilityService {
+    private static final long BUDGET_CHECKPOINT_INTERVAL_MS = 60 * 1000;
+    // Browsers redraw continuously while loading; check the URL bar at most this often
+    private static final long DOMAIN_CHECK_INTERVAL_MS = 250;
+    // Window events of an app being sent HOME within this time are not new attempts
+    private static final long HOME_SETTLE_MS = 1000;
+    // Window set changes that can reveal an app window; focus and title changes cannot
+    private static final int RELEVANT_WINDOW_CHANGES = AccessibilityEvent.WINDOWS_CHANGE_ADDED
+        | AccessibilityEvent.WINDOWS_CHANGE_REMOVED
+        | AccessibilityEvent.WINDOWS_CHANGE_BOUNDS
+        | AccessibilityEvent.WINDOWS_CHANGE_LAYER
+        | AccessibilityEvent.WINDOWS_CHANGE_PIP;
     private static final String PREFS_NAME = "app_blocking_prefs";
-    private static final String KEY_BLOCKED_APPS = "blocked_apps";
-    private static final String KEY_BLOCKING_END_TIME = "blocking_end_time";
+    private static final String KEY_ENFORCEMENT_MODE = "enforcement_mode";
+    private static final String KEY_SELECTED_APPS = "selected_apps_for_blocking";
+    private static final String KEY_SELECTED_CATEGORY_MASK = "selected_category_mask";
+    static final String KEY_SWITCH_ANALYTICS = "switch_analytics_enabled";
     
+    // Connected and enforcing; the foreground service falls back to usage stats otherwise
+    private static volatile boolean running = false;
+
     private Handler handler = new Handler();
-    private Set<String> blockedApps = new HashSet<>();
-    private long blockingEndTime = 0;
+    // Stats, recordings and disk writes; never run inline on this thread
+    private final SideEffectQueue sideEffects = SideEffectQueue.get();
+    private BlockingSessionStore sessionStore;
+    private AppCategoryIndex categoryIndex;
+    
+    // Decision rules (sessions + system exemptions), shared logic with the usage stats backend
+    private BlockingRuleCache ruleCache;
+    private SystemExemptions exemptions;
+
+    // Daily budgets: the last real foreground package and timers for exhaustion and checkpoints
+    private AppUsageBudgets budgets;
+    private String foregroundPackage;
+    private boolean checkpointScheduled = false;
+    private final Runnable budgetExhaustedRunnable = this::checkForegroundBudget;
+    private final Runnable checkpointRunnable = this::checkpointBudgets;
+
+    // Enforcement: prewarmed block screen, or HOME whose latency is measured on the next switch
+    private SharedPreferences prefs;
+    private volatile String enforcementMode = BlockLatencyStats.MODE_HOME;
+    private BlockOverlay overlay;
+    private String pendingHomePackage;
+    private long pendingHomeEventTime;
+
+    // Opt-in switch analytics, fed through its own bus subscription (managed on the side-effect queue)
+    private static final int ANALYTICS_QUEUE_CAPACITY = 256;
+    private final BlockingEventBus bus = BlockingEventBus.get();
+    private volatile boolean analyticsEnabled = false;
+    private SwitchAnalytics analytics;
+    private BlockingEventBus.Subscription analyticsSubscription;
+
+    // Domain blocking in browsers; content events are subscribed to only while it can block
+    private BrowserDomainBlocker domainBlocker;
+    private boolean watchingContent = false;
+    private String lastDomainCheckPackage;
+    private long lastDomainCheckTime;
+    private boolean domainRecheckScheduled = false;
+    private final Runnable domainRecheckRunnable = this::recheckBrowser;
+    private final BlockingSessionStore.Listener sessionListener = snapshot -> handler.post(this::onSessionsChanged);
+
+    // Multi-window: visible app windows, diffed on window set changes while a session is active
+    private boolean watchingWindows = false;
+    private final VisibleWindows visibleWindows = new VisibleWindows();
+    private WindowCovers windowCovers;
+    private final Runnable windowRecheckRunnable = this::recheckWindows;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (changedPrefs, key) -> {
+        if (KEY_ENFORCEMENT_MODE.equals(key)) {
+            loadEnforcementMode();
+        } else if (KEY_SWITCH_ANALYTICS.equals(key) || KEY_SELECTED_APPS.equals(key)
+                || KEY_SELECTED_CATEGORY_MASK.equals(key)) {
+            loadAnalyticsSettings();
+        }
+    };
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+                // Time with the screen off does not count; persist now in case the process dies
+                handler.removeCallbacks(budgetExhaustedRunnable);
+                budgets.pause(SystemClock.elapsedRealtime(), System.currentTimeMillis());
+                postBudgetCheckpoint();
+                if (analyticsEnabled) {
+                    bus.publishScreenOff(System.currentTimeMillis(), SystemClock.elapsedRealtime());
+                }
+            } else if (Intent.ACTION_USER_PRESENT.equals(intent.getAction())) {
+                budgets.resume(SystemClock.elapsedRealtime(), System.currentTimeMillis());
+                checkForegroundBudget();
+                if (analyticsEnabled) {
+                    bus.publishUnlock(System.currentTimeMillis(), SystemClock.elapsedRealtime());
+                }
+            }
+        }
+    };
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
-            String packageName = event.getPackageName() != null ? event.getPackageName().toString() : "";
-            
-            // Check if blocking is still active
-            if (!isBlockingActive()) {
-                return;
+        String packageName = event.getPackageName() != null ? event.getPackageName().toString() : "";
+        
+        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOWS_CHANGED) {
+            if (watchingWindows) {
+                onWindowsChanged(event);
+            }
+            return;
+        }
+        
+        // Content changes are only subscribed to for domain blocking; nothing else sees them
+        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            if (watchingContent && BrowserDomainBlocker.isBrowser(packageName)) {
+                checkBrowser(packageName, event.getEventTime());
             }
-            
-            // Reload blocked apps list (in case it was updated)
-            loadBlockedApps();
-            
-            // Check if the opened app should be blocked
-            if (blockedApps.contains(packageName)) {
-                // Send blocking attempt event to React Native
-                AppBlockingModule.sendBlockingAttemptEvent(packageName);
-                
-                // Close the app by simulating home button press
-                performGlobalAction(GLOBAL_ACTION_HOME);
+            return;
+        }
+        
+        // Ignore other event types, windows without a package and transient toasts
+        int decision = BlockingDecisionEngine.filter(event.getEventType(), packageName, event.getClassName());
+        if (decision == BlockingDecisionEngine.PASS) {
+            decision = onForegroundChanged(packageName, event.getEventTime());
+            if (!BlockingDecisionEngine.isBlock(decision) && watchingContent
+                    && BrowserDomainBlocker.isBrowser(packageName)) {
+                checkBrowser(packageName, event.getEventTime());
             }
         }
+        
+        if (BlockingEventRecorder.isRecording()) {
+            // Copy out of the event; it is recycled once this callback returns
+            BlockingDecisionEngine.Rules recordedRules = ruleCache.getRules();
+            int eventType = event.getEventType();
+            String className = event.getClassName() != null ? event.getClassName().toString() : null;
+            long eventTime = event.getEventTime();
+            long wallTime = System.currentTimeMillis() - (SystemClock.uptimeMillis() - eventTime);
+            int category = categoryIndex.getCategory(packageName);
+            int recordedDecision = decision;
+            sideEffects.post(() -> BlockingEventRecorder.record(recordedRules, eventType, packageName,
+                className, eventTime, wallTime, category, recordedDecision));
+        }
     }
 
-    @Override
-    public void onInterrupt() {
-        // Called when the service is interrupted
+    /**
+     * Handle a foreground window change and return the decision taken
+     */
+    private int onForegroundChanged(String packageName, long eventTime) {
+        if (pendingHomePackage != null && !pendingHomePackage.equals(packageName)) {
+            long latency = eventTime - pendingHomeEventTime;
+            sideEffects.post(() -> BlockLatencyStats.record(BlockLatencyStats.MODE_HOME, latency));
+            pendingHomePackage = null;
+        } else if (packageName.equals(pendingHomePackage) && eventTime - pendingHomeEventTime < HOME_SETTLE_MS) {
+            // Already being closed (seen first as a window change); not a new attempt
+            return BlockingDecisionEngine.IGNORE_COVERED;
+        }
+        if (packageName.equals(getPackageName()) && !windowCovers.isEmpty()) {
+            // Window events of the covers themselves
+            return BlockingDecisionEngine.IGNORE_COVERED;
+        }
+        if (overlay.isShowing()) {
+            // The block screen's own window events are not a foreground switch, and
+            // activity changes inside the covered app are not new attempts
+            if (packageName.equals(getPackageName()) || packageName.equals(overlay.getBlockedPackage())) {
+                return BlockingDecisionEngine.IGNORE_COVERED;
+            }
+            overlay.hide();
+        }
+        
+        if (analyticsEnabled && !exemptions.getInputMethodPackages().contains(packageName)) {
+            bus.publishForeground(packageName, categoryIndex.getCategory(packageName),
+                exemptions.getPackages().contains(packageName), System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        }
+        
+        // Budgets are metered whether or not a session is active
+        if (trackForeground(packageName)) {
+            blockApp(packageName, "Daily limit reached", eventTime);
+            return BlockingDecisionEngine.BLOCK_BUDGET;
+        }
+        
+        // Union of all active sessions; precomputed at session boundaries
+        long now = System.currentTimeMillis();
+        BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(now);
+        int decision = ruleCache.decide(packageName, snapshot, now);
+        if (BlockingDecisionEngine.isBlock(decision)) {
+            // In split-screen or freeform only the app's own window is covered
+            VisibleWindows.AppWindow window = watchingWindows ? visibleWindows.find(packageName) : null;
+            if (window == null || visibleWindows.isSoleWindow(window) || !coverWindow(window)) {
+                blockApp(packageName, describeRemaining(snapshot.latestEndTime), eventTime);
+            }
+        }
+        return decision;
     }
 
-    @Override
-    protected void onServiceConnected() {
-        super.onServiceConnected();
+    /**
+     * Diff the visible app windows and check only the ones that just appeared
+     */
+    private void onWindowsChanged(AccessibilityEvent event) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && (event.getWindowChanges() & RELEVANT_WINDOW_CHANGES) == 0) {
+            return;
+        }
+        updateWindows(event.getEventTime());
+    }
+
+    private void updateWindows(long eventTime) {
+        List<AccessibilityWindowInfo> windows = getWindows();
+        VisibleWindows.Diff diff;
+        try {
+            diff = visibleWindows.update(windows);
+        } finally {
+            for (AccessibilityWindowInfo window : windows) {
+                window.recycle();
+            }
+        }
+        if (diff.isEmpty()) {
+            return;
+        }
+        for (Integer windowId : diff.removed) {
+            windowCovers.remove(windowId);
+        }
+        for (VisibleWindows.AppWindow window : diff.moved) {
+            windowCovers.move(window.id, window.bounds);
+        }
+        if (diff.added.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(now);
+        for (VisibleWindows.AppWindow window : diff.added) {
+            if (window.packageName.equals(getPackageName())) {
+                continue;
+            }
+            if (visibleWindows.isSoleWindow(window)) {
+                // Full screen but possibly without a state change (e.g. resumed under a closed dialog)
+                if (!window.packageName.equals(foregroundPackage)) {
+                    onForegroundChanged(window.packageName, eventTime);
+                }
+            } else if (BlockingDecisionEngine.isBlock(ruleCache.decide(window.packageName, snapshot, now))) {
+                coverWindow(window);
+            }
+        }
+        scheduleWindowRecheck(snapshot, now);
+    }
+
+    /**
+     * Cover one blocked window; returns false if no cover could be shown
+     */
+    private boolean coverWindow(VisibleWindows.AppWindow window) {
+        if (windowCovers.isCovered(window.id)) {
+            return true;
+        }
+        if (!windowCovers.cover(window.id, window.packageName, window.bounds)) {
+            return false;
+        }
+        android.util.Log.d("AppBlocking", "Covered window of " + window.packageName);
+        recordBlock(window.packageName);
+        return true;
+    }
+
+    /**
+     * Sessions or rules changed: re-decide visible windows from the cached snapshot, no binder calls
+     */
+    private void recheckWindows() {
+        handler.removeCallbacks(windowRecheckRunnable);
+        long now = System.currentTimeMillis();
+        BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(now);
+        releaseOverlay(snapshot, now);
+        if (!watchingWindows) {
+            scheduleWindowRecheck(snapshot, now);
+            return;
+        }
+        for (Integer windowId : windowCovers.getCoveredWindows()) {
+            String packageName = windowCovers.getCoveredPackage(windowId);
+            if (!BlockingDecisionEngine.isBlock(ruleCache.decide(packageName, snapshot, now))) {
+                windowCovers.remove(windowId);
+            }
+        }
+        for (VisibleWindows.AppWindow window : visibleWindows.getAll()) {
+            if (!visibleWindows.isSoleWindow(window) && !window.packageName.equals(getPackageName())
+                    && BlockingDecisionEngine.isBlock(ruleCache.decide(window.packageName, snapshot, now))) {
+                coverWindow(window);
+            }
+        }
+        scheduleWindowRecheck(snapshot, now);
+    }
+
+    /**
+     * Hide the block screen once nothing blocks its app any more (session expired, stopped or ended)
+     */
+    private void releaseOverlay(BlockingSessionStore.Snapshot snapshot, long now) {
+        if (!overlay.isShowing()) {
+            return;
+        }
+        String packageName = overlay.getBlockedPackage();
+        if (packageName == null) {
+            overlay.hide();
+            return;
+        }
+        if (BlockingDecisionEngine.isBlock(ruleCache.decide(packageName, snapshot, now))) {
+            return;
+        }
+        // Daily limits outlive sessions
+        if (packageName.equals(budgets.getForegroundPackage())
+                && budgets.getForegroundRemainingMs(SystemClock.elapsedRealtime()) == 0
+                && !exemptions.getPackages().contains(packageName)) {
+            return;
+        }
+        // Blocked domains apply for as long as any session is active
+        if (BrowserDomainBlocker.isBrowser(packageName) && snapshot.isActive() && domainBlocker.hasDomains()) {
+            return;
+        }
+        overlay.hide();
+    }
+
+    /**
+     * Lift covers and the block screen when the rules next change, even if no window event comes
+     */
+    private void scheduleWindowRecheck(BlockingSessionStore.Snapshot snapshot, long now) {
+        handler.removeCallbacks(windowRecheckRunnable);
+        if ((!windowCovers.isEmpty() || overlay.isShowing()) && snapshot.nextBoundary != Long.MAX_VALUE) {
+            handler.postDelayed(windowRecheckRunnable, Math.max(0, snapshot.nextBoundary - now));
+        }
+    }
+
+    private void onSessionsChanged() {
+        updateServiceInfo();
+        recheckWindows();
+    }
+
+    /**
+     * Enforce a block; eventTime is the uptime of the triggering window event
+     */
+    private void blockApp(String packageName, String detail, long eventTime) {
+        // Enforce first; everything else is deferred to the side-effect queue
+        if (!BlockLatencyStats.MODE_OVERLAY.equals(enforcementMode) || !overlay.show(packageName, detail, eventTime)) {
+            // Close the app by simulating home button press
+            pendingHomePackage = packageName;
+            pendingHomeEventTime = eventTime;
+            performGlobalAction(GLOBAL_ACTION_HOME);
+        } else {
+            // Lift the block screen when the covering session expires
+            long now = System.currentTimeMillis();
+            scheduleWindowRecheck(sessionStore.snapshot(now), now);
+        }
         
-        // Configure the accessibility service
+        recordBlock(packageName);
+    }
+
+    /**
+     * Publish the attempt; the ledger, history and React Native pick it up from the bus
+     */
+    private void recordBlock(String packageName) {
+        bus.publishBlocked(packageName, System.currentTimeMillis());
+    }
+
+    /**
+     * Block the browser if its URL bar shows a blocked domain, throttled per browser
+     */
+    private void checkBrowser(String packageName, long eventTime) {
+        long now = SystemClock.uptimeMillis();
+        if (packageName.equals(lastDomainCheckPackage) && now - lastDomainCheckTime < DOMAIN_CHECK_INTERVAL_MS) {
+            // Check again once the interval is over, so the final state of a page load is seen
+            if (!domainRecheckScheduled) {
+                domainRecheckScheduled = true;
+                handler.postDelayed(domainRecheckRunnable, DOMAIN_CHECK_INTERVAL_MS - (now - lastDomainCheckTime));
+            }
+            return;
+        }
+        lastDomainCheckPackage = packageName;
+        lastDomainCheckTime = now;
+        if (overlay.isShowing() && packageName.equals(overlay.getBlockedPackage())) {
+            return;
+        }
+        if (!sessionStore.snapshot(System.currentTimeMillis()).isActive()) {
+            return;
+        }
+        AccessibilityNodeInfo root = getRootInActiveWindow();
+        if (root == null) {
+            return;
+        }
+        String domain;
+        try {
+            if (root.getPackageName() == null || !packageName.equals(root.getPackageName().toString())) {
+                return;
+            }
+            domain = domainBlocker.check(root, packageName);
+        } finally {
+            root.recycle();
+        }
+        if (domain != null) {
+            android.util.Log.d("AppBlocking", "Blocked domain " + domain + " in " + packageName);
+            blockApp(packageName, domain + " is blocked during your focus session", eventTime);
+        }
+    }
+
+    private void recheckBrowser() {
+        domainRecheckScheduled = false;
+        if (watchingContent && lastDomainCheckPackage != null && lastDomainCheckPackage.equals(foregroundPackage)) {
+            lastDomainCheckTime = 0;
+            checkBrowser(lastDomainCheckPackage, SystemClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * Subscribe to content changes only while a session is active and domains are blocked
+     */
+    private void updateServiceInfo() {
+        if (!running) {
+            return;
+        }
+        boolean sessionActive = sessionStore.snapshot(System.currentTimeMillis()).isActive();
+        boolean content = sessionActive && domainBlocker.hasDomains();
+        if (sessionActive != watchingWindows || content != watchingContent) {
+            applyServiceInfo(sessionActive, content);
+        }
+    }
+
+    private void applyServiceInfo(boolean windows, boolean content) {
+        if (windows && !watchingWindows) {
+            // Initial snapshot, so windows already on screen when the session starts are checked
+            handler.post(() -> {
+                if (watchingWindows) {
+                    updateWindows(SystemClock.uptimeMillis());
+                }
+            });
+        }
+        watchingWindows = windows;
+        watchingContent = content;
         AccessibilityServiceInfo config = new AccessibilityServiceInfo();
         config.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+        if (windows) {
+            config.eventTypes |= AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+        }
+        if (content) {
+            config.eventTypes |= AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+        }
         config.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
-        config.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS;
+        config.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS
+            | AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS
+            | AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS;
         config.notificationTimeout = 100;
-        
         setServiceInfo(config);
-        
-        // Load initial configuration
-        loadBlockedApps();
-        loadBlockingEndTime();
+        if (!content) {
+            handler.removeCallbacks(domainRecheckRunnable);
+            domainRecheckScheduled = false;
+        }
+        if (!windows) {
+            // Start from a full snapshot next session; covers only exist during sessions
+            handler.removeCallbacks(windowRecheckRunnable);
+            visibleWindows.clear();
+            windowCovers.clear();
+        }
+    }
+
+    private void loadEnforcementMode() {
+        sideEffects.post(() -> enforcementMode = prefs.getString(KEY_ENFORCEMENT_MODE, BlockLatencyStats.MODE_HOME));
     }
 
     /**
-     * Check if blocking session is currently active
+     * Read the opt-in flag and the blocking selection that defines distractions
      */
-    private boolean isBlockingActive() {
-        // Always reload end time to ensure we have the latest value
-        loadBlockingEndTime();
-        
-        // If no end time is set, blocking is not active
-        if (blockingEndTime <= 0) {
+    private void loadAnalyticsSettings() {
+        sideEffects.post(() -> {
+            if (!prefs.getBoolean(KEY_SWITCH_ANALYTICS, false)) {
+                analyticsEnabled = false;
+                stopAnalytics();
+                return;
+            }
+            if (analytics == null) {
+                analytics = SwitchAnalytics.get(this);
+            }
+            Set<String> packages = new HashSet<>();
+            for (String key : prefs.getStringSet(KEY_SELECTED_APPS, new HashSet<>())) {
+                packages.add(AppCatalog.packageOf(key));
+            }
+            analytics.setDistractions(packages, prefs.getInt(KEY_SELECTED_CATEGORY_MASK, 0));
+            if (analyticsSubscription == null) {
+                // Losing a switch only skews counts slightly; the newest are dropped if it falls behind
+                SwitchAnalytics target = analytics;
+                analyticsSubscription = bus.subscribe("analytics",
+                    BlockingEventBus.TYPE_FOREGROUND | BlockingEventBus.TYPE_UNLOCK | BlockingEventBus.TYPE_SCREEN_OFF,
+                    ANALYTICS_QUEUE_CAPACITY, BlockingEventBus.DROP_NEWEST, event -> onAnalyticsEvent(target, event));
+            }
+            analyticsEnabled = true;
+        });
+    }
+
+    /**
+     * Runs on the analytics subscription's thread
+     */
+    private void onAnalyticsEvent(SwitchAnalytics target, BlockingEventBus.Event event) {
+        switch (event.type) {
+            case BlockingEventBus.TYPE_FOREGROUND:
+                target.onSwitch(event.packageName, event.category, event.exempt, event.wallTime, event.elapsed);
+                break;
+            case BlockingEventBus.TYPE_UNLOCK:
+                target.onUnlock(event.elapsed);
+                break;
+            case BlockingEventBus.TYPE_SCREEN_OFF:
+                // Persist now in case the process dies while the screen is off
+                target.onScreenOff();
+                saveAnalytics();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Unsubscribe and persist; call on the side-effect queue
+     */
+    private void stopAnalytics() {
+        if (analyticsSubscription != null) {
+            bus.unsubscribe(analyticsSubscription);
+            analyticsSubscription = null;
+            saveAnalytics();
+        }
+    }
+
+    private void saveAnalytics() {
+        try {
+            analytics.save();
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Failed to save switch analytics: " + e.getMessage());
+        }
+    }
+
+    private String describeRemaining(long endTime) {
+        long remainingMinutes = Math.max(1, (endTime - System.currentTimeMillis() + 59999) / 60000);
+        if (remainingMinutes >= 60) {
+            return String.format("Focus session - %dh %dm remaining", remainingMinutes / 60, remainingMinutes % 60);
+        }
+        return String.format("Focus session - %dm remaining", remainingMinutes);
+    }
+
+    /**
+     * Charge the previous foreground app and start metering the new one
+     * Returns true if the new app has already used up today's budget.
+     */
+    private boolean trackForeground(String packageName) {
+        // A keyboard window shows over the app in use, so that app keeps being charged
+        if (exemptions.getInputMethodPackages().contains(packageName)) {
             return false;
         }
-        
-        // Check if current time has passed the end time
-        long currentTime = System.currentTimeMillis();
-        boolean isActive = blockingEndTime > currentTime;
-        
-        // If blocking has expired, clear the data
-        if (!isActive) {
-            clearBlockingData();
+        foregroundPackage = packageName;
+        boolean exhausted = budgets.onForeground(packageName, SystemClock.elapsedRealtime(), System.currentTimeMillis());
+        if (exhausted) {
+            handler.removeCallbacks(budgetExhaustedRunnable);
+        } else {
+            scheduleBudgetTimers();
         }
-        
-        return isActive;
+        return exhausted && !exemptions.getPackages().contains(packageName);
     }
 
     /**
-     * Load blocked apps list from shared preferences
+     * Arm the exhaustion timer for the charged app and the periodic usage checkpoint
      */
-    private void loadBlockedApps() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        blockedApps = prefs.getStringSet(KEY_BLOCKED_APPS, new HashSet<>());
-        if (blockedApps == null) {
-            blockedApps = new HashSet<>();
+    private void scheduleBudgetTimers() {
+        handler.removeCallbacks(budgetExhaustedRunnable);
+        long remaining = budgets.getForegroundRemainingMs(SystemClock.elapsedRealtime());
+        if (remaining < 0) {
+            return;
+        }
+        handler.postDelayed(budgetExhaustedRunnable, remaining);
+        if (!checkpointScheduled) {
+            checkpointScheduled = true;
+            handler.postDelayed(checkpointRunnable, BUDGET_CHECKPOINT_INTERVAL_MS);
         }
     }
 
+    private void checkForegroundBudget() {
+        String packageName = budgets.getForegroundPackage();
+        if (packageName == null) {
+            return;
+        }
+        if (budgets.getForegroundRemainingMs(SystemClock.elapsedRealtime()) > 0) {
+            scheduleBudgetTimers();
+            return;
+        }
+        if (!exemptions.getPackages().contains(packageName)) {
+            android.util.Log.d("AppBlocking", "Daily budget used up for " + packageName);
+            blockApp(packageName, "Daily limit reached", SystemClock.uptimeMillis());
+        }
+    }
+
+    private void checkpointBudgets() {
+        checkpointScheduled = false;
+        postBudgetCheckpoint();
+        // Keep checkpointing only while a budgeted app is being charged
+        if (budgets.getForegroundPackage() != null) {
+            checkpointScheduled = true;
+            handler.postDelayed(checkpointRunnable, BUDGET_CHECKPOINT_INTERVAL_MS);
+        }
+    }
+
+    private void postBudgetCheckpoint() {
+        AppUsageBudgets target = budgets;
+        sideEffects.post(() -> target.checkpoint(SystemClock.elapsedRealtime(), System.currentTimeMillis()));
+    }
+
     /**
-     * Load blocking end time from shared preferences
+     * A budget was added or removed; re-evaluate the app currently in the foreground
      */
-    private void loadBlockingEndTime() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        blockingEndTime = prefs.getLong(KEY_BLOCKING_END_TIME, 0);
+    private void onBudgetsChanged() {
+        if (foregroundPackage != null && trackForeground(foregroundPackage)) {
+            blockApp(foregroundPackage, "Daily limit reached", SystemClock.uptimeMillis());
+        }
+    }
+
+    @Override
+    public void onInterrupt() {
+        // Called when the service is interrupted
     }
 
     /**
-     * Clear blocking data when session expires
+     * True while the service is connected and handling window events
      */
-    private void clearBlockingData() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().clear().apply();
-        blockingEndTime = 0;
-        blockedApps.clear();
+    public static boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        running = false;
+        if (ruleCache != null) {
+            ruleCache.stopTracking();
+        }
+        if (domainBlocker != null) {
+            domainBlocker.setOnChanged(null);
+            domainBlocker.stopTracking();
+            sessionStore.removeListener(sessionListener);
+        }
+        if (prefs != null) {
+            prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+        }
+        analyticsEnabled = false;
+        sideEffects.post(this::stopAnalytics);
+        if (budgets != null) {
+            budgets.setOnBudgetsChanged(null);
+            postBudgetCheckpoint();
+            try {
+                unregisterReceiver(screenReceiver);
+            } catch (IllegalArgumentException e) {
+                // Receiver was never registered
+            }
+        }
+        if (overlay != null) {
+            overlay.release();
+        }
+        if (windowCovers != null) {
+            windowCovers.clear();
+        }
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        
+        // Configure the accessibility service; window set and content changes are added during sessions
+        sessionStore = BlockingSessionStore.get(this);
+        BlockingHistory.subscribe(this);
+        domainBlocker = BrowserDomainBlocker.get(this);
+        windowCovers = new WindowCovers(this);
+        applyServiceInfo(false, false);
+        domainBlocker.setOnChanged(() -> handler.post(this::updateServiceInfo));
+        domainBlocker.startTracking();
+        sessionStore.addListener(sessionListener);
+        handler.post(this::updateServiceInfo);
+        
+        prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        loadEnforcementMode();
+        loadAnalyticsSettings();
+        
+        // Attach the block screen now so showing it costs a single frame
+        overlay = new BlockOverlay(this);
+        overlay.prewarm();
+        
+        // Session rules, category index and system exemptions
+        categoryIndex = AppCategoryIndex.get(this);
+        ruleCache = new BlockingRuleCache(this);
+        ruleCache.startTracking();
+        exemptions = ruleCache.getExemptions();
+        
+        // Daily budgets; changes made from the app are applied on this service's handler
+        budgets = AppUsageBudgets.get(this);
+        budgets.setOnBudgetsChanged(() -> handler.post(this::onBudgetsChanged));
+        IntentFilter screenFilter = new IntentFilter();
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_USER_PRESENT);
+        ContextCompat.registerReceiver(this, screenReceiver, screenFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        
+        running = true;
     }
 }
@@ -9,15 +9,13 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
-import android.util.Base64;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationManagerCompat;
@@ -27,17 +25,23 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Native module bridge for app blocking functionality
@@ -46,17 +50,26 @@ import java.util.Set;
 public class AppBlockingModule extends ReactContextBaseJavaModule {
     private static final String MODULE_NAME = "AppBlocking";
     private static final String PREFS_NAME = "app_blocking_prefs";
-    private static final String KEY_BLOCKED_APPS = "blocked_apps";
-    private static final String KEY_BLOCKING_END_TIME = "blocking_end_time";
     private static final String KEY_SELECTED_APPS = "selected_apps_for_blocking";
+    private static final String KEY_SELECTED_CATEGORY_MASK = "selected_category_mask";
+    private static final String KEY_ENFORCEMENT_MODE = "enforcement_mode";
+    // JS names of SessionLedger origin and end reason codes, indexed by code
+    private static final String[] FOCUS_ORIGINS = { "manual", "quick", "calendar", "other" };
+    private static final String[] FOCUS_END_REASONS = { "completed", "stopped", "notification", "tile" };
     
     private ReactApplicationContext reactContext;
     private BlockingForegroundService boundService;
     private boolean serviceBound = false;
     
-    // Static reference to allow accessibility service to send events
-    private static AppBlockingModule instance;
-    private boolean hasAttemptCallback = false;
+    // Blocking events reach JS through this module's own bus subscription, delivered on its thread
+    private static final int BRIDGE_QUEUE_CAPACITY = 64;
+    private final BlockingEventBus.Subscription busSubscription;
+    private volatile boolean hasAttemptCallback = false;
+
+    // App listing runs off the bridge thread; icons are loaded separately per visible row
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private AppIconLoader iconLoader;
+    private AppCatalog appCatalog;
 
     private ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
@@ -76,7 +89,10 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     public AppBlockingModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
-        instance = this; // Set static reference
+        // A stalled bridge only loses the oldest events, never delays blocking
+        busSubscription = BlockingEventBus.get().subscribe("bridge",
+            BlockingEventBus.TYPE_BLOCKED | BlockingEventBus.TYPE_BACKEND_CHANGED | BlockingEventBus.TYPE_SESSIONS_CHANGED,
+            BRIDGE_QUEUE_CAPACITY, BlockingEventBus.DROP_OLDEST, this::onBusEvent);
     }
 
     @NonNull
@@ -85,6 +101,16 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
         return MODULE_NAME;
     }
 
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        BlockingEventBus.get().unsubscribe(busSubscription);
+        backgroundExecutor.shutdownNow();
+        if (iconLoader != null) {
+            iconLoader.shutdown();
+        }
+    }
+
     /**
      * Check if accessibility service is enabled for this app
      */
@@ -113,6 +139,74 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * Check if usage access is granted (fallback detection when accessibility is off)
+     */
+    @ReactMethod
+    public void hasUsageAccess(Promise promise) {
+        try {
+            promise.resolve(UsageStatsDetector.hasUsageAccess(reactContext));
+        } catch (Exception e) {
+            promise.reject("USAGE_ACCESS_CHECK_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Open usage access settings for user to grant the fallback backend
+     */
+    @ReactMethod
+    public void openUsageAccessSettings(Promise promise) {
+        try {
+            Intent intent = new Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            reactContext.startActivity(intent);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("OPEN_SETTINGS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Check if "display over other apps" is granted or not needed
+     * The usage access backend cannot leave blocked apps without it on Android 10+.
+     */
+    @ReactMethod
+    public void canLeaveBlockedApps(Promise promise) {
+        try {
+            promise.resolve(UsageStatsDetector.canLeaveBlockedApps(reactContext));
+        } catch (Exception e) {
+            promise.reject("OVERLAY_CHECK_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Open "display over other apps" settings for this app
+     */
+    @ReactMethod
+    public void openOverlaySettings(Promise promise) {
+        try {
+            Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
+                Uri.parse("package:" + reactContext.getPackageName()));
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            reactContext.startActivity(intent);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("OPEN_SETTINGS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the backend enforcing sessions: 'accessibility', 'usage_stats' or 'none'
+     */
+    @ReactMethod
+    public void getDetectionBackend(Promise promise) {
+        try {
+            promise.resolve(BlockingForegroundService.getBackend());
+        } catch (Exception e) {
+            promise.reject("BACKEND_CHECK_ERROR", e.getMessage());
+        }
+    }
+
     /**
      * Check if notification permission is granted
      */
@@ -128,12 +222,44 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
 
     /**
      * Start app blocking for specified duration and apps
+     * Resolves with the id of the new session
      */
     @ReactMethod
     public void startBlocking(int durationSeconds, ReadableArray blockedApps, Promise promise) {
+        startSession(durationSeconds, BlockingSessionStore.ORIGIN_MANUAL, BlockingSessionStore.MODE_BLOCKLIST, blockedApps, promise);
+    }
+
+    /**
+     * Start deep-focus blocking: every app except the allowed ones is blocked
+     * Home, System UI, input methods, the dialer and this app are always exempt
+     */
+    @ReactMethod
+    public void startAllowlistBlocking(int durationSeconds, ReadableArray allowedApps, Promise promise) {
+        startSession(durationSeconds, BlockingSessionStore.ORIGIN_MANUAL, BlockingSessionStore.MODE_ALLOWLIST, allowedApps, promise);
+    }
+
+    /**
+     * Start a session that runs alongside any other active sessions
+     * options: { origin?: string, mode?: 'blocklist' | 'allowlist' }
+     */
+    @ReactMethod
+    public void startBlockingSession(int durationSeconds, ReadableArray apps, ReadableMap options, Promise promise) {
+        String origin = options != null && options.hasKey("origin") && !options.isNull("origin")
+            ? options.getString("origin") : BlockingSessionStore.ORIGIN_MANUAL;
+        String mode = options != null && options.hasKey("mode") && !options.isNull("mode")
+            ? options.getString("mode") : BlockingSessionStore.MODE_BLOCKLIST;
+        if (!BlockingSessionStore.MODE_BLOCKLIST.equals(mode) && !BlockingSessionStore.MODE_ALLOWLIST.equals(mode)) {
+            promise.reject("INVALID_MODE", "Unknown blocking mode: " + mode);
+            return;
+        }
+        startSession(durationSeconds, origin, mode, apps, promise);
+    }
+
+    private void startSession(int durationSeconds, String origin, String mode, ReadableArray apps, Promise promise) {
         try {
-            if (!isAccessibilityServiceEnabled()) {
-                promise.reject("ACCESSIBILITY_DISABLED", "Accessibility service not enabled");
+            // Either backend can enforce; the foreground service picks one and switches automatically
+            if (!isAccessibilityServiceEnabled() && !UsageStatsDetector.hasUsageAccess(reactContext)) {
+                promise.reject("ACCESSIBILITY_DISABLED", "Accessibility service not enabled and usage access not granted");
                 return;
             }
 
@@ -143,65 +269,81 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
             }
 
             // Convert ReadableArray to Set<String>
-            Set<String> appPackages = new HashSet<>();
-            for (int i = 0; i < blockedApps.size(); i++) {
-                appPackages.add(blockedApps.getString(i));
+            Set<String> appKeys = new HashSet<>();
+            for (int i = 0; i < apps.size(); i++) {
+                appKeys.add(apps.getString(i));
             }
 
-            // Save blocked apps list
-            saveBlockedApps(appPackages);
-            
-            // Calculate end time using seconds
+            // Calculate end time using seconds; blocklist sessions also snapshot the category profile
             long endTime = System.currentTimeMillis() + (durationSeconds * 1000L);
-            saveBlockingEndTime(endTime);
+            int categoryMask = BlockingSessionStore.MODE_BLOCKLIST.equals(mode) ? getSelectedCategoryMask() : 0;
+            String sessionId = BlockingSessionStore.get(reactContext).add(origin, mode, appKeys, categoryMask, endTime);
 
-            // Start foreground service
+            // Start (or refresh) the foreground service; it tracks every active session
             Intent serviceIntent = new Intent(reactContext, BlockingForegroundService.class);
-            serviceIntent.putExtra("duration_minutes", (int) Math.ceil(durationSeconds / 60.0)); // For notification display
-            serviceIntent.putExtra("end_time", endTime);
             reactContext.startForegroundService(serviceIntent);
 
             // Bind to service for communication
             Intent bindIntent = new Intent(reactContext, BlockingForegroundService.class);
             reactContext.bindService(bindIntent, serviceConnection, Context.BIND_AUTO_CREATE);
 
-            promise.resolve(true);
+            promise.resolve(sessionId);
         } catch (Exception e) {
             promise.reject("START_BLOCKING_ERROR", e.getMessage());
         }
     }
 
     /**
-     * Stop app blocking immediately
+     * Stop one session; other sessions keep blocking
+     * Resolves false if the session had already ended
      */
     @ReactMethod
-    public void stopBlocking() {
+    public void stopBlockingSession(String sessionId, Promise promise) {
         try {
-            // Clear stored data
-            clearBlockingData();
-            
-            // Stop foreground service
-            Intent serviceIntent = new Intent(reactContext, BlockingForegroundService.class);
-            reactContext.stopService(serviceIntent);
-            
-            // Unbind service
-            if (serviceBound) {
-                reactContext.unbindService(serviceConnection);
-                serviceBound = false;
+            BlockingSessionStore store = BlockingSessionStore.get(reactContext);
+            boolean removed = store.remove(sessionId) != null;
+            if (!store.snapshot(System.currentTimeMillis()).isActive()) {
+                stopBlockingService();
             }
+            promise.resolve(removed);
+        } catch (Exception e) {
+            promise.reject("STOP_BLOCKING_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop all blocking sessions immediately
+     */
+    @ReactMethod
+    public void stopBlocking() {
+        try {
+            BlockingSessionStore.get(reactContext).clear();
+            stopBlockingService();
         } catch (Exception e) {
             // Log error but don't throw - stopping should always succeed
         }
     }
 
+    private void stopBlockingService() {
+        // Stop foreground service
+        Intent serviceIntent = new Intent(reactContext, BlockingForegroundService.class);
+        reactContext.stopService(serviceIntent);
+        
+        // Unbind service
+        if (serviceBound) {
+            reactContext.unbindService(serviceConnection);
+            serviceBound = false;
+        }
+    }
+
     /**
-     * Get current blocking status
+     * Get current blocking status (true while any session is active)
      */
     @ReactMethod
     public void getBlockingStatus(Promise promise) {
         try {
-            long endTime = getBlockingEndTime();
-            boolean isActive = endTime > System.currentTimeMillis();
+            boolean isActive = BlockingSessionStore.get(reactContext)
+                .snapshot(System.currentTimeMillis()).isActive();
             promise.resolve(isActive);
         } catch (Exception e) {
             promise.reject("STATUS_CHECK_ERROR", e.getMessage());
@@ -209,89 +351,549 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
 
     /**
-     * Get list of installed apps that can be blocked - COMPREHENSIVE APPROACH
+     * Get all active sessions
      */
     @ReactMethod
-    public void getInstalledApps(Promise promise) {
+    public void getActiveSessions(Promise promise) {
         try {
-            android.util.Log.d("AppBlocking", "=== Starting getInstalledApps (COMPREHENSIVE) ===");
-            
-            PackageManager pm = reactContext.getPackageManager();
-            String currentPackage = reactContext.getPackageName();
-            WritableArray appList = Arguments.createArray();
-            Set<String> processedPackages = new HashSet<>();
-            
-            android.util.Log.d("AppBlocking", "Current package (to exclude): " + currentPackage);
-            
-            int totalFound = 0;
-            int addedToList = 0;
-            int filteredOut = 0;
-            int duplicatesSkipped = 0;
+            BlockingSessionStore store = BlockingSessionStore.get(reactContext);
+            long now = System.currentTimeMillis();
+            store.snapshot(now); // Drops sessions whose deadline has passed
             
-            // METHOD 1: Get all installed packages (requires QUERY_ALL_PACKAGES permission)
+            WritableArray result = Arguments.createArray();
+            for (BlockingSessionStore.Session session : store.getSessions()) {
+                WritableMap map = Arguments.createMap();
+                map.putString("id", session.id);
+                map.putString("origin", session.origin);
+                map.putString("mode", session.mode);
+                WritableArray apps = Arguments.createArray();
+                for (String appKey : session.appKeys) {
+                    apps.pushString(appKey);
+                }
+                map.putArray("apps", apps);
+                map.putDouble("startTime", session.startTime);
+                map.putDouble("endTime", session.endTime);
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SESSIONS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Choose how blocked apps are enforced: "home" (launcher) or "overlay" (block screen)
+     */
+    @ReactMethod
+    public void setEnforcementMode(String mode, Promise promise) {
+        try {
+            if (!BlockLatencyStats.MODE_HOME.equals(mode) && !BlockLatencyStats.MODE_OVERLAY.equals(mode)) {
+                promise.reject("INVALID_MODE", "Unknown enforcement mode: " + mode);
+                return;
+            }
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            prefs.edit().putString(KEY_ENFORCEMENT_MODE, mode).apply();
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("ENFORCEMENT_MODE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the current enforcement mode
+     */
+    @ReactMethod
+    public void getEnforcementMode(Promise promise) {
+        try {
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            promise.resolve(prefs.getString(KEY_ENFORCEMENT_MODE, BlockLatencyStats.MODE_HOME));
+        } catch (Exception e) {
+            promise.reject("ENFORCEMENT_MODE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method comparing how quickly each enforcement mode covers a blocked app
+     */
+    @ReactMethod
+    public void getBlockLatencyStats(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            for (String mode : new String[] { BlockLatencyStats.MODE_HOME, BlockLatencyStats.MODE_OVERLAY }) {
+                BlockLatencyStats.Stat stat = BlockLatencyStats.get(mode);
+                WritableMap map = Arguments.createMap();
+                map.putInt("count", stat.count);
+                map.putDouble("avgMs", stat.getAverageMs());
+                map.putDouble("maxMs", stat.maxMs);
+                result.putMap(mode, map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("LATENCY_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Aggregates of the focus session ledger
+     * Resolves with { sessions, completed, completionRate, focusedMs, attempts, currentStreak, longestStreak }
+     */
+    @ReactMethod
+    public void getFocusStats(Promise promise) {
+        try {
+            SessionLedger.Stats stats = SessionLedger.get(reactContext).getStats(System.currentTimeMillis());
+            WritableMap result = Arguments.createMap();
+            result.putInt("sessions", stats.sessions);
+            result.putInt("completed", stats.completed);
+            result.putDouble("completionRate", stats.getCompletionRate());
+            result.putDouble("focusedMs", stats.focusedMs);
+            result.putDouble("attempts", stats.attempts);
+            result.putInt("currentStreak", stats.currentStreak);
+            result.putInt("longestStreak", stats.longestStreak);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("FOCUS_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Opt in to (or out of) switch analytics; the accessibility service picks the flag up live
+     */
+    @ReactMethod
+    public void setSwitchAnalyticsEnabled(boolean enabled, Promise promise) {
+        try {
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            prefs.edit().putBoolean(AppBlockingAccessibilityService.KEY_SWITCH_ANALYTICS, enabled).apply();
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("SWITCH_ANALYTICS_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void isSwitchAnalyticsEnabled(Promise promise) {
+        try {
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            promise.resolve(prefs.getBoolean(AppBlockingAccessibilityService.KEY_SWITCH_ANALYTICS, false));
+        } catch (Exception e) {
+            promise.reject("SWITCH_ANALYTICS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Switch analytics: { totalSwitches, switchesPerHour (last hours, oldest first),
+     * topApps: [{ packageName, count, error }], unlockToDistraction: { count, avgMs, minMs,
+     * maxMs, histogram: [{ upToMs, count }] } } (upToMs of the last bucket is the 10 min window)
+     */
+    @ReactMethod
+    public void getSwitchAnalytics(int hours, int appLimit, Promise promise) {
+        backgroundExecutor.execute(() -> {
             try {
-                List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_META_DATA);
-                android.util.Log.d("AppBlocking", "Method 1 - getInstalledPackages found: " + packages.size());
-                
-                for (PackageInfo packageInfo : packages) {
-                    totalFound++;
-                    processApp(pm, packageInfo.packageName, currentPackage, appList, processedPackages);
+                SwitchAnalytics analytics = SwitchAnalytics.get(reactContext);
+                WritableMap result = Arguments.createMap();
+                result.putDouble("totalSwitches", analytics.getTotalSwitches());
+
+                WritableArray perHour = Arguments.createArray();
+                for (int count : analytics.getSwitchesPerHour(System.currentTimeMillis(), Math.max(0, hours))) {
+                    perHour.pushInt(count);
                 }
+                result.putArray("switchesPerHour", perHour);
+
+                WritableArray topApps = Arguments.createArray();
+                for (SwitchAnalytics.TopApp app : analytics.getTopApps(appLimit)) {
+                    WritableMap map = Arguments.createMap();
+                    map.putString("packageName", app.packageName);
+                    map.putDouble("count", app.count);
+                    map.putDouble("error", app.error);
+                    topApps.pushMap(map);
+                }
+                result.putArray("topApps", topApps);
+
+                WritableMap unlock = Arguments.createMap();
+                unlock.putDouble("count", analytics.getIntervalCount());
+                unlock.putDouble("avgMs", analytics.getIntervalAverageMs());
+                unlock.putDouble("minMs", analytics.getIntervalMinMs());
+                unlock.putDouble("maxMs", analytics.getIntervalMaxMs());
+                WritableArray histogram = Arguments.createArray();
+                long[] counts = analytics.getIntervalHistogram();
+                for (int i = 0; i < counts.length; i++) {
+                    WritableMap bucket = Arguments.createMap();
+                    bucket.putDouble("upToMs", i < SwitchAnalytics.INTERVAL_BOUNDS_MS.length
+                        ? SwitchAnalytics.INTERVAL_BOUNDS_MS[i] : SwitchAnalytics.UNLOCK_WINDOW_MS);
+                    bucket.putDouble("count", counts[i]);
+                    histogram.pushMap(bucket);
+                }
+                unlock.putArray("histogram", histogram);
+                result.putMap("unlockToDistraction", unlock);
+                promise.resolve(result);
             } catch (Exception e) {
-                android.util.Log.w("AppBlocking", "Method 1 failed: " + e.getMessage());
+                promise.reject("SWITCH_ANALYTICS_ERROR", e.getMessage());
             }
-            
-            // METHOD 2: Get all installed applications (alternative approach)
+        });
+    }
+
+    @ReactMethod
+    public void resetSwitchAnalytics(Promise promise) {
+        backgroundExecutor.execute(() -> {
             try {
-                List<ApplicationInfo> applications = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-                android.util.Log.d("AppBlocking", "Method 2 - getInstalledApplications found: " + applications.size());
-                
-                for (ApplicationInfo appInfo : applications) {
-                    totalFound++;
-                    processApp(pm, appInfo.packageName, currentPackage, appList, processedPackages);
+                SwitchAnalytics analytics = SwitchAnalytics.get(reactContext);
+                analytics.reset();
+                analytics.save();
+                promise.resolve(true);
+            } catch (Exception e) {
+                promise.reject("SWITCH_ANALYTICS_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Blocked attempts in [fromTime, toTime) from the native history, with the top apps
+     * Resolves with { total, apps: [{ packageName, count }] } sorted by count
+     */
+    @ReactMethod
+    public void getBlockingHistory(double fromTime, double toTime, int appLimit, Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                Map<String, Long> perPackage = new HashMap<>();
+                long total = BlockingHistory.get(reactContext).count((long) fromTime, (long) toTime, perPackage);
+                List<Map.Entry<String, Long>> ranked = new ArrayList<>(perPackage.entrySet());
+                Collections.sort(ranked, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+                WritableArray apps = Arguments.createArray();
+                for (Map.Entry<String, Long> entry : ranked.subList(0, Math.min(Math.max(0, appLimit), ranked.size()))) {
+                    WritableMap app = Arguments.createMap();
+                    app.putString("packageName", entry.getKey());
+                    app.putDouble("count", entry.getValue());
+                    apps.pushMap(app);
                 }
+                WritableMap result = Arguments.createMap();
+                result.putDouble("total", total);
+                result.putArray("apps", apps);
+                promise.resolve(result);
             } catch (Exception e) {
-                android.util.Log.w("AppBlocking", "Method 2 failed: " + e.getMessage());
+                promise.reject("BLOCKING_HISTORY_ERROR", e.getMessage());
             }
-            
-            // METHOD 3: Query launcher apps specifically (finds user-facing apps)
+        });
+    }
+
+    /**
+     * Blocked attempts per local day for days consecutive days starting with the day of fromTime
+     */
+    @ReactMethod
+    public void getBlockingDailyCounts(double fromTime, int days, Promise promise) {
+        backgroundExecutor.execute(() -> {
             try {
-                Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-                mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
-                List<ResolveInfo> launcherApps = pm.queryIntentActivities(mainIntent, 0);
-                android.util.Log.d("AppBlocking", "Method 3 - queryIntentActivities found: " + launcherApps.size());
-                
-                for (ResolveInfo resolveInfo : launcherApps) {
-                    if (resolveInfo.activityInfo != null) {
-                        totalFound++;
-                        processApp(pm, resolveInfo.activityInfo.packageName, currentPackage, appList, processedPackages);
-                    }
+                WritableArray result = Arguments.createArray();
+                for (long count : BlockingHistory.get(reactContext).dailyCounts((long) fromTime, Math.max(0, days))) {
+                    result.pushDouble(count);
                 }
+                promise.resolve(result);
             } catch (Exception e) {
-                android.util.Log.w("AppBlocking", "Method 3 failed: " + e.getMessage());
+                promise.reject("BLOCKING_HISTORY_ERROR", e.getMessage());
             }
-            
-            // METHOD 4: Query browsable apps (finds apps that can open web links)
+        });
+    }
+
+    /**
+     * One-time import of attempts recorded in JS storage: [{ timestamp (ms), packageName }]
+     * Resolves with the number imported
+     */
+    @ReactMethod
+    public void importBlockingAttempts(ReadableArray attempts, Promise promise) {
+        backgroundExecutor.execute(() -> {
             try {
-                Intent browserIntent = new Intent(Intent.ACTION_VIEW, android.net.Uri.parse("https://example.com"));
-                List<ResolveInfo> browserApps = pm.queryIntentActivities(browserIntent, PackageManager.MATCH_ALL);
-                android.util.Log.d("AppBlocking", "Method 4 - browser apps found: " + browserApps.size());
-                
-                for (ResolveInfo resolveInfo : browserApps) {
-                    if (resolveInfo.activityInfo != null) {
-                        totalFound++;
-                        processApp(pm, resolveInfo.activityInfo.packageName, currentPackage, appList, processedPackages);
-                    }
+                int size = attempts.size();
+                long[] times = new long[size];
+                String[] packageNames = new String[size];
+                for (int i = 0; i < size; i++) {
+                    ReadableMap attempt = attempts.getMap(i);
+                    times[i] = (long) attempt.getDouble("timestamp");
+                    packageNames[i] = attempt.hasKey("packageName") && !attempt.isNull("packageName")
+                        ? attempt.getString("packageName") : "unknown";
+                }
+                promise.resolve(BlockingHistory.get(reactContext).importAll(times, packageNames, System.currentTimeMillis()));
+            } catch (Exception e) {
+                promise.reject("BLOCKING_HISTORY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void clearBlockingHistory(Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                BlockingHistory.get(reactContext).clear();
+                promise.resolve(true);
+            } catch (Exception e) {
+                promise.reject("BLOCKING_HISTORY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Debug method: size and shape of the native blocking history
+     */
+    @ReactMethod
+    public void getBlockingHistoryStats(Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                BlockingHistory history = BlockingHistory.get(reactContext);
+                history.preload();
+                WritableMap result = Arguments.createMap();
+                result.putDouble("bytes", history.getStoredBytes());
+                result.putDouble("loadMs", history.getLoadMs());
+                result.putInt("rawAttempts", history.getRawCount());
+                result.putInt("hours", history.getHourCount());
+                result.putInt("days", history.getDayCount());
+                result.putInt("packages", history.getPackageCount());
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("BLOCKING_HISTORY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Replace the domains blocked in browsers during focus sessions
+     * Subdomains are covered ("example.com" blocks "m.example.com"). Resolves with the
+     * number of distinct valid domains kept.
+     */
+    @ReactMethod
+    public void setBlockedDomains(ReadableArray domains, Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                List<String> entries = new ArrayList<>(domains.size());
+                for (int i = 0; i < domains.size(); i++) {
+                    entries.add(domains.getString(i));
                 }
+                promise.resolve(BrowserDomainBlocker.get(reactContext).setDomains(entries));
             } catch (Exception e) {
-                android.util.Log.w("AppBlocking", "Method 4 failed: " + e.getMessage());
+                promise.reject("BLOCKED_DOMAINS_ERROR", e.getMessage());
             }
+        });
+    }
+
+    /**
+     * Replace the blocked domains with a domain list or hosts file at path
+     * Resolves with the number of distinct valid domains
+     */
+    @ReactMethod
+    public void importBlockedDomains(String path, Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                promise.resolve(BrowserDomainBlocker.get(reactContext).importFrom(new File(path)));
+            } catch (Exception e) {
+                promise.reject("BLOCKED_DOMAINS_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getBlockedDomainCount(Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                BrowserDomainBlocker blocker = BrowserDomainBlocker.get(reactContext);
+                blocker.ensureLoaded();
+                promise.resolve(blocker.getDomainCount());
+            } catch (Exception e) {
+                promise.reject("BLOCKED_DOMAINS_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Debug method: cost of URL bar checks on the accessibility thread and of the last blocklist build
+     */
+    @ReactMethod
+    public void getDomainCheckStats(Promise promise) {
+        try {
+            BrowserDomainBlocker blocker = BrowserDomainBlocker.get(reactContext);
+            WritableMap result = Arguments.createMap();
+            result.putDouble("checks", blocker.getCheckCount());
+            result.putDouble("averageMs", blocker.getAverageCheckMs());
+            result.putDouble("maxMs", blocker.getMaxCheckMs());
+            result.putInt("domains", blocker.getDomainCount());
+            result.putDouble("buildMs", blocker.getBuildMs());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("DOMAIN_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Most recent finished focus sessions, newest first
+     */
+    @ReactMethod
+    public void getFocusSessions(int limit, Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            for (SessionLedger.Record record : SessionLedger.get(reactContext).getRecent(Math.max(0, limit))) {
+                WritableMap map = Arguments.createMap();
+                map.putDouble("startTime", record.startTime);
+                map.putDouble("plannedEndTime", record.plannedEndTime);
+                map.putDouble("actualEndTime", record.actualEndTime);
+                map.putInt("attempts", record.attempts);
+                map.putString("origin", FOCUS_ORIGINS[record.origin]);
+                map.putString("endReason", FOCUS_END_REASONS[record.reason]);
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("FOCUS_SESSIONS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Set the duration of the preset session started from the Quick Settings tile
+     */
+    @ReactMethod
+    public void setQuickSessionMinutes(int minutes, Promise promise) {
+        try {
+            if (minutes <= 0) {
+                promise.reject("INVALID_DURATION", "Quick session must last at least a minute");
+                return;
+            }
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            prefs.edit().putInt(QuickSessions.KEY_QUICK_SESSION_MINUTES, minutes).apply();
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("QUICK_SESSION_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getQuickSessionMinutes(Promise promise) {
+        try {
+            promise.resolve(QuickSessions.getMinutes(reactContext));
+        } catch (Exception e) {
+            promise.reject("QUICK_SESSION_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method: tap-to-blocking latency of sessions started from the Quick Settings tile
+     */
+    @ReactMethod
+    public void getTapLatencyStats(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            result.putInt("count", TapLatencyStats.getCount());
+            result.putDouble("medianMs", TapLatencyStats.getMedianMs());
+            result.putDouble("maxMs", TapLatencyStats.getMaxMs());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("LATENCY_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method: counters of the background queue behind the accessibility service
+     */
+    @ReactMethod
+    public void getSideEffectStats(Promise promise) {
+        try {
+            SideEffectQueue queue = SideEffectQueue.get();
+            WritableMap result = Arguments.createMap();
+            result.putInt("pending", queue.getPendingCount());
+            result.putDouble("executed", queue.getExecutedCount());
+            result.putDouble("dropped", queue.getDroppedCount());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SIDE_EFFECT_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method: per-subscriber queue metrics of the blocking event bus
+     */
+    @ReactMethod
+    public void getEventBusStats(Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            for (BlockingEventBus.Subscription subscription : BlockingEventBus.get().getSubscriptions()) {
+                WritableMap map = Arguments.createMap();
+                map.putString("name", subscription.getName());
+                map.putInt("capacity", subscription.getCapacity());
+                map.putString("dropPolicy", subscription.getPolicy() == BlockingEventBus.DROP_OLDEST ? "oldest" : "newest");
+                map.putDouble("published", subscription.getPublishedCount());
+                map.putDouble("delivered", subscription.getDeliveredCount());
+                map.putDouble("dropped", subscription.getDroppedCount());
+                map.putDouble("failed", subscription.getFailedCount());
+                map.putDouble("lag", subscription.getLag());
+                map.putDouble("maxLag", subscription.getMaxLag());
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("EVENT_BUS_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method: start recording accessibility events and blocking decisions to a file
+     * Resolves with the recording path; replay it offline with BlockingReplay
+     */
+    @ReactMethod
+    public void startEventRecording(Promise promise) {
+        try {
+            File directory = new File(reactContext.getFilesDir(), "recordings");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                promise.reject("RECORDING_ERROR", "Cannot create " + directory);
+                return;
+            }
+            File file = new File(directory, "events-" + System.currentTimeMillis() + ".abrec");
+            BlockingEventRecorder.start(file);
+            promise.resolve(file.getAbsolutePath());
+        } catch (Exception e) {
+            promise.reject("RECORDING_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Debug method: stop recording; resolves with the path, event count and file size
+     */
+    @ReactMethod
+    public void stopEventRecording(Promise promise) {
+        try {
+            File file = BlockingEventRecorder.getFile();
+            int events = BlockingEventRecorder.stop();
+            if (events < 0 || file == null) {
+                promise.resolve(null);
+                return;
+            }
+            WritableMap result = Arguments.createMap();
+            result.putString("path", file.getAbsolutePath());
+            result.putInt("events", events);
+            result.putDouble("bytes", file.length());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("RECORDING_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Get list of installed apps that can be blocked - COMPREHENSIVE APPROACH
+     * Returns metadata only; icons are fetched per visible row via getAppIcons
+     */
+    @ReactMethod
+    public void getInstalledApps(Promise promise) {
+        backgroundExecutor.execute(() -> loadInstalledApps(promise));
+    }
+
+    private void loadInstalledApps(Promise promise) {
+        try {
+            android.util.Log.d("AppBlocking", "=== Starting getInstalledApps (LauncherApps catalog) ===");
+            
+            String currentPackage = reactContext.getPackageName();
+            WritableArray appList = Arguments.createArray();
+            
+            List<AppCatalog.Entry> entries = getAppCatalog().loadLaunchableApps();
+            android.util.Log.d("AppBlocking", "Launchable apps across profiles: " + entries.size());
             
-            android.util.Log.d("AppBlocking", "=== getInstalledApps COMPREHENSIVE Summary ===");
-            android.util.Log.d("AppBlocking", "Total apps found (all methods): " + totalFound);
-            android.util.Log.d("AppBlocking", "Unique packages processed: " + processedPackages.size());
+            for (AppCatalog.Entry entry : entries) {
+                processCatalogEntry(entry, currentPackage, appList);
+            }
+            
+            android.util.Log.d("AppBlocking", "=== getInstalledApps Summary ===");
             android.util.Log.d("AppBlocking", "Final app list size: " + appList.size());
-            android.util.Log.d("AppBlocking", "Apps added to list: " + addedToList);
             
             promise.resolve(appList);
         } catch (Exception e) {
@@ -301,28 +903,19 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
     
     /**
-     * Process a single app package and add it to the list if appropriate
+     * Process a single catalog entry and add it to the list if appropriate
+     * Catalog entries are launchable by construction, so no launch intent lookup is needed
      */
-    private void processApp(PackageManager pm, String packageName, String currentPackage, 
-                           WritableArray appList, Set<String> processedPackages) {
-        // Skip if already processed (avoid duplicates)
-        if (processedPackages.contains(packageName)) {
-            return;
-        }
-        processedPackages.add(packageName);
+    private void processCatalogEntry(AppCatalog.Entry entry, String currentPackage, WritableArray appList) {
+        String packageName = entry.packageName;
+        String appName = entry.label;
         
         // Skip our own app
         if (packageName.equals(currentPackage)) {
-            android.util.Log.d("AppBlocking", "Skipped own app: " + packageName);
             return;
         }
         
         try {
-            ApplicationInfo appInfo = pm.getApplicationInfo(packageName, 0);
-            String appName = pm.getApplicationLabel(appInfo).toString();
-            
-            android.util.Log.v("AppBlocking", "Processing: " + packageName + " -> " + appName);
-            
             // Skip apps with empty or very short names
             if (appName == null || appName.trim().length() < 2) {
                 android.util.Log.v("AppBlocking", "Skipped invalid name: " + packageName + " (name: '" + appName + "')");
@@ -330,42 +923,26 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
             }
             
             // Use comprehensive filtering logic
-            if (shouldFilterApp(packageName, appName, appInfo)) {
+            if (shouldFilterApp(packageName, appName, entry.applicationInfo, true)) {
                 android.util.Log.v("AppBlocking", "Filtered out: " + packageName + " (" + appName + ")");
                 return;
             }
             
-            // Only include apps that have launch intents (user-launchable apps)
-            Intent launchIntent = pm.getLaunchIntentForPackage(packageName);
-            if (launchIntent == null) {
-                android.util.Log.v("AppBlocking", "No launch intent: " + packageName + " (" + appName + ")");
-                return;
-            }
-            
-            // Include user apps and blockable system apps
-            android.util.Log.v("AppBlocking", "Including app: " + packageName + " (" + appName + ")");
-            
-            // Get app icon as base64
-            String iconBase64 = getAppIconBase64(pm, packageName);
-            
             WritableMap appMap = Arguments.createMap();
+            appMap.putString("key", entry.key);
             appMap.putString("packageName", packageName);
             appMap.putString("appName", appName);
-            appMap.putString("icon", iconBase64);
-            
-            appList.pushMap(appMap);
-            
-            // Log popular apps if found
-            if (packageName.contains("youtube") || packageName.contains("instagram") || 
-                packageName.contains("discord") || packageName.contains("facebook") ||
-                packageName.contains("twitter") || packageName.contains("snapchat") ||
-                packageName.contains("tiktok") || packageName.contains("musically") ||
-                packageName.contains("reddit") || packageName.contains("whatsapp") ||
-                packageName.contains("spotify") || packageName.contains("netflix") ||
-                packageName.contains("chrome") || packageName.contains("browser")) {
-                android.util.Log.i("AppBlocking", "FOUND POPULAR APP: " + packageName + " (" + appName + ")");
+            appMap.putBoolean("isWorkProfile", entry.isWorkProfile);
+            appMap.putDouble("userSerial", entry.userSerial);
+            String category = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? AppCategoryIndex.categoryName(entry.applicationInfo.category) : null;
+            if (category != null) {
+                appMap.putString("category", category);
+            } else {
+                appMap.putNull("category");
             }
             
+            appList.pushMap(appMap);
         } catch (Exception e) {
             android.util.Log.w("AppBlocking", "Error processing " + packageName + ": " + e.getMessage());
         }
@@ -411,6 +988,106 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * Save the categories ("social", "game", "video", ...) blocked on top of the selected apps
+     * Expanded natively from ApplicationInfo.category, so newly installed apps are covered too
+     */
+    @ReactMethod
+    public void saveBlockedCategories(ReadableArray categories, Promise promise) {
+        try {
+            int mask = 0;
+            for (int i = 0; i < categories.size(); i++) {
+                int category = AppCategoryIndex.categoryFromName(categories.getString(i));
+                if (category == AppCategoryIndex.CATEGORY_UNDEFINED) {
+                    promise.reject("INVALID_CATEGORY", "Unknown app category: " + categories.getString(i));
+                    return;
+                }
+                mask |= 1 << category;
+            }
+            
+            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            prefs.edit().putInt(KEY_SELECTED_CATEGORY_MASK, mask).apply();
+            
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("SAVE_CATEGORIES_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the categories blocked on top of the selected apps
+     */
+    @ReactMethod
+    public void getBlockedCategories(Promise promise) {
+        try {
+            int mask = getSelectedCategoryMask();
+            WritableArray categories = Arguments.createArray();
+            for (int category = 0; category < 32; category++) {
+                String name = AppCategoryIndex.categoryName(category);
+                if (name != null && (mask & (1 << category)) != 0) {
+                    categories.pushString(name);
+                }
+            }
+            promise.resolve(categories);
+        } catch (Exception e) {
+            promise.reject("GET_CATEGORIES_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Set a daily foreground time budget for an app; once used up the app is blocked until midnight
+     * Enforced by the accessibility service, so it applies without an active session or JS running
+     */
+    @ReactMethod
+    public void setAppBudget(String appKey, int minutesPerDay, Promise promise) {
+        try {
+            if (minutesPerDay <= 0) {
+                promise.reject("INVALID_BUDGET", "Budget must be at least one minute");
+                return;
+            }
+            AppUsageBudgets.get(reactContext).setBudget(AppCatalog.packageOf(appKey), minutesPerDay * 60 * 1000L);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("SET_BUDGET_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the daily budget of an app
+     */
+    @ReactMethod
+    public void removeAppBudget(String appKey, Promise promise) {
+        try {
+            AppUsageBudgets.get(reactContext).removeBudget(AppCatalog.packageOf(appKey));
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("REMOVE_BUDGET_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Get all daily budgets with today's usage and remaining time
+     */
+    @ReactMethod
+    public void getAppBudgets(Promise promise) {
+        try {
+            List<AppUsageBudgets.Budget> budgets = AppUsageBudgets.get(reactContext)
+                .getBudgets(SystemClock.elapsedRealtime(), System.currentTimeMillis());
+            WritableArray result = Arguments.createArray();
+            for (AppUsageBudgets.Budget budget : budgets) {
+                WritableMap map = Arguments.createMap();
+                map.putString("packageName", budget.packageName);
+                map.putDouble("limitMs", budget.limitMs);
+                map.putDouble("usedMs", budget.usedMs);
+                map.putDouble("remainingMs", budget.getRemainingMs());
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("GET_BUDGETS_ERROR", e.getMessage());
+        }
+    }
+
     /**
      * Debug method to check specific popular apps
      */
@@ -740,13 +1417,18 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
      * NEW APPROACH: Only include user-installed apps to dramatically improve performance
      */
     private boolean shouldFilterApp(String packageName, String appName, ApplicationInfo appInfo) {
-        // Check if it's a system app
-        boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
-        
         // Get launch intent to check if app is user-launchable
         PackageManager pm = reactContext.getPackageManager();
         Intent launchIntent = pm.getLaunchIntentForPackage(packageName);
-        boolean hasLaunchIntent = launchIntent != null;
+        return shouldFilterApp(packageName, appName, appInfo, launchIntent != null);
+    }
+
+    /**
+     * Same as above when launchability is already known (e.g. from the LauncherApps catalog)
+     */
+    private boolean shouldFilterApp(String packageName, String appName, ApplicationInfo appInfo, boolean hasLaunchIntent) {
+        // Check if it's a system app
+        boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
         
         // RESTRICTIVE APPROACH: Filter out ALL system apps except for a few user-facing ones
         // This dramatically reduces the list from ~248 apps to ~20-50 user apps
@@ -813,86 +1495,153 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
 
     /**
-     * Get app icon as base64 encoded string
+     * Get icons for a batch of app keys, typically the rows currently on screen
+     * Resolves a map of key -> base64 WebP (badged for work apps); cancelled keys are omitted.
+     * sizePx must be positive and is capped at AppIconRenderer.MAX_ICON_SIZE_PX.
      */
-    private String getAppIconBase64(PackageManager pm, String packageName) {
+    @ReactMethod
+    public void getAppIcons(ReadableArray appKeys, int sizePx, Promise promise) {
+        if (sizePx <= 0) {
+            promise.reject("INVALID_SIZE", "Icon size must be positive, got " + sizePx);
+            return;
+        }
         try {
-            Drawable icon = pm.getApplicationIcon(packageName);
-            Bitmap bitmap = drawableToBitmap(icon);
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, baos);
-            byte[] imageBytes = baos.toByteArray();
-            
-            return Base64.encodeToString(imageBytes, Base64.DEFAULT);
+            sizePx = Math.min(sizePx, AppIconRenderer.MAX_ICON_SIZE_PX);
+            List<String> keys = new ArrayList<>(appKeys.size());
+            for (int i = 0; i < appKeys.size(); i++) {
+                keys.add(appKeys.getString(i));
+            }
+
+            getIconLoader().load(keys, sizePx, icons -> {
+                WritableMap result = Arguments.createMap();
+                for (Map.Entry<String, String> entry : icons.entrySet()) {
+                    result.putString(entry.getKey(), entry.getValue());
+                }
+                promise.resolve(result);
+            });
         } catch (Exception e) {
-            return "";
+            promise.reject("GET_ICONS_ERROR", e.getMessage());
         }
     }
 
     /**
-     * Convert drawable to bitmap
+     * Cancel pending icon loads for apps that scrolled out of view
      */
-    private Bitmap drawableToBitmap(Drawable drawable) {
-        if (drawable instanceof BitmapDrawable) {
-            return ((BitmapDrawable) drawable).getBitmap();
+    @ReactMethod
+    public void cancelAppIcons(ReadableArray appKeys) {
+        List<String> keys = new ArrayList<>(appKeys.size());
+        for (int i = 0; i < appKeys.size(); i++) {
+            keys.add(appKeys.getString(i));
         }
+        getIconLoader().cancel(keys);
+    }
 
-        int width = drawable.getIntrinsicWidth();
-        int height = drawable.getIntrinsicHeight();
-        
-        // Limit icon size to reduce memory usage
-        int maxSize = 128;
-        if (width > maxSize || height > maxSize) {
-            float ratio = Math.min((float) maxSize / width, (float) maxSize / height);
-            width = (int) (width * ratio);
-            height = (int) (height * ratio);
+    private synchronized AppIconLoader getIconLoader() {
+        if (iconLoader == null) {
+            iconLoader = new AppIconLoader(reactContext, getAppCatalog());
         }
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-        drawable.draw(canvas);
-
-        return bitmap;
+        return iconLoader;
     }
 
-    private void saveBlockedApps(Set<String> apps) {
-        SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().putStringSet(KEY_BLOCKED_APPS, apps).apply();
+    private synchronized AppCatalog getAppCatalog() {
+        if (appCatalog == null) {
+            appCatalog = new AppCatalog(reactContext);
+        }
+        return appCatalog;
     }
 
-    private void saveBlockingEndTime(long endTime) {
-        SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().putLong(KEY_BLOCKING_END_TIME, endTime).apply();
-    }
+    /**
+     * Debug method comparing the legacy PNG icon path with the WebP pipeline
+     * Reports average bytes and milliseconds per icon for both, and how many icons missed the byte budget
+     */
+    @ReactMethod
+    public void benchmarkIconPipeline(int maxApps, Promise promise) {
+        backgroundExecutor.execute(() -> {
+            try {
+                PackageManager pm = reactContext.getPackageManager();
+                Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+                mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+                List<ResolveInfo> launcherApps = pm.queryIntentActivities(mainIntent, 0);
 
-    private long getBlockingEndTime() {
-        SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getLong(KEY_BLOCKING_END_TIME, 0);
+                AppIconRenderer renderer = new AppIconRenderer(reactContext);
+                int sizePx = renderer.dpToPx(AppIconRenderer.DEFAULT_ICON_SIZE_DP);
+                Set<String> seen = new HashSet<>();
+                int count = 0;
+                long legacyBytes = 0;
+                long legacyNanos = 0;
+
+                for (ResolveInfo resolveInfo : launcherApps) {
+                    if (count >= maxApps) break;
+                    if (resolveInfo.activityInfo == null || !seen.add(resolveInfo.activityInfo.packageName)) {
+                        continue;
+                    }
+                    try {
+                        Drawable icon = pm.getApplicationIcon(resolveInfo.activityInfo.packageName);
+                        long start = SystemClock.elapsedRealtimeNanos();
+                        legacyBytes += AppIconRenderer.encodeLegacyPng(icon).length;
+                        legacyNanos += SystemClock.elapsedRealtimeNanos() - start;
+                        renderer.render(icon, sizePx);
+                        count++;
+                    } catch (Exception e) {
+                        android.util.Log.w("AppBlocking", "Benchmark skipped " + resolveInfo.activityInfo.packageName + ": " + e.getMessage());
+                    }
+                }
+                renderer.trimPool();
+
+                WritableMap result = Arguments.createMap();
+                result.putInt("iconCount", count);
+                result.putInt("iconSizePx", sizePx);
+                if (count > 0) {
+                    result.putDouble("legacyAvgBytes", (double) legacyBytes / count);
+                    result.putDouble("legacyAvgMs", legacyNanos / 1e6 / count);
+                    result.putDouble("pipelineAvgBytes", (double) renderer.getRenderedBytes() / count);
+                    result.putDouble("pipelineAvgMs", renderer.getRenderedNanos() / 1e6 / count);
+                }
+                result.putInt("pipelineOverBudget", (int) renderer.getOverBudgetCount());
+                android.util.Log.i("AppBlocking", "Icon benchmark: " + result.toString());
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("BENCHMARK_ERROR", e.getMessage());
+            }
+        });
     }
 
-    private void clearBlockingData() {
+    private int getSelectedCategoryMask() {
         SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().clear().apply();
+        return prefs.getInt(KEY_SELECTED_CATEGORY_MASK, 0);
     }
 
     /**
-     * Static method to send blocking attempt events from accessibility service
+     * Forward blocked attempts and detection backend switches to JS
      */
-    public static void sendBlockingAttemptEvent(String packageName) {
-        if (instance != null && instance.hasAttemptCallback) {
-            try {
-                WritableMap params = Arguments.createMap();
-                params.putString("packageName", packageName);
-                params.putLong("timestamp", System.currentTimeMillis());
-                
-                instance.reactContext
+    private void onBusEvent(BlockingEventBus.Event event) {
+        try {
+            WritableMap params = Arguments.createMap();
+            params.putDouble("timestamp", event.wallTime);
+            if (event.type == BlockingEventBus.TYPE_BLOCKED) {
+                if (!hasAttemptCallback) {
+                    return;
+                }
+                params.putString("packageName", event.packageName);
+                reactContext
                     .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                     .emit("AppBlockingAttempt", params);
-            } catch (Exception e) {
-                // Silently handle any errors to prevent crashes
+            } else if (event.type == BlockingEventBus.TYPE_SESSIONS_CHANGED) {
+                params.putInt("sessionCount", event.category);
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("AppBlockingSessionsChanged", params);
+            } else {
+                params.putString("backend", event.detail);
+                // Also re-sent by the usage stats backend when a blocked app could not be left
+                params.putBoolean("canLeaveBlockedApps", UsageStatsDetector.canLeaveBlockedApps(reactContext));
+                params.putInt("homeLaunchFailures", UsageStatsDetector.getHomeLaunchFailures());
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("AppBlockingBackendChanged", params);
             }
+        } catch (Exception e) {
+            // No active React instance; JS can still poll getDetectionBackend
         }
     }
 
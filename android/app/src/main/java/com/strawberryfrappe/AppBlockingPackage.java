@@ -10,13 +10,14 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * React Native package to register the AppBlockingModule
+ * React Native package to register the AppBlockingModule and CalendarEventStoreModule
  */
 public class AppBlockingPackage implements ReactPackage {
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
         modules.add(new AppBlockingModule(reactContext));
+        modules.add(new CalendarEventStoreModule(reactContext));
         return modules;
     }
 
@@ -0,0 +1,159 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Catalog of launchable apps across all user profiles (personal and work)
+ * Sourced from LauncherApps, which returns launchable activities with labels
+ * and badged icons in a few bulk calls instead of one lookup per package.
+ *
+ * Apps are identified by a key: the plain package name for the current user
+ * (so existing selections keep working) or "package#serial" for other profiles.
+ */
+public class AppCatalog {
+    private static final char PROFILE_SEPARATOR = '#';
+
+    public static class Entry {
+        public final String key;
+        public final String packageName;
+        public final String label;
+        public final long userSerial;
+        public final boolean isWorkProfile;
+        public final ApplicationInfo applicationInfo;
+
+        Entry(String key, String packageName, String label, long userSerial,
+              boolean isWorkProfile, ApplicationInfo applicationInfo) {
+            this.key = key;
+            this.packageName = packageName;
+            this.label = label;
+            this.userSerial = userSerial;
+            this.isWorkProfile = isWorkProfile;
+            this.applicationInfo = applicationInfo;
+        }
+    }
+
+    private final Context context;
+    private final LauncherApps launcherApps;
+    private final UserManager userManager;
+
+    public AppCatalog(Context context) {
+        this.context = context.getApplicationContext();
+        this.launcherApps = (LauncherApps) this.context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        this.userManager = (UserManager) this.context.getSystemService(Context.USER_SERVICE);
+    }
+
+    /**
+     * Load one entry per (profile, package) that has a launchable activity
+     */
+    public List<Entry> loadLaunchableApps() {
+        List<Entry> entries = new ArrayList<>();
+        UserHandle currentUser = Process.myUserHandle();
+
+        for (UserHandle user : getProfiles()) {
+            long serial = userManager.getSerialNumberForUser(user);
+            boolean isCurrentUser = currentUser.equals(user);
+            Set<String> seenPackages = new HashSet<>();
+
+            List<LauncherActivityInfo> activities;
+            try {
+                activities = launcherApps.getActivityList(null, user);
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Activity list failed for profile " + serial + ": " + e.getMessage());
+                continue;
+            }
+
+            for (LauncherActivityInfo activity : activities) {
+                ApplicationInfo appInfo = activity.getApplicationInfo();
+                String packageName = appInfo.packageName;
+                if (!seenPackages.add(packageName)) {
+                    continue;
+                }
+                CharSequence label = activity.getLabel();
+                entries.add(new Entry(
+                    keyFor(packageName, serial, isCurrentUser),
+                    packageName,
+                    label != null ? label.toString() : packageName,
+                    serial,
+                    !isCurrentUser,
+                    appInfo
+                ));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the launcher icon for an app key, badged for work profile apps
+     */
+    public Drawable getBadgedIcon(String key) {
+        UserHandle user = userForKey(key);
+        if (user != null) {
+            try {
+                List<LauncherActivityInfo> activities = launcherApps.getActivityList(packageOf(key), user);
+                if (!activities.isEmpty()) {
+                    return activities.get(0).getBadgedIcon(0);
+                }
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Badged icon lookup failed for " + key + ": " + e.getMessage());
+            }
+        }
+        try {
+            return context.getPackageManager().getApplicationIcon(packageOf(key));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private List<UserHandle> getProfiles() {
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                return launcherApps.getProfiles();
+            }
+            return userManager.getUserProfiles();
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Profile lookup failed: " + e.getMessage());
+            return Collections.singletonList(Process.myUserHandle());
+        }
+    }
+
+    private UserHandle userForKey(String key) {
+        int separator = key.lastIndexOf(PROFILE_SEPARATOR);
+        if (separator < 0) {
+            return Process.myUserHandle();
+        }
+        try {
+            return userManager.getUserForSerialNumber(Long.parseLong(key.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Build the app key for a package in a given profile
+     */
+    public static String keyFor(String packageName, long userSerial, boolean isCurrentUser) {
+        return isCurrentUser ? packageName : packageName + PROFILE_SEPARATOR + userSerial;
+    }
+
+    /**
+     * Extract the package name from an app key
+     */
+    public static String packageOf(String key) {
+        int separator = key.lastIndexOf(PROFILE_SEPARATOR);
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+}
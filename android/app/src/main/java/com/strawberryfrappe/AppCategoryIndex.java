@@ -0,0 +1,160 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.UserHandle;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide package -> ApplicationInfo.category index
+ * Built once in the background and kept current through LauncherApps callbacks,
+ * so blocking profiles like "all social apps" also cover apps installed later.
+ * Categories are combined into an int mask (bit n = category n) for O(1) checks.
+ */
+public class AppCategoryIndex {
+    public static final int CATEGORY_UNDEFINED = -1;
+
+    // Index = ApplicationInfo.CATEGORY_* value
+    private static final String[] CATEGORY_NAMES = {
+        "game", "audio", "video", "image", "social", "news", "maps", "productivity", "accessibility"
+    };
+
+    private static AppCategoryIndex instance;
+
+    private final Context context;
+    private final Map<String, Integer> categoryByPackage = new ConcurrentHashMap<>();
+    private boolean tracking = false;
+
+    private final LauncherApps.Callback packageCallback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            updatePackage(packageName);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            updatePackage(packageName);
+        }
+
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            // Drops the entry unless the package is still installed for this user
+            updatePackage(packageName);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for (String packageName : packageNames) {
+                updatePackage(packageName);
+            }
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            // Keep entries; unavailable packages (e.g. on unmounted storage) cannot be launched anyway
+        }
+    };
+
+    private AppCategoryIndex(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized AppCategoryIndex get(Context context) {
+        if (instance == null) {
+            instance = new AppCategoryIndex(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Build the index in the background and start listening for package changes
+     */
+    public synchronized void startTracking() {
+        if (tracking) {
+            return;
+        }
+        tracking = true;
+
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        if (launcherApps != null) {
+            // Package lookups in the callbacks stay off the main (accessibility) thread
+            launcherApps.registerCallback(packageCallback, new Handler(SideEffectQueue.get().getLooper()));
+        }
+
+        new Thread(this::rebuild, "AppCategoryIndex").start();
+    }
+
+    private void rebuild() {
+        try {
+            PackageManager pm = context.getPackageManager();
+            List<ApplicationInfo> applications = pm.getInstalledApplications(0);
+            for (ApplicationInfo appInfo : applications) {
+                categoryByPackage.put(appInfo.packageName, categoryOf(appInfo));
+            }
+            android.util.Log.d("AppBlocking", "Category index built for " + applications.size() + " packages");
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Category index build failed: " + e.getMessage());
+        }
+    }
+
+    private void updatePackage(String packageName) {
+        try {
+            ApplicationInfo appInfo = context.getPackageManager().getApplicationInfo(packageName, 0);
+            categoryByPackage.put(packageName, categoryOf(appInfo));
+        } catch (PackageManager.NameNotFoundException e) {
+            categoryByPackage.remove(packageName);
+        }
+    }
+
+    private static int categoryOf(ApplicationInfo appInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return appInfo.category;
+        }
+        return CATEGORY_UNDEFINED;
+    }
+
+    /**
+     * Get the category of a package, or CATEGORY_UNDEFINED if unknown
+     */
+    public int getCategory(String packageName) {
+        Integer category = categoryByPackage.get(packageName);
+        return category != null ? category : CATEGORY_UNDEFINED;
+    }
+
+    /**
+     * Check whether a package falls into any category of the given mask
+     */
+    public boolean matches(String packageName, int categoryMask) {
+        if (categoryMask == 0) {
+            return false;
+        }
+        int category = getCategory(packageName);
+        return category >= 0 && category < 32 && (categoryMask & (1 << category)) != 0;
+    }
+
+    /**
+     * Get the JS-facing name for a category, or null if unknown
+     */
+    public static String categoryName(int category) {
+        return category >= 0 && category < CATEGORY_NAMES.length ? CATEGORY_NAMES[category] : null;
+    }
+
+    /**
+     * Convert a category name ("social", "game", ...) to its ApplicationInfo value
+     */
+    public static int categoryFromName(String name) {
+        for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+            if (CATEGORY_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return CATEGORY_UNDEFINED;
+    }
+}
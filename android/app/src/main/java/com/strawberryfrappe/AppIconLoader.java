@@ -0,0 +1,148 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads app icons in batches for the rows the user is currently looking at
+ * Newer batches are served first (they belong to what is on screen now) and
+ * rows that scrolled out of view can be cancelled before they are rendered.
+ * Rows are identified by AppCatalog keys so work profile apps get badged icons.
+ */
+public class AppIconLoader {
+    public interface Callback {
+        void onComplete(Map<String, String> iconsByKey);
+    }
+
+    private final AppCatalog catalog;
+    private final AppIconRenderer renderer;
+    private final ThreadPoolExecutor worker;
+    private final AtomicLong batchSequence = new AtomicLong();
+    private final List<IconBatch> activeBatches = new CopyOnWriteArrayList<>();
+
+    public AppIconLoader(Context context, AppCatalog catalog) {
+        this.catalog = catalog;
+        this.renderer = new AppIconRenderer(context);
+        // Single worker so the renderer and its bitmap pool stay thread-confined
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Queue icons for the given app keys; the callback receives every icon that was not cancelled
+     */
+    public void load(List<String> appKeys, int sizePx, Callback callback) {
+        IconBatch batch = new IconBatch(batchSequence.incrementAndGet(), sizePx, appKeys.size(), callback);
+        if (appKeys.isEmpty()) {
+            callback.onComplete(batch.results);
+            return;
+        }
+        activeBatches.add(batch);
+        for (int i = 0; i < appKeys.size(); i++) {
+            worker.execute(new IconTask(batch, appKeys.get(i), i));
+        }
+    }
+
+    /**
+     * Skip pending icons for apps that are no longer visible
+     */
+    public void cancel(Collection<String> appKeys) {
+        for (IconBatch batch : activeBatches) {
+            batch.cancelled.addAll(appKeys);
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+        activeBatches.clear();
+    }
+
+    private String renderIcon(String appKey, int sizePx) {
+        try {
+            Drawable icon = catalog.getBadgedIcon(appKey);
+            return icon != null ? renderer.renderBase64(icon, sizePx) : null;
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Icon load failed for " + appKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void finishBatch(IconBatch batch) {
+        activeBatches.remove(batch);
+        if (activeBatches.isEmpty()) {
+            renderer.trimPool();
+            if (renderer.getRenderedCount() > 0) {
+                android.util.Log.d("AppBlocking", String.format("Icons rendered: %d, avg %d bytes, avg %.2f ms, %d over budget",
+                    renderer.getRenderedCount(),
+                    renderer.getRenderedBytes() / renderer.getRenderedCount(),
+                    renderer.getRenderedNanos() / 1e6 / renderer.getRenderedCount(),
+                    renderer.getOverBudgetCount()));
+            }
+        }
+        batch.callback.onComplete(batch.results);
+    }
+
+    private static class IconBatch {
+        final long sequence;
+        final int sizePx;
+        final Callback callback;
+        final Map<String, String> results = new ConcurrentHashMap<>();
+        final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+        final AtomicInteger remaining;
+
+        IconBatch(long sequence, int sizePx, int size, Callback callback) {
+            this.sequence = sequence;
+            this.sizePx = sizePx;
+            this.callback = callback;
+            this.remaining = new AtomicInteger(size);
+        }
+    }
+
+    /**
+     * Newest batch first, then the order the caller listed the apps in
+     */
+    private class IconTask implements Runnable, Comparable<IconTask> {
+        final IconBatch batch;
+        final String appKey;
+        final int index;
+
+        IconTask(IconBatch batch, String appKey, int index) {
+            this.batch = batch;
+            this.appKey = appKey;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            if (!batch.cancelled.contains(appKey)) {
+                String icon = renderIcon(appKey, batch.sizePx);
+                if (icon != null && !icon.isEmpty()) {
+                    batch.results.put(appKey, icon);
+                }
+            }
+            if (batch.remaining.decrementAndGet() == 0) {
+                finishBatch(batch);
+            }
+        }
+
+        @Override
+        public int compareTo(IconTask other) {
+            if (batch.sequence != other.batch.sequence) {
+                return batch.sequence > other.batch.sequence ? -1 : 1;
+            }
+            return Integer.compare(index, other.index);
+        }
+    }
+}
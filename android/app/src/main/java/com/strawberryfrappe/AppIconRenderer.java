@@ -0,0 +1,196 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Renders app icons to small, compact base64 payloads for the JS side
+ * Always draws at the requested size, reuses bitmaps from a small pool and
+ * encodes to lossy WebP under a per-icon byte budget.
+ * Not thread-safe: confine each instance to a single worker thread.
+ */
+public class AppIconRenderer {
+    public static final int DEFAULT_ICON_SIZE_DP = 32;
+    public static final int DEFAULT_BYTE_BUDGET = 4 * 1024;
+    // Largest edge rendered; bigger icons cannot stay sharp within the byte budget
+    public static final int MAX_ICON_SIZE_PX = 192;
+
+    private static final int MAX_POOLED_BITMAPS = 4;
+    private static final int[] QUALITY_STEPS = {80, 65, 50, 35};
+
+    private final float density;
+    private final int byteBudget;
+    private final ArrayDeque<Bitmap> bitmapPool = new ArrayDeque<>();
+    private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(DEFAULT_BYTE_BUDGET);
+    private final Canvas canvas = new Canvas();
+
+    // Running totals for performance reporting
+    private long renderedCount = 0;
+    private long renderedBytes = 0;
+    private long renderedNanos = 0;
+    // Icons still over the byte budget at the lowest quality step
+    private long overBudgetCount = 0;
+
+    public AppIconRenderer(Context context) {
+        this(context, DEFAULT_BYTE_BUDGET);
+    }
+
+    public AppIconRenderer(Context context, int byteBudget) {
+        this.density = context.getResources().getDisplayMetrics().density;
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Convert a dp size to pixels for the current display
+     */
+    public int dpToPx(int dp) {
+        return Math.max(1, Math.round(dp * density));
+    }
+
+    /**
+     * Render and encode an icon at the given pixel size, returning base64 WebP
+     */
+    public String renderBase64(Drawable drawable, int sizePx) {
+        byte[] bytes = render(drawable, sizePx);
+        return bytes.length == 0 ? "" : Base64.encodeToString(bytes, Base64.NO_WRAP);
+    }
+
+    /**
+     * Render and encode an icon at the given pixel size, returning raw WebP bytes
+     */
+    public byte[] render(Drawable drawable, int sizePx) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        Bitmap bitmap = acquireBitmap(sizePx);
+        try {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.setBitmap(bitmap);
+            drawable.setBounds(0, 0, sizePx, sizePx);
+            drawable.draw(canvas);
+            canvas.setBitmap(null);
+
+            byte[] bytes = encodeWithinBudget(bitmap);
+            renderedCount++;
+            renderedBytes += bytes.length;
+            renderedNanos += SystemClock.elapsedRealtimeNanos() - start;
+            return bytes;
+        } finally {
+            releaseBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Encode lossy WebP, stepping quality down until the icon fits the byte budget
+     * If even the lowest step does not fit, that result is returned and counted as over budget.
+     */
+    private byte[] encodeWithinBudget(Bitmap bitmap) {
+        Bitmap.CompressFormat format = lossyWebpFormat();
+        byte[] best = null;
+        for (int quality : QUALITY_STEPS) {
+            encodeBuffer.reset();
+            bitmap.compress(format, quality, encodeBuffer);
+            best = encodeBuffer.toByteArray();
+            if (best.length <= byteBudget) {
+                return best;
+            }
+        }
+        if (best == null) {
+            return new byte[0];
+        }
+        overBudgetCount++;
+        android.util.Log.w("AppBlocking", "Icon " + bitmap.getWidth() + "px is " + best.length
+            + " bytes at quality " + QUALITY_STEPS[QUALITY_STEPS.length - 1] + ", over the " + byteBudget + " byte budget");
+        return best;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat lossyWebpFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        // Pre-R WEBP is lossy for any quality below 100
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    private Bitmap acquireBitmap(int sizePx) {
+        Bitmap pooled = bitmapPool.pollFirst();
+        while (pooled != null) {
+            if (!pooled.isRecycled() && pooled.getWidth() == sizePx && pooled.getHeight() == sizePx) {
+                return pooled;
+            }
+            pooled.recycle();
+            pooled = bitmapPool.pollFirst();
+        }
+        return Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        if (bitmapPool.size() < MAX_POOLED_BITMAPS) {
+            bitmapPool.addFirst(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Drop pooled bitmaps, e.g. when the app list is no longer visible
+     */
+    public void trimPool() {
+        Bitmap bitmap;
+        while ((bitmap = bitmapPool.pollFirst()) != null) {
+            bitmap.recycle();
+        }
+    }
+
+    public long getRenderedCount() {
+        return renderedCount;
+    }
+
+    public long getRenderedBytes() {
+        return renderedBytes;
+    }
+
+    public long getRenderedNanos() {
+        return renderedNanos;
+    }
+
+    public long getOverBudgetCount() {
+        return overBudgetCount;
+    }
+
+    /**
+     * Previous encoding path (full-resolution bitmap, PNG at quality 100)
+     * Kept only so the benchmark can report before/after numbers on device.
+     */
+    static byte[] encodeLegacyPng(Drawable drawable) {
+        Bitmap bitmap;
+        if (drawable instanceof BitmapDrawable) {
+            bitmap = ((BitmapDrawable) drawable).getBitmap();
+        } else {
+            int width = drawable.getIntrinsicWidth();
+            int height = drawable.getIntrinsicHeight();
+            int maxSize = 128;
+            if (width > maxSize || height > maxSize) {
+                float ratio = Math.min((float) maxSize / width, (float) maxSize / height);
+                width = (int) (width * ratio);
+                height = (int) (height * ratio);
+            }
+            bitmap = Bitmap.createBitmap(Math.max(1, width), Math.max(1, height), Bitmap.Config.ARGB_8888);
+            Canvas legacyCanvas = new Canvas(bitmap);
+            drawable.setBounds(0, 0, legacyCanvas.getWidth(), legacyCanvas.getHeight());
+            drawable.draw(legacyCanvas);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, baos);
+        return baos.toByteArray();
+    }
+}
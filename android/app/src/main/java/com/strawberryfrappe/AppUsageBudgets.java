@@ -0,0 +1,313 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-app daily foreground time budgets ("30 minutes of YouTube per day")
+ * Fed by the accessibility service on every foreground switch; time is measured
+ * with the monotonic clock into primitive per-package counters. Usage is
+ * checkpointed to disk periodically rather than per event and resets at local midnight.
+ */
+public class AppUsageBudgets {
+    private static final String PREFS_NAME = "app_usage_budgets";
+    private static final String KEY_LIMITS = "limits";
+    private static final String KEY_USAGE = "usage";
+    private static final String KEY_DAY_START = "day_start";
+
+    public static class Budget {
+        public final String packageName;
+        public final long limitMs;
+        public final long usedMs;
+
+        Budget(String packageName, long limitMs, long usedMs) {
+            this.packageName = packageName;
+            this.limitMs = limitMs;
+            this.usedMs = usedMs;
+        }
+
+        public long getRemainingMs() {
+            return Math.max(0, limitMs - usedMs);
+        }
+    }
+
+    private static AppUsageBudgets instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Integer> slotByPackage = new HashMap<>();
+    private String[] packages = new String[8];
+    private long[] limitMs = new long[8];
+    private long[] usedMs = new long[8];
+    private int slotCount = 0;
+
+    // Budgeted package in the foreground (-1 if none) and when it got there (elapsedRealtime)
+    private int foregroundSlot = -1;
+    private long foregroundSince = 0;
+    private int pausedSlot = -1;
+
+    // Local day the counters belong to, as wall-clock bounds
+    private long dayStart;
+    private long nextDayStart;
+    private boolean dirty = false;
+    private Runnable onBudgetsChanged;
+
+    private AppUsageBudgets(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized AppUsageBudgets get(Context context) {
+        if (instance == null) {
+            instance = new AppUsageBudgets(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Called when budgets are added or removed (e.g. to reschedule the exhaustion timer)
+     */
+    public synchronized void setOnBudgetsChanged(Runnable listener) {
+        onBudgetsChanged = listener;
+    }
+
+    /**
+     * Record a foreground switch; returns true if the new package has used up its budget
+     */
+    public synchronized boolean onForeground(String packageName, long nowElapsed, long nowWall) {
+        rollOver(nowElapsed, nowWall);
+        charge(nowElapsed);
+        pausedSlot = -1;
+        Integer slot = slotByPackage.get(packageName);
+        foregroundSlot = slot != null && limitMs[slot] > 0 ? slot : -1;
+        foregroundSince = nowElapsed;
+        return foregroundSlot >= 0 && usedMs[foregroundSlot] >= limitMs[foregroundSlot];
+    }
+
+    /**
+     * Stop charging (screen off); the paused package resumes on resume()
+     */
+    public synchronized void pause(long nowElapsed, long nowWall) {
+        rollOver(nowElapsed, nowWall);
+        charge(nowElapsed);
+        pausedSlot = foregroundSlot;
+        foregroundSlot = -1;
+    }
+
+    /**
+     * Resume charging the package that was in the foreground before pause()
+     */
+    public synchronized void resume(long nowElapsed, long nowWall) {
+        rollOver(nowElapsed, nowWall);
+        if (pausedSlot >= 0 && foregroundSlot < 0) {
+            foregroundSlot = pausedSlot;
+            foregroundSince = nowElapsed;
+        }
+        pausedSlot = -1;
+    }
+
+    /**
+     * Package whose budget is currently being charged, or null
+     */
+    public synchronized String getForegroundPackage() {
+        return foregroundSlot >= 0 ? packages[foregroundSlot] : null;
+    }
+
+    /**
+     * Milliseconds until the foreground package runs out of budget, or -1 if none is charged
+     */
+    public synchronized long getForegroundRemainingMs(long nowElapsed) {
+        if (foregroundSlot < 0) {
+            return -1;
+        }
+        long used = usedMs[foregroundSlot] + (nowElapsed - foregroundSince);
+        return Math.max(0, limitMs[foregroundSlot] - used);
+    }
+
+    /**
+     * Fold in-progress time into the counters and persist them if anything changed
+     */
+    public void checkpoint(long nowElapsed, long nowWall) {
+        String[] savedPackages;
+        long[] savedUsage;
+        long savedDayStart;
+        synchronized (this) {
+            rollOver(nowElapsed, nowWall);
+            charge(nowElapsed);
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            savedPackages = Arrays.copyOf(packages, slotCount);
+            savedUsage = Arrays.copyOf(usedMs, slotCount);
+            savedDayStart = dayStart;
+        }
+        // Serialize outside the lock so foreground switches never wait on it
+        saveUsage(savedPackages, savedUsage, savedDayStart);
+    }
+
+    public void setBudget(String packageName, long limit) {
+        Runnable listener;
+        synchronized (this) {
+            int slot = slotFor(packageName);
+            limitMs[slot] = limit;
+            saveLimits();
+            listener = onBudgetsChanged;
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public void removeBudget(String packageName) {
+        Runnable listener;
+        synchronized (this) {
+            Integer slot = slotByPackage.get(packageName);
+            if (slot == null || limitMs[slot] == 0) {
+                return;
+            }
+            limitMs[slot] = 0;
+            if (foregroundSlot == slot) {
+                foregroundSlot = -1;
+            }
+            saveLimits();
+            listener = onBudgetsChanged;
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Current budgets with today's usage, including time spent in the foreground app so far
+     */
+    public synchronized List<Budget> getBudgets(long nowElapsed, long nowWall) {
+        rollOver(nowElapsed, nowWall);
+        List<Budget> budgets = new ArrayList<>();
+        for (int i = 0; i < slotCount; i++) {
+            if (limitMs[i] <= 0) {
+                continue;
+            }
+            long used = usedMs[i];
+            if (i == foregroundSlot) {
+                used += nowElapsed - foregroundSince;
+            }
+            budgets.add(new Budget(packages[i], limitMs[i], used));
+        }
+        return budgets;
+    }
+
+    private void charge(long nowElapsed) {
+        if (foregroundSlot >= 0 && nowElapsed > foregroundSince) {
+            usedMs[foregroundSlot] += nowElapsed - foregroundSince;
+            dirty = true;
+        }
+        foregroundSince = nowElapsed;
+    }
+
+    /**
+     * Reset the counters once local midnight has passed (or the clock went back a day)
+     */
+    private void rollOver(long nowElapsed, long nowWall) {
+        if (nowWall >= dayStart && nowWall < nextDayStart) {
+            return;
+        }
+        Arrays.fill(usedMs, 0, slotCount, 0);
+        setDay(nowWall);
+        // Only the part of the current stint after midnight counts toward the new day
+        if (foregroundSlot >= 0) {
+            foregroundSince = Math.max(foregroundSince, nowElapsed - (nowWall - dayStart));
+        }
+        dirty = true;
+    }
+
+    private void setDay(long nowWall) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(nowWall);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        dayStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        nextDayStart = calendar.getTimeInMillis();
+    }
+
+    private int slotFor(String packageName) {
+        Integer slot = slotByPackage.get(packageName);
+        if (slot != null) {
+            return slot;
+        }
+        if (slotCount == packages.length) {
+            int capacity = slotCount * 2;
+            packages = Arrays.copyOf(packages, capacity);
+            limitMs = Arrays.copyOf(limitMs, capacity);
+            usedMs = Arrays.copyOf(usedMs, capacity);
+        }
+        packages[slotCount] = packageName;
+        slotByPackage.put(packageName, slotCount);
+        return slotCount++;
+    }
+
+    private void saveLimits() {
+        try {
+            JSONObject limits = new JSONObject();
+            for (int i = 0; i < slotCount; i++) {
+                if (limitMs[i] > 0) {
+                    limits.put(packages[i], limitMs[i]);
+                }
+            }
+            prefs.edit().putString(KEY_LIMITS, limits.toString()).apply();
+        } catch (JSONException e) {
+            android.util.Log.e("AppBlocking", "Failed to save app budgets: " + e.getMessage());
+        }
+    }
+
+    private void saveUsage(String[] savedPackages, long[] savedUsage, long savedDayStart) {
+        try {
+            JSONObject usage = new JSONObject();
+            for (int i = 0; i < savedPackages.length; i++) {
+                if (savedUsage[i] > 0) {
+                    usage.put(savedPackages[i], savedUsage[i]);
+                }
+            }
+            prefs.edit()
+                .putString(KEY_USAGE, usage.toString())
+                .putLong(KEY_DAY_START, savedDayStart)
+                .apply();
+        } catch (JSONException e) {
+            android.util.Log.e("AppBlocking", "Failed to save app usage: " + e.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        setDay(System.currentTimeMillis());
+        try {
+            JSONObject limits = new JSONObject(prefs.getString(KEY_LIMITS, "{}"));
+            for (Iterator<String> it = limits.keys(); it.hasNext(); ) {
+                String packageName = it.next();
+                limitMs[slotFor(packageName)] = limits.getLong(packageName);
+            }
+            // Usage from an earlier day is dropped
+            if (prefs.getLong(KEY_DAY_START, 0) == dayStart) {
+                JSONObject usage = new JSONObject(prefs.getString(KEY_USAGE, "{}"));
+                for (Iterator<String> it = usage.keys(); it.hasNext(); ) {
+                    String packageName = it.next();
+                    usedMs[slotFor(packageName)] = usage.getLong(packageName);
+                }
+            }
+        } catch (JSONException e) {
+            android.util.Log.e("AppBlocking", "Failed to load app budgets: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.strawberryfrappe;
+
+/**
+ * Time from the window-state event of a blocked app until it is covered, per enforcement mode
+ * Overlay: until the block screen is drawn. Home: until the next window event from another
+ * package (normally the launcher) arrives.
+ */
+public class BlockLatencyStats {
+    public static final String MODE_HOME = "home";
+    public static final String MODE_OVERLAY = "overlay";
+
+    private static final Stat home = new Stat();
+    private static final Stat overlay = new Stat();
+
+    public static class Stat {
+        public int count;
+        public long totalMs;
+        public long maxMs;
+
+        public double getAverageMs() {
+            return count > 0 ? (double) totalMs / count : 0;
+        }
+    }
+
+    public static synchronized void record(String mode, long latencyMs) {
+        Stat stat = MODE_OVERLAY.equals(mode) ? overlay : home;
+        stat.count++;
+        stat.totalMs += latencyMs;
+        stat.maxMs = Math.max(stat.maxMs, latencyMs);
+    }
+
+    /**
+     * Copy of the stats for one mode
+     */
+    public static synchronized Stat get(String mode) {
+        Stat source = MODE_OVERLAY.equals(mode) ? overlay : home;
+        Stat copy = new Stat();
+        copy.count = source.count;
+        copy.totalMs = source.totalMs;
+        copy.maxMs = source.maxMs;
+        return copy;
+    }
+
+    public static synchronized void reset() {
+        home.count = overlay.count = 0;
+        home.totalMs = overlay.totalMs = 0;
+        home.maxMs = overlay.maxMs = 0;
+    }
+}
@@ -0,0 +1,189 @@
+package com.strawberryfrappe;
+
+import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.os.SystemClock;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Full-screen block screen drawn by the accessibility service over a blocked app
+ * The view tree is built and attached once (hidden) when the service connects, so
+ * blocking only flips visibility and sets two texts: the blocked app is covered on
+ * the next frame, without the launcher transition of GLOBAL_ACTION_HOME.
+ * TYPE_ACCESSIBILITY_OVERLAY needs no extra permission. App labels are looked up on
+ * the SideEffectQueue thread and cached, so showing the screen does no binder calls.
+ */
+public class BlockOverlay {
+    private final AccessibilityService service;
+    private final WindowManager windowManager;
+    private LinearLayout root;
+    private TextView appLabelView;
+    private TextView detailView;
+    private String blockedPackage;
+    private final Map<String, String> labels = new ConcurrentHashMap<>();
+
+    public BlockOverlay(AccessibilityService service) {
+        this.service = service;
+        this.windowManager = (WindowManager) service.getSystemService(Context.WINDOW_SERVICE);
+    }
+
+    /**
+     * Build the view tree and attach it hidden; a hidden root has no surface and takes no touches
+     */
+    public void prewarm() {
+        if (root != null) {
+            return;
+        }
+        root = new LinearLayout(service);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setGravity(Gravity.CENTER);
+        root.setBackgroundColor(Color.rgb(18, 18, 24));
+        int padding = dp(32);
+        root.setPadding(padding, padding, padding, padding);
+        root.setVisibility(View.GONE);
+
+        TextView titleView = new TextView(service);
+        titleView.setText("🧘 Stay focused");
+        titleView.setTextColor(Color.WHITE);
+        titleView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 26);
+        titleView.setGravity(Gravity.CENTER);
+        root.addView(titleView);
+
+        appLabelView = new TextView(service);
+        appLabelView.setTextColor(Color.LTGRAY);
+        appLabelView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 18);
+        appLabelView.setGravity(Gravity.CENTER);
+        appLabelView.setPadding(0, dp(16), 0, 0);
+        root.addView(appLabelView);
+
+        detailView = new TextView(service);
+        detailView.setTextColor(Color.GRAY);
+        detailView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        detailView.setGravity(Gravity.CENTER);
+        detailView.setPadding(0, dp(8), 0, dp(32));
+        root.addView(detailView);
+
+        Button homeButton = new Button(service);
+        homeButton.setText("Go home");
+        homeButton.setOnClickListener(v -> {
+            hide();
+            service.performGlobalAction(AccessibilityService.GLOBAL_ACTION_HOME);
+        });
+        root.addView(homeButton, new LinearLayout.LayoutParams(
+            LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+            WindowManager.LayoutParams.MATCH_PARENT,
+            WindowManager.LayoutParams.MATCH_PARENT,
+            WindowManager.LayoutParams.TYPE_ACCESSIBILITY_OVERLAY,
+            WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN,
+            PixelFormat.OPAQUE);
+        try {
+            windowManager.addView(root, params);
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Block overlay unavailable: " + e.getMessage());
+            root = null;
+        }
+    }
+
+    /**
+     * Cover the blocked app; eventTime is the window event's uptime, used to measure latency
+     * Returns false if the overlay could not be attached (caller falls back to HOME)
+     */
+    public boolean show(String packageName, String detail, long eventTime) {
+        if (root == null) {
+            return false;
+        }
+        blockedPackage = packageName;
+        String label = labels.get(packageName);
+        appLabelView.setText((label != null ? label : "This app") + " is blocked");
+        if (label == null) {
+            resolveLabel(packageName);
+        }
+        detailView.setText(detail);
+        if (root.getVisibility() != View.VISIBLE) {
+            root.setVisibility(View.VISIBLE);
+            // First draw of the now-visible overlay marks the moment the app is covered
+            root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    root.getViewTreeObserver().removeOnPreDrawListener(this);
+                    long latency = SystemClock.uptimeMillis() - eventTime;
+                    SideEffectQueue.get().post(() -> BlockLatencyStats.record(BlockLatencyStats.MODE_OVERLAY, latency));
+                    return true;
+                }
+            });
+        }
+        return true;
+    }
+
+    public void hide() {
+        blockedPackage = null;
+        if (root != null && root.getVisibility() != View.GONE) {
+            root.setVisibility(View.GONE);
+        }
+    }
+
+    public boolean isShowing() {
+        return root != null && root.getVisibility() == View.VISIBLE;
+    }
+
+    /**
+     * Package currently covered by the overlay, or null
+     */
+    public String getBlockedPackage() {
+        return blockedPackage;
+    }
+
+    public void release() {
+        if (root != null) {
+            try {
+                windowManager.removeView(root);
+            } catch (Exception e) {
+                // Window already gone with the service
+            }
+            root = null;
+        }
+    }
+
+    /**
+     * Look the label up in the background, then fill it in if that app is still covered
+     */
+    private void resolveLabel(String packageName) {
+        View target = root;
+        SideEffectQueue.get().post(() -> {
+            String label;
+            try {
+                PackageManager pm = service.getPackageManager();
+                label = pm.getApplicationLabel(pm.getApplicationInfo(packageName, 0)).toString();
+            } catch (PackageManager.NameNotFoundException e) {
+                label = packageName;
+            }
+            labels.put(packageName, label);
+            String resolved = label;
+            target.post(() -> {
+                if (packageName.equals(blockedPackage)) {
+                    appLabelView.setText(resolved + " is blocked");
+                }
+            });
+        });
+    }
+
+    private int dp(int value) {
+        return Math.round(value * service.getResources().getDisplayMetrics().density);
+    }
+}
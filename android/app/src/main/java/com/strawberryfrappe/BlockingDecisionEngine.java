@@ -0,0 +1,134 @@
+package com.strawberryfrappe;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Blocking decision for a single window event, free of Android dependencies
+ * The accessibility service and the offline replay harness (BlockingReplay) run the
+ * same code, so a recorded session reproduces exactly what the device decided.
+ * Decisions are reason codes rather than booleans to make replays explainable.
+ */
+public class BlockingDecisionEngine {
+    // AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+    public static final int TYPE_WINDOW_STATE_CHANGED = 0x00000020;
+
+    public static final int PASS = 0;
+    public static final int IGNORE_EVENT_TYPE = 1;
+    public static final int IGNORE_EMPTY_PACKAGE = 2;
+    public static final int IGNORE_TRANSIENT = 3;
+    // Decided by the service outside the engine; recorded but not replayable
+    public static final int IGNORE_COVERED = 4;
+    public static final int ALLOW_NO_SESSION = 10;
+    public static final int ALLOW_EXEMPT = 11;
+    public static final int ALLOW_PERMITTED = 12;
+    public static final int ALLOW_NOT_BLOCKED = 13;
+    public static final int BLOCK_LISTED = 20;
+    public static final int BLOCK_CATEGORY = 21;
+    public static final int BLOCK_NOT_ALLOWED = 22;
+    public static final int BLOCK_BUDGET = 23;
+
+    public interface CategoryLookup {
+        boolean matches(String packageName, int categoryMask);
+    }
+
+    /**
+     * Immutable rules derived from a session snapshot and the system exemptions
+     */
+    public static class Rules {
+        public final long version;
+        public final Set<String> blockedPackages;
+        public final int categoryMask;
+        public final boolean allowlistActive;
+        // Allowed apps plus exemptions; only consulted while an allowlist session runs
+        public final Set<String> permittedPackages;
+        public final Set<String> exemptPackages;
+        public final long latestEndTime;
+
+        public Rules(long version, Set<String> blockedPackages, int categoryMask, boolean allowlistActive,
+                     Set<String> permittedPackages, Set<String> exemptPackages, long latestEndTime) {
+            this.version = version;
+            this.blockedPackages = blockedPackages;
+            this.categoryMask = categoryMask;
+            this.allowlistActive = allowlistActive;
+            this.permittedPackages = permittedPackages;
+            this.exemptPackages = exemptPackages;
+            this.latestEndTime = latestEndTime;
+        }
+
+        public static Rules none() {
+            Set<String> empty = Collections.emptySet();
+            return new Rules(0, empty, 0, false, empty, empty, 0);
+        }
+    }
+
+    private final CategoryLookup categories;
+
+    public BlockingDecisionEngine(CategoryLookup categories) {
+        this.categories = categories;
+    }
+
+    /**
+     * Drop events that never describe an app coming to the foreground
+     * Returns PASS or an IGNORE_* code
+     */
+    public static int filter(int eventType, String packageName, CharSequence className) {
+        if (eventType != TYPE_WINDOW_STATE_CHANGED) {
+            return IGNORE_EVENT_TYPE;
+        }
+        if (packageName == null || packageName.isEmpty()) {
+            return IGNORE_EMPTY_PACKAGE;
+        }
+        // Toasts are drawn on behalf of background apps
+        if (className != null && className.toString().startsWith("android.widget.Toast")) {
+            return IGNORE_TRANSIENT;
+        }
+        return PASS;
+    }
+
+    /**
+     * Decide whether a foreground package must be closed under the given rules at wall time now
+     * Exempt packages (home, System UI, IME, dialer, this app) are never blocked.
+     */
+    public int decide(String packageName, Rules rules, long now) {
+        if (rules == null || now >= rules.latestEndTime) {
+            return ALLOW_NO_SESSION;
+        }
+        if (rules.exemptPackages.contains(packageName)) {
+            return ALLOW_EXEMPT;
+        }
+        if (rules.allowlistActive && !rules.permittedPackages.contains(packageName)) {
+            return BLOCK_NOT_ALLOWED;
+        }
+        if (rules.blockedPackages.contains(packageName)) {
+            return BLOCK_LISTED;
+        }
+        if (categories.matches(packageName, rules.categoryMask)) {
+            return BLOCK_CATEGORY;
+        }
+        return rules.allowlistActive ? ALLOW_PERMITTED : ALLOW_NOT_BLOCKED;
+    }
+
+    public static boolean isBlock(int decision) {
+        return decision >= BLOCK_LISTED;
+    }
+
+    public static String describe(int decision) {
+        switch (decision) {
+            case PASS: return "pass";
+            case IGNORE_EVENT_TYPE: return "ignore:event-type";
+            case IGNORE_EMPTY_PACKAGE: return "ignore:empty-package";
+            case IGNORE_TRANSIENT: return "ignore:transient";
+            case IGNORE_COVERED: return "ignore:covered";
+            case ALLOW_NO_SESSION: return "allow:no-session";
+            case ALLOW_EXEMPT: return "allow:exempt";
+            case ALLOW_PERMITTED: return "allow:permitted";
+            case ALLOW_NOT_BLOCKED: return "allow:not-blocked";
+            case BLOCK_LISTED: return "block:listed";
+            case BLOCK_CATEGORY: return "block:category";
+            case BLOCK_NOT_ALLOWED: return "block:not-allowed";
+            case BLOCK_BUDGET: return "block:budget";
+            default: return "unknown:" + decision;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.strawberryfrappe;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process bus between the blocking detectors and the consumers of what they see
+ * Every subscriber gets its own bounded ring of preallocated events and its own delivery
+ * thread, so a slow consumer (the JS bridge, disk) only ever fills its own ring and never
+ * slows the publisher or the other subscribers. Publishing is lock-free and allocation
+ * free: a slot is claimed with a CAS (the accessibility, usage stats and foreground
+ * service threads all publish), filled in place and handed over through its sequence
+ * number. When a ring is full the subscriber's drop policy decides which event is lost,
+ * and the loss is counted.
+ * The consumer copies each event out and frees its slot before calling the subscriber.
+ */
+public class BlockingEventBus {
+    // Event types, usable as a subscription mask
+    public static final int TYPE_BLOCKED = 1;
+    public static final int TYPE_FOREGROUND = 1 << 1;
+    public static final int TYPE_UNLOCK = 1 << 2;
+    public static final int TYPE_SCREEN_OFF = 1 << 3;
+    public static final int TYPE_BACKEND_CHANGED = 1 << 4;
+    public static final int TYPE_SESSIONS_CHANGED = 1 << 5;
+
+    // Drop the event being published; what is queued is delivered in order
+    public static final int DROP_NEWEST = 0;
+    // Discard the oldest queued event to make room; the subscriber sees the latest events
+    public static final int DROP_OLDEST = 1;
+
+    // Drained per turn before the delivery thread yields
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * A published event; only valid during onEvent, copy out what must be kept
+     */
+    public static class Event {
+        public int type;
+        public String packageName;
+        // System.currentTimeMillis() of the event
+        public long wallTime;
+        // SystemClock.elapsedRealtime() of the event
+        public long elapsed;
+        public int category;
+        public boolean exempt;
+        public String detail;
+
+        void set(int type, String packageName, long wallTime, long elapsed, int category, boolean exempt, String detail) {
+            this.type = type;
+            this.packageName = packageName;
+            this.wallTime = wallTime;
+            this.elapsed = elapsed;
+            this.category = category;
+            this.exempt = exempt;
+            this.detail = detail;
+        }
+
+        void copyFrom(Event other) {
+            set(other.type, other.packageName, other.wallTime, other.elapsed, other.category, other.exempt, other.detail);
+        }
+    }
+
+    public interface Subscriber {
+        void onEvent(Event event);
+    }
+
+    private static final class Cell {
+        // Free for the producer at position p when p; readable by the consumer when p + 1
+        volatile long sequence;
+        final Event event = new Event();
+    }
+
+    /**
+     * One subscriber's ring, delivery thread and metrics
+     */
+    public static final class Subscription {
+        private final String name;
+        private final int typeMask;
+        private final int policy;
+        private final Subscriber subscriber;
+        private final Cell[] cells;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        // Owned by the delivery thread
+        private final Event current = new Event();
+
+        // Runs delivery one task at a time; rejects tasks once quit
+        private final Executor executor;
+        private final Runnable quit;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable drainRunnable = this::drain;
+
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong maxLag = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        Subscription(String name, int typeMask, int capacity, int policy, Subscriber subscriber,
+                     Executor executor, Runnable quit) {
+            this.name = name;
+            this.typeMask = typeMask;
+            this.policy = policy;
+            this.subscriber = subscriber;
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            cells = new Cell[size];
+            for (int i = 0; i < size; i++) {
+                cells[i] = new Cell();
+                cells[i].sequence = i;
+            }
+            mask = size - 1;
+            this.executor = executor;
+            this.quit = quit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCapacity() {
+            return cells.length;
+        }
+
+        public int getPolicy() {
+            return policy;
+        }
+
+        public long getPublishedCount() {
+            return published.get();
+        }
+
+        public long getDeliveredCount() {
+            return delivered.get();
+        }
+
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        public long getFailedCount() {
+            return failed.get();
+        }
+
+        /**
+         * Events queued but not yet taken by the subscriber
+         */
+        public long getLag() {
+            return Math.max(0, tail.get() - head.get());
+        }
+
+        public long getMaxLag() {
+            return maxLag.get();
+        }
+
+        boolean offer(int type, String packageName, long wallTime, long elapsed, int category, boolean exempt, String detail) {
+            boolean discarded = false;
+            while (true) {
+                long position = tail.get();
+                Cell cell = cells[(int) (position & mask)];
+                long diff = cell.sequence - position;
+                if (diff == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        cell.event.set(type, packageName, wallTime, elapsed, category, exempt, detail);
+                        cell.sequence = position + 1;
+                        published.incrementAndGet();
+                        recordLag(position + 1 - head.get());
+                        schedule();
+                        return true;
+                    }
+                } else if (diff < 0) {
+                    // Full; discarding once is enough unless the consumer holds the slot right now
+                    if (policy == DROP_OLDEST && !discarded && discardOldest()) {
+                        discarded = true;
+                        continue;
+                    }
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                // Another producer took this slot; try the next one
+            }
+        }
+
+        /**
+         * Free the oldest queued slot without delivering it
+         */
+        private boolean discardOldest() {
+            long position = head.get();
+            Cell cell = cells[(int) (position & mask)];
+            if (cell.sequence != position + 1 || !head.compareAndSet(position, position + 1)) {
+                return false;
+            }
+            cell.sequence = position + cells.length;
+            dropped.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * Copy the oldest event into current and free its slot; false if empty
+         */
+        private boolean poll() {
+            while (true) {
+                long position = head.get();
+                Cell cell = cells[(int) (position & mask)];
+                long diff = cell.sequence - (position + 1);
+                if (diff < 0) {
+                    return false;
+                }
+                if (diff == 0 && head.compareAndSet(position, position + 1)) {
+                    current.copyFrom(cell.event);
+                    cell.event.set(0, null, 0, 0, 0, false, null);
+                    cell.sequence = position + cells.length;
+                    return true;
+                }
+                // A producer discarded this slot meanwhile; retry at the new head
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(drainRunnable);
+                } catch (RejectedExecutionException e) {
+                    // Delivery thread already quit after unsubscribe; what raced in is lost
+                    while (discardOldest()) {
+                        // Counted as dropped
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deliver up to max queued events; returns how many were delivered
+         */
+        private int deliver(int max) {
+            int count = 0;
+            while (count < max && poll()) {
+                count++;
+                try {
+                    subscriber.onEvent(current);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    android.util.Log.w("AppBlocking", "Event subscriber " + name + " failed: " + e.getMessage());
+                }
+                delivered.incrementAndGet();
+            }
+            return count;
+        }
+
+        private void drain() {
+            deliver(MAX_BATCH);
+            scheduled.set(false);
+            // Left over from a full batch, or published between the last poll and the reset
+            long position = head.get();
+            if (cells[(int) (position & mask)].sequence == position + 1) {
+                schedule();
+            }
+        }
+
+        private void recordLag(long lag) {
+            long max;
+            while (lag > (max = maxLag.get())) {
+                if (maxLag.compareAndSet(max, lag)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Deliver everything still queued, then stop the delivery thread
+         * Runs after any drain already posted, so events stay in order.
+         */
+        private void close() {
+            executor.execute(() -> {
+                deliver(Integer.MAX_VALUE);
+                quit.run();
+                // Later publishes find the looper gone and count themselves as dropped
+                scheduled.set(false);
+                while (discardOldest()) {
+                    // Raced in after the last pass
+                }
+            });
+        }
+    }
+
+    private static BlockingEventBus instance;
+
+    // Copy-on-write so publishing never locks
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    // Tests create their own bus; the app shares the instance from get()
+    BlockingEventBus() {
+    }
+
+    public static synchronized BlockingEventBus get() {
+        if (instance == null) {
+            instance = new BlockingEventBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Deliver events of the types in typeMask to subscriber on a dedicated thread
+     * capacity is rounded up to a power of two; policy is DROP_NEWEST or DROP_OLDEST.
+     */
+    public Subscription subscribe(String name, int typeMask, int capacity, int policy, Subscriber subscriber) {
+        HandlerThread thread = new HandlerThread("AppBlockingBus-" + name, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        Handler handler = new Handler(thread.getLooper());
+        return subscribe(name, typeMask, capacity, policy, subscriber, task -> {
+            if (!handler.post(task)) {
+                throw new RejectedExecutionException("Delivery thread of " + name + " has quit");
+            }
+        }, thread::quit);
+    }
+
+    /**
+     * Subscribe with delivery on executor, which must run one task at a time in order
+     * quit is run on the executor after the final drain of an unsubscribe.
+     */
+    synchronized Subscription subscribe(String name, int typeMask, int capacity, int policy, Subscriber subscriber,
+                                        Executor executor, Runnable quit) {
+        Subscription subscription = new Subscription(name, typeMask, capacity, policy, subscriber, executor, quit);
+        Subscription[] updated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        updated[subscriptions.length] = subscription;
+        subscriptions = updated;
+        return subscription;
+    }
+
+    /**
+     * Stop delivering to the subscription; events already queued are delivered first
+     * Events published while the subscription is being removed may still be lost; they
+     * are counted as dropped.
+     */
+    public synchronized void unsubscribe(Subscription subscription) {
+        List<Subscription> remaining = new ArrayList<>(Arrays.asList(subscriptions));
+        if (remaining.remove(subscription)) {
+            subscriptions = remaining.toArray(new Subscription[0]);
+            subscription.close();
+        }
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return Arrays.asList(subscriptions.clone());
+    }
+
+    /**
+     * A blocked attempt was enforced (app closed, covered or domain blocked)
+     */
+    public void publishBlocked(String packageName, long wallTime) {
+        publish(TYPE_BLOCKED, packageName, wallTime, 0, 0, false, null);
+    }
+
+    /**
+     * A window of packageName came to the foreground; exempt apps (launcher) included
+     */
+    public void publishForeground(String packageName, int category, boolean exempt, long wallTime, long elapsed) {
+        publish(TYPE_FOREGROUND, packageName, wallTime, elapsed, category, exempt, null);
+    }
+
+    public void publishUnlock(long wallTime, long elapsed) {
+        publish(TYPE_UNLOCK, null, wallTime, elapsed, 0, false, null);
+    }
+
+    public void publishScreenOff(long wallTime, long elapsed) {
+        publish(TYPE_SCREEN_OFF, null, wallTime, elapsed, 0, false, null);
+    }
+
+    public void publishBackendChanged(String backend, long wallTime) {
+        publish(TYPE_BACKEND_CHANGED, null, wallTime, 0, 0, false, backend);
+    }
+
+    /**
+     * Sessions were added, removed or extended, from any process component (JS, notification, tile)
+     * The number of sessions still active travels in category.
+     */
+    public void publishSessionsChanged(int sessionCount, long wallTime) {
+        publish(TYPE_SESSIONS_CHANGED, null, wallTime, 0, sessionCount, false, null);
+    }
+
+    private void publish(int type, String packageName, long wallTime, long elapsed, int category, boolean exempt, String detail) {
+        for (Subscription subscription : subscriptions) {
+            if ((subscription.typeMask & type) != 0) {
+                subscription.offer(type, packageName, wallTime, elapsed, category, exempt, detail);
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.strawberryfrappe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary log of accessibility events and the blocking rules they were judged by
+ * Plain Java (no Android types) so recordings can be replayed on a desktop JVM.
+ *
+ * Layout: magic "ABRC", version byte, then tagged records. Package and class names are
+ * written once and referenced by varint id; event times are zigzag varint deltas of the
+ * event uptime. A RULES record is written whenever the rules change and carries the
+ * wall-clock time at that point, so replay can rebuild the wall clock from uptime.
+ */
+public class BlockingEventLog {
+    private static final int MAGIC = 0x41425243; // "ABRC"
+    private static final int VERSION = 1;
+
+    private static final int TAG_PACKAGE = 1;
+    private static final int TAG_CLASS = 2;
+    private static final int TAG_CATEGORY = 3;
+    private static final int TAG_RULES = 4;
+    private static final int TAG_EVENT = 5;
+
+    public interface Visitor {
+        void onRules(BlockingDecisionEngine.Rules rules, long uptime, long wallTime);
+
+        void onEvent(int eventType, String packageName, String className, long uptime, int liveDecision);
+    }
+
+    /**
+     * Appends records to a recording file; not thread-safe
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> packageIds = new HashMap<>();
+        private final Map<String, Integer> classIds = new HashMap<>();
+        private final Set<Integer> categorized = new HashSet<>();
+        private BlockingDecisionEngine.Rules lastRules;
+        private long lastUptime = 0;
+        private int eventCount = 0;
+
+        public Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 16 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * Write a RULES record unless these rules were already the latest written
+         */
+        public void writeRules(BlockingDecisionEngine.Rules rules, long uptime, long wallTime) throws IOException {
+            if (rules == null || rules == lastRules) {
+                return;
+            }
+            lastRules = rules;
+            List<Integer> blocked = packageIdsFor(rules.blockedPackages);
+            List<Integer> permitted = packageIdsFor(rules.permittedPackages);
+            List<Integer> exempt = packageIdsFor(rules.exemptPackages);
+
+            out.writeByte(TAG_RULES);
+            writeTime(uptime);
+            writeVarLong(wallTime);
+            writeVarLong(rules.version);
+            writeVarLong(rules.categoryMask & 0xFFFFFFFFL);
+            out.writeBoolean(rules.allowlistActive);
+            writeVarLong(rules.latestEndTime);
+            writeIds(blocked);
+            writeIds(permitted);
+            writeIds(exempt);
+        }
+
+        public void writeEvent(int eventType, String packageName, CharSequence className, long uptime,
+                               int category, int liveDecision) throws IOException {
+            int packageId = packageId(packageName != null ? packageName : "");
+            if (categorized.add(packageId)) {
+                out.writeByte(TAG_CATEGORY);
+                writeVarLong(packageId);
+                writeVarLong(zigzag(category));
+            }
+            int classId = className != null ? classId(className.toString()) : 0;
+
+            out.writeByte(TAG_EVENT);
+            writeTime(uptime);
+            writeVarLong(eventType);
+            writeVarLong(packageId);
+            writeVarLong(classId);
+            writeVarLong(liveDecision);
+            eventCount++;
+        }
+
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private List<Integer> packageIdsFor(Set<String> packages) throws IOException {
+            List<Integer> ids = new ArrayList<>(packages.size());
+            for (String packageName : packages) {
+                ids.add(packageId(packageName));
+            }
+            return ids;
+        }
+
+        private int packageId(String packageName) throws IOException {
+            Integer id = packageIds.get(packageName);
+            if (id == null) {
+                id = packageIds.size();
+                packageIds.put(packageName, id);
+                out.writeByte(TAG_PACKAGE);
+                out.writeUTF(packageName);
+            }
+            return id;
+        }
+
+        // Class id 0 means "no class name"
+        private int classId(String className) throws IOException {
+            Integer id = classIds.get(className);
+            if (id == null) {
+                id = classIds.size() + 1;
+                classIds.put(className, id);
+                out.writeByte(TAG_CLASS);
+                out.writeUTF(className);
+            }
+            return id;
+        }
+
+        private void writeIds(List<Integer> ids) throws IOException {
+            writeVarLong(ids.size());
+            for (int id : ids) {
+                writeVarLong(id);
+            }
+        }
+
+        private void writeTime(long uptime) throws IOException {
+            writeVarLong(zigzag(uptime - lastUptime));
+            lastUptime = uptime;
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Read a recording, passing every record to the visitor in order
+     * Returns the package -> category map recorded alongside the events.
+     */
+    public static Map<String, Integer> read(File file, Visitor visitor) throws IOException {
+        Map<String, Integer> categories = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a blocking event recording: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+
+            List<String> packages = new ArrayList<>();
+            List<String> classes = new ArrayList<>();
+            classes.add(null);
+            long uptime = 0;
+
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) {
+                    break;
+                }
+                switch (tag) {
+                    case TAG_PACKAGE:
+                        packages.add(in.readUTF());
+                        break;
+                    case TAG_CLASS:
+                        classes.add(in.readUTF());
+                        break;
+                    case TAG_CATEGORY: {
+                        String packageName = packages.get((int) readVarLong(in));
+                        categories.put(packageName, (int) unzigzag(readVarLong(in)));
+                        break;
+                    }
+                    case TAG_RULES: {
+                        uptime += unzigzag(readVarLong(in));
+                        long wallTime = readVarLong(in);
+                        long rulesVersion = readVarLong(in);
+                        int categoryMask = (int) readVarLong(in);
+                        boolean allowlistActive = in.readBoolean();
+                        long latestEndTime = readVarLong(in);
+                        Set<String> blocked = readPackageSet(in, packages);
+                        Set<String> permitted = readPackageSet(in, packages);
+                        Set<String> exempt = readPackageSet(in, packages);
+                        visitor.onRules(new BlockingDecisionEngine.Rules(rulesVersion, blocked, categoryMask,
+                            allowlistActive, permitted, exempt, latestEndTime), uptime, wallTime);
+                        break;
+                    }
+                    case TAG_EVENT: {
+                        uptime += unzigzag(readVarLong(in));
+                        int eventType = (int) readVarLong(in);
+                        String packageName = packages.get((int) readVarLong(in));
+                        String className = classes.get((int) readVarLong(in));
+                        int liveDecision = (int) readVarLong(in);
+                        visitor.onEvent(eventType, packageName, className, uptime, liveDecision);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Corrupt recording: unknown tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // Truncated tail (e.g. the process died while recording); keep what was read
+        }
+        return categories;
+    }
+
+    private static Set<String> readPackageSet(DataInputStream in, List<String> packages) throws IOException {
+        int size = (int) readVarLong(in);
+        Set<String> result = new HashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            result.add(packages.get((int) readVarLong(in)));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Corrupt recording: varint too long");
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
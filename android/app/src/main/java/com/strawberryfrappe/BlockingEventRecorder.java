@@ -0,0 +1,68 @@
+package com.strawberryfrappe;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Debug recorder for the accessibility event stream
+ * Started and stopped from the app; the accessibility service feeds it every event
+ * with the decision it made, so user reports can be replayed offline with BlockingReplay.
+ */
+public class BlockingEventRecorder {
+    private static volatile boolean recording = false;
+    private static BlockingEventLog.Writer writer;
+    private static File file;
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    public static synchronized void start(File target) throws IOException {
+        stop();
+        writer = new BlockingEventLog.Writer(target);
+        file = target;
+        recording = true;
+        android.util.Log.d("AppBlocking", "Event recording started: " + target);
+    }
+
+    /**
+     * Stop recording; returns the number of events written, or -1 if nothing was recording
+     */
+    public static synchronized int stop() {
+        if (writer == null) {
+            return -1;
+        }
+        recording = false;
+        int events = writer.getEventCount();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Failed to close event recording: " + e.getMessage());
+        }
+        writer = null;
+        android.util.Log.d("AppBlocking", "Event recording stopped: " + events + " events in " + file);
+        return events;
+    }
+
+    public static synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Record one event with the rules in force and the decision taken
+     */
+    public static synchronized void record(BlockingDecisionEngine.Rules rules, int eventType, String packageName,
+                                           CharSequence className, long uptime, long wallTime,
+                                           int category, int decision) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.writeRules(rules, uptime, wallTime);
+            writer.writeEvent(eventType, packageName, className, uptime, category, decision);
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Event recording failed, stopping: " + e.getMessage());
+            stop();
+        }
+    }
+}
@@ -7,28 +7,48 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.SystemClock;
 import androidx.core.app.NotificationCompat;
 
 /**
  * Foreground service to maintain app blocking state in background
  * Ensures blocking continues even when main app is closed or device sleeps
+ * Runs while any blocking session is active and shows the latest session deadline.
+ * Picks the detection backend: the accessibility service when it is running, otherwise
+ * usage stats polling if usage access is granted. Switches are reported to JS.
+ * The notification's "+15 min" and "End" actions are handled here without starting JS.
  */
 public class BlockingForegroundService extends Service {
     private static final String CHANNEL_ID = "app_blocking_channel";
     private static final int NOTIFICATION_ID = 1001;
-    private static final String PREFS_NAME = "app_blocking_prefs";
-    private static final String KEY_BLOCKING_END_TIME = "blocking_end_time";
+    private static final long EXTEND_MS = 15 * 60 * 1000;
+    
+    static final String ACTION_EXTEND = "com.strawberryfrappe.action.EXTEND_SESSIONS";
+    static final String ACTION_END = "com.strawberryfrappe.action.END_SESSIONS";
+    // elapsedRealtime of the tap that started a native session, for TapLatencyStats
+    static final String EXTRA_TAP_TIME = "tap_time";
+    
+    public static final String BACKEND_ACCESSIBILITY = "accessibility";
+    public static final String BACKEND_USAGE_STATS = "usage_stats";
+    public static final String BACKEND_NONE = "none";
+    
+    // Backend enforcing the current sessions; none while the service is stopped
+    private static volatile String backend = BACKEND_NONE;
     
     private Handler handler = new Handler();
     private Runnable endBlockingRunnable;
     private Runnable notificationUpdateRunnable;
     private long endTime = 0;
-    private int durationMinutes = 0;
+    private BlockingSessionStore sessionStore;
+    private UsageStatsDetector usageStatsDetector;
+    private long pendingTapTime = 0;
+
+    // Session changes can come from any thread; re-evaluate on the service handler
+    private final BlockingSessionStore.Listener sessionListener = snapshot -> handler.post(this::refreshSessions);
 
     // Binder for local service communication
     private final IBinder binder = new LocalBinder();
@@ -43,28 +63,65 @@ public class BlockingForegroundService extends Service {
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
+        sessionStore = BlockingSessionStore.get(this);
+        sessionStore.addListener(sessionListener);
+        usageStatsDetector = new UsageStatsDetector(this);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        // Sessions live in the store, so a sticky restart (null intent) resumes the same way
+        endTime = sessionStore.snapshot(System.currentTimeMillis()).latestEndTime;
+        
+        // Start foreground with notification
+        startForeground(NOTIFICATION_ID, createNotification());
+        
         if (intent != null) {
-            durationMinutes = intent.getIntExtra("duration_minutes", 0);
-            endTime = intent.getLongExtra("end_time", 0);
-            
-            // Start foreground with notification
-            startForeground(NOTIFICATION_ID, createNotification());
-            
-            // Schedule automatic stop when timer ends
-            scheduleAutoStop();
-            
-            // Start periodic notification updates
-            startNotificationUpdates();
+            // Calendar sessions follow their event, so the actions only touch sessions the user started
+            if (ACTION_EXTEND.equals(intent.getAction())) {
+                sessionStore.extendOrigin(BlockingSessionStore.ORIGIN_MANUAL, EXTEND_MS);
+                sessionStore.extendOrigin(BlockingSessionStore.ORIGIN_QUICK, EXTEND_MS);
+            } else if (ACTION_END.equals(intent.getAction())) {
+                sessionStore.removeOrigin(BlockingSessionStore.ORIGIN_MANUAL, SessionLedger.REASON_NOTIFICATION);
+                sessionStore.removeOrigin(BlockingSessionStore.ORIGIN_QUICK, SessionLedger.REASON_NOTIFICATION);
+            }
+            pendingTapTime = intent.getLongExtra(EXTRA_TAP_TIME, pendingTapTime);
         }
         
+        refreshSessions();
+        
         // Service should restart if killed
         return START_STICKY;
     }
 
+    /**
+     * Pick up the current session set; stop once no session is left
+     */
+    private void refreshSessions() {
+        BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(System.currentTimeMillis());
+        if (!snapshot.isActive()) {
+            // Drop the notification even if the module is still bound
+            selectBackend(false);
+            stopForeground(true);
+            stopSelf();
+            return;
+        }
+        endTime = snapshot.latestEndTime;
+        selectBackend(true);
+        
+        // Blocking is live for the tapped session: rules are stored and a backend is running
+        if (pendingTapTime > 0) {
+            TapLatencyStats.record(SystemClock.elapsedRealtime() - pendingTapTime);
+            pendingTapTime = 0;
+        }
+        
+        // Schedule a re-check at the next session deadline
+        scheduleNextBoundary(snapshot.nextBoundary);
+        
+        // Start periodic notification updates
+        startNotificationUpdates();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return binder;
@@ -73,13 +130,46 @@ public class BlockingForegroundService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        // Sessions are not cleared here: they end on their own deadline or when stopped explicitly
+        sessionStore.removeListener(sessionListener);
+        selectBackend(false);
         if (endBlockingRunnable != null) {
             handler.removeCallbacks(endBlockingRunnable);
         }
         if (notificationUpdateRunnable != null) {
             handler.removeCallbacks(notificationUpdateRunnable);
         }
-        clearBlockingData();
+    }
+
+    /**
+     * Backend currently enforcing sessions: accessibility, usage_stats or none
+     */
+    public static String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Run the usage stats detector only while sessions are active and accessibility is not running
+     */
+    private void selectBackend(boolean active) {
+        String selected = BACKEND_NONE;
+        if (active) {
+            if (AppBlockingAccessibilityService.isRunning()) {
+                selected = BACKEND_ACCESSIBILITY;
+            } else if (UsageStatsDetector.hasUsageAccess(this)) {
+                selected = BACKEND_USAGE_STATS;
+            }
+        }
+        if (BACKEND_USAGE_STATS.equals(selected)) {
+            usageStatsDetector.start();
+        } else {
+            usageStatsDetector.stop();
+        }
+        if (!selected.equals(backend)) {
+            backend = selected;
+            android.util.Log.i("AppBlocking", "Detection backend: " + selected);
+            BlockingEventBus.get().publishBackendChanged(selected, System.currentTimeMillis());
+        }
     }
 
     /**
@@ -133,41 +223,53 @@ public class BlockingForegroundService extends Service {
             }
         }
 
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
             .setContentTitle("🧘 Focus Mode Active")
             .setContentText(contentText)
             .setSmallIcon(android.R.drawable.ic_lock_idle_alarm) // Using system icon
             .setContentIntent(pendingIntent)
             .setOngoing(true)
             .setPriority(NotificationCompat.PRIORITY_LOW)
-            .setCategory(NotificationCompat.CATEGORY_SERVICE)
-            .build();
+            .setCategory(NotificationCompat.CATEGORY_SERVICE);
+        if (hasUserSessions()) {
+            builder.addAction(android.R.drawable.ic_input_add, "+15 min", actionIntent(ACTION_EXTEND, 1))
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "End", actionIntent(ACTION_END, 2));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Whether a manual or quick session is active, the only kind the notification actions change
+     */
+    private boolean hasUserSessions() {
+        for (BlockingSessionStore.Session session : sessionStore.getSessions()) {
+            if (BlockingSessionStore.ORIGIN_MANUAL.equals(session.origin)
+                || BlockingSessionStore.ORIGIN_QUICK.equals(session.origin)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Schedule automatic service stop when blocking timer ends
+     * Notification action delivered back to this service
      */
-    private void scheduleAutoStop() {
+    private PendingIntent actionIntent(String action, int requestCode) {
+        Intent intent = new Intent(this, BlockingForegroundService.class).setAction(action);
+        return PendingIntent.getService(this, requestCode, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * Schedule a session re-check when the earliest session ends
+     */
+    private void scheduleNextBoundary(long boundary) {
         if (endBlockingRunnable != null) {
             handler.removeCallbacks(endBlockingRunnable);
         }
         
-        long delay = endTime - System.currentTimeMillis();
-        if (delay > 0) {
-            endBlockingRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    // Clear blocking data before stopping service
-                    clearBlockingData();
-                    stopSelf();
-                }
-            };
-            handler.postDelayed(endBlockingRunnable, delay);
-        } else {
-            // Timer already ended, stop immediately
-            clearBlockingData();
-            stopSelf();
-        }
+        endBlockingRunnable = this::refreshSessions;
+        handler.postDelayed(endBlockingRunnable, Math.max(0, boundary - System.currentTimeMillis()));
     }
 
     /**
@@ -181,14 +283,15 @@ public class BlockingForegroundService extends Service {
         notificationUpdateRunnable = new Runnable() {
             @Override
             public void run() {
-                // Check if timer has ended
+                // Check if the last session has ended
                 if (endTime <= System.currentTimeMillis()) {
-                    // Timer ended, clear data and stop service
-                    clearBlockingData();
-                    stopSelf();
+                    refreshSessions();
                     return;
                 }
                 
+                // The accessibility service can be enabled or killed at any time
+                selectBackend(true);
+                
                 // Update notification with current remaining time
                 NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
                 if (manager != null) {
@@ -222,12 +325,4 @@ public class BlockingForegroundService extends Service {
     public boolean isBlockingActive() {
         return endTime > System.currentTimeMillis();
     }
-
-    /**
-     * Clear blocking data from shared preferences
-     */
-    private void clearBlockingData() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().clear().apply();
-    }
-}
+}
\ No newline at end of file
@@ -0,0 +1,547 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Long-term history of blocked launch attempts in three tiers
+ * Raw attempts are kept for RAW_WINDOW_MS, then rolled into hourly per-package counts,
+ * which after HOURLY_WINDOW_MS are rolled into daily (local day) counts kept forever.
+ *
+ * Storage is a snapshot file plus an append-only journal. The snapshot holds a package
+ * dictionary followed by the daily, hourly and raw tiers, with delta-encoded times and
+ * varint package ids and counts. New attempts are appended to the journal (a few bytes
+ * each); the snapshot is rewritten, and the journal truncated, only when a tier rolls over.
+ */
+public class BlockingHistory {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long RAW_WINDOW_MS = 48 * HOUR_MS;
+    private static final long HOURLY_WINDOW_MS = 35 * 24 * HOUR_MS;
+
+    private static final String SNAPSHOT_NAME = "blocking_history.bin";
+    private static final String JOURNAL_NAME = "blocking_history.journal";
+    private static final int MAGIC = 0x41424853; // "ABHS"
+    private static final int VERSION = 1;
+
+    private static final int TAG_PACKAGE = 1;
+    private static final int TAG_ATTEMPT = 2;
+    // Attempts are rare; a full queue means the disk is stuck, and the newest are dropped
+    private static final int PERSISTENCE_QUEUE_CAPACITY = 256;
+
+    private static BlockingHistory instance;
+    private static BlockingEventBus.Subscription subscription;
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final TimeZone timeZone;
+
+    private final List<String> packages = new ArrayList<>();
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    // Local epoch day -> package id -> count
+    private final TreeMap<Long, Map<Integer, Integer>> daily = new TreeMap<>();
+    // Epoch hour -> package id -> count
+    private final TreeMap<Long, Map<Integer, Integer>> hourly = new TreeMap<>();
+    // Raw attempts in time order
+    private long[] rawTimes = new long[64];
+    private int[] rawIds = new int[64];
+    private int rawCount = 0;
+
+    private DataOutputStream journal;
+    private long journalTime = 0;
+    private boolean loaded = false;
+    private long loadMs = 0;
+
+    BlockingHistory(File directory, TimeZone timeZone) {
+        this.snapshotFile = new File(directory, SNAPSHOT_NAME);
+        this.journalFile = new File(directory, JOURNAL_NAME);
+        this.timeZone = timeZone;
+    }
+
+    public static synchronized BlockingHistory get(Context context) {
+        if (instance == null) {
+            instance = new BlockingHistory(context.getFilesDir(), TimeZone.getDefault());
+        }
+        return instance;
+    }
+
+    /**
+     * Persist blocked attempts published on the event bus, to this history and to the
+     * attempt counters of the active sessions; idempotent, publishers call it on start
+     */
+    public static synchronized void subscribe(Context context) {
+        if (subscription != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        subscription = BlockingEventBus.get().subscribe("persistence", BlockingEventBus.TYPE_BLOCKED,
+            PERSISTENCE_QUEUE_CAPACITY, BlockingEventBus.DROP_NEWEST, event -> {
+                BlockingSessionStore.get(appContext).recordAttempt();
+                recordAttempt(appContext, event.packageName, event.wallTime);
+            });
+    }
+
+    /**
+     * Record a blocked attempt, logging instead of throwing; call off the main thread
+     */
+    private static void recordAttempt(Context context, String packageName, long time) {
+        try {
+            get(context).record(packageName, time);
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Failed to record blocking history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record one blocked attempt; attempts should arrive roughly in time order
+     */
+    public synchronized void record(String packageName, long time) throws IOException {
+        load();
+        if (rawCount > 0 && time < rawTimes[rawCount - 1]) {
+            time = rawTimes[rawCount - 1]; // Keep the raw tier sorted
+        }
+        boolean known = packageIds.containsKey(packageName);
+        int id = packageId(packageName);
+        addRaw(time, id);
+
+        if (rawTimes[0] < time - RAW_WINDOW_MS - HOUR_MS) {
+            // Raw attempts left the window an hour ago: roll up and start a fresh journal.
+            // The extra hour keeps rewrites to at most one per hour under steady use.
+            compact(time);
+            return;
+        }
+        DataOutputStream out = openJournal();
+        if (!known) {
+            out.writeByte(TAG_PACKAGE);
+            out.writeUTF(packageName);
+        }
+        out.writeByte(TAG_ATTEMPT);
+        writeVarLong(out, time - journalTime);
+        writeVarLong(out, id);
+        out.flush();
+        journalTime = time;
+    }
+
+    /**
+     * Bulk import of older attempts (e.g. migrated from JS storage), in any order
+     * Attempts go straight into the tier their age belongs to; returns the number imported.
+     */
+    public synchronized int importAll(long[] times, String[] packageNames, long now) throws IOException {
+        load();
+        int imported = 0;
+        for (int i = 0; i < times.length; i++) {
+            int id = packageId(packageNames[i]);
+            if (times[i] < now - RAW_WINDOW_MS) {
+                increment(hourly, Math.floorDiv(times[i], HOUR_MS), id, 1);
+            } else {
+                insertRaw(times[i], id);
+            }
+            imported++;
+        }
+        compact(now);
+        return imported;
+    }
+
+    /**
+     * Attempts in [from, to), optionally counted per package into perPackage
+     * Hourly and daily tiers are counted whole when their bucket starts inside the range.
+     */
+    public synchronized long count(long from, long to, Map<String, Long> perPackage) throws IOException {
+        load();
+        if (to <= from) {
+            return 0;
+        }
+        long total = 0;
+        for (Map.Entry<Long, Map<Integer, Integer>> day : daily.subMap(dayOf(from), true, dayOf(to), true).entrySet()) {
+            long dayStart = dayStart(day.getKey());
+            if (dayStart >= from && dayStart < to) {
+                total += addCounts(day.getValue(), perPackage);
+            }
+        }
+        for (Map.Entry<Long, Map<Integer, Integer>> hour : hourly.subMap(Math.floorDiv(from + HOUR_MS - 1, HOUR_MS), true,
+                Math.floorDiv(to - 1, HOUR_MS), true).entrySet()) {
+            total += addCounts(hour.getValue(), perPackage);
+        }
+        for (int i = 0; i < rawCount; i++) {
+            if (rawTimes[i] >= from && rawTimes[i] < to) {
+                total++;
+                if (perPackage != null) {
+                    perPackage.merge(packages.get(rawIds[i]), 1L, Long::sum);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Attempts per local day for days consecutive days starting with the day containing from
+     */
+    public synchronized long[] dailyCounts(long from, int days) throws IOException {
+        load();
+        long firstDay = RecurrenceRule.localDay(from, timeZone);
+        long[] counts = new long[days];
+        for (Map.Entry<Long, Map<Integer, Integer>> day : daily.subMap(firstDay, true, firstDay + days, false).entrySet()) {
+            counts[(int) (day.getKey() - firstDay)] += addCounts(day.getValue(), null);
+        }
+        for (Map.Entry<Long, Map<Integer, Integer>> hour : hourly.entrySet()) {
+            long index = RecurrenceRule.localDay(hour.getKey() * HOUR_MS, timeZone) - firstDay;
+            if (index >= 0 && index < days) {
+                counts[(int) index] += addCounts(hour.getValue(), null);
+            }
+        }
+        for (int i = 0; i < rawCount; i++) {
+            long index = RecurrenceRule.localDay(rawTimes[i], timeZone) - firstDay;
+            if (index >= 0 && index < days) {
+                counts[(int) index]++;
+            }
+        }
+        return counts;
+    }
+
+    public synchronized void clear() throws IOException {
+        closeJournal();
+        packages.clear();
+        packageIds.clear();
+        daily.clear();
+        hourly.clear();
+        rawCount = 0;
+        journalTime = 0;
+        loaded = true;
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            throw new IOException("Cannot delete " + snapshotFile);
+        }
+        if (journalFile.exists() && !journalFile.delete()) {
+            throw new IOException("Cannot delete " + journalFile);
+        }
+    }
+
+    /**
+     * Load the history now instead of on first use
+     */
+    public synchronized void preload() throws IOException {
+        load();
+    }
+
+    public synchronized long getStoredBytes() {
+        return snapshotFile.length() + journalFile.length();
+    }
+
+    public synchronized long getLoadMs() {
+        return loadMs;
+    }
+
+    public synchronized int getRawCount() {
+        return rawCount;
+    }
+
+    public synchronized int getHourCount() {
+        return hourly.size();
+    }
+
+    public synchronized int getDayCount() {
+        return daily.size();
+    }
+
+    public synchronized int getPackageCount() {
+        return packages.size();
+    }
+
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        long started = System.nanoTime();
+        loaded = true;
+        if (snapshotFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                readSnapshot(in);
+            } catch (IOException e) {
+                android.util.Log.e("AppBlocking", "Discarding unreadable blocking history: " + e.getMessage());
+                packages.clear();
+                packageIds.clear();
+                daily.clear();
+                hourly.clear();
+                rawCount = 0;
+            }
+        }
+        if (journalFile.isFile()) {
+            replayJournal();
+            // Fold the journal into a fresh snapshot so it never grows across launches
+            compact(rawCount > 0 ? rawTimes[rawCount - 1] : System.currentTimeMillis());
+        }
+        loadMs = (System.nanoTime() - started) / 1_000_000;
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a blocking history snapshot");
+        }
+        int packageCount = (int) readVarLong(in);
+        for (int i = 0; i < packageCount; i++) {
+            packageId(in.readUTF());
+        }
+        readTier(in, daily);
+        readTier(in, hourly);
+        int raw = (int) readVarLong(in);
+        long time = 0;
+        for (int i = 0; i < raw; i++) {
+            time += readVarLong(in);
+            addRaw(time, checkedId(readVarLong(in)));
+        }
+    }
+
+    /**
+     * Replay attempts written after the snapshot; a torn final record is ignored
+     */
+    private void replayJournal() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            long time = 0;
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) {
+                    break;
+                }
+                if (tag == TAG_PACKAGE) {
+                    packageId(in.readUTF());
+                } else if (tag == TAG_ATTEMPT) {
+                    time += readVarLong(in);
+                    int id = checkedId(readVarLong(in));
+                    if (rawCount == 0 || time >= rawTimes[rawCount - 1]) {
+                        addRaw(time, id);
+                    }
+                } else {
+                    throw new IOException("Unknown journal tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // Torn tail from a crash mid-append
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Blocking history journal ends early: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Roll raw attempts into hours and hours into days, then rewrite the snapshot
+     */
+    private void compact(long now) throws IOException {
+        int keep = 0;
+        while (keep < rawCount && rawTimes[keep] < now - RAW_WINDOW_MS) {
+            increment(hourly, Math.floorDiv(rawTimes[keep], HOUR_MS), rawIds[keep], 1);
+            keep++;
+        }
+        System.arraycopy(rawTimes, keep, rawTimes, 0, rawCount - keep);
+        System.arraycopy(rawIds, keep, rawIds, 0, rawCount - keep);
+        rawCount -= keep;
+
+        long firstKeptHour = Math.floorDiv(now - HOURLY_WINDOW_MS, HOUR_MS);
+        while (!hourly.isEmpty() && hourly.firstKey() < firstKeptHour) {
+            Map.Entry<Long, Map<Integer, Integer>> hour = hourly.pollFirstEntry();
+            long day = RecurrenceRule.localDay(hour.getKey() * HOUR_MS, timeZone);
+            for (Map.Entry<Integer, Integer> entry : hour.getValue().entrySet()) {
+                increment(daily, day, entry.getKey(), entry.getValue());
+            }
+        }
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() throws IOException {
+        closeJournal();
+        File partial = new File(snapshotFile.getPath() + ".partial");
+        try (FileOutputStream file = new FileOutputStream(partial);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarLong(out, packages.size());
+            for (String packageName : packages) {
+                out.writeUTF(packageName);
+            }
+            writeTier(out, daily);
+            writeTier(out, hourly);
+            writeVarLong(out, rawCount);
+            long previous = 0;
+            for (int i = 0; i < rawCount; i++) {
+                writeVarLong(out, rawTimes[i] - previous);
+                writeVarLong(out, rawIds[i]);
+                previous = rawTimes[i];
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        if (!partial.renameTo(snapshotFile)) {
+            throw new IOException("Cannot replace " + snapshotFile);
+        }
+        if (journalFile.exists() && !journalFile.delete()) {
+            throw new IOException("Cannot delete " + journalFile);
+        }
+        journalTime = 0;
+    }
+
+    /**
+     * Journal for appends; load() and compact() always leave it deleted, so it starts empty
+     */
+    private DataOutputStream openJournal() throws IOException {
+        if (journal == null) {
+            journalTime = 0;
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, false), 256));
+        }
+        return journal;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Buckets as (key delta, entry count, then package id / count pairs)
+     */
+    private static void writeTier(DataOutputStream out, TreeMap<Long, Map<Integer, Integer>> tier) throws IOException {
+        writeVarLong(out, tier.size());
+        long previous = 0;
+        for (Map.Entry<Long, Map<Integer, Integer>> bucket : tier.entrySet()) {
+            writeVarLong(out, zigzag(bucket.getKey() - previous));
+            previous = bucket.getKey();
+            writeVarLong(out, bucket.getValue().size());
+            for (Map.Entry<Integer, Integer> entry : bucket.getValue().entrySet()) {
+                writeVarLong(out, entry.getKey());
+                writeVarLong(out, entry.getValue());
+            }
+        }
+    }
+
+    private void readTier(DataInputStream in, TreeMap<Long, Map<Integer, Integer>> tier) throws IOException {
+        int buckets = (int) readVarLong(in);
+        long key = 0;
+        for (int i = 0; i < buckets; i++) {
+            key += unzigzag(readVarLong(in));
+            int entries = (int) readVarLong(in);
+            for (int j = 0; j < entries; j++) {
+                increment(tier, key, checkedId(readVarLong(in)), (int) readVarLong(in));
+            }
+        }
+    }
+
+    private int packageId(String packageName) {
+        Integer id = packageIds.get(packageName);
+        if (id == null) {
+            id = packages.size();
+            packages.add(packageName);
+            packageIds.put(packageName, id);
+        }
+        return id;
+    }
+
+    private int checkedId(long id) throws IOException {
+        if (id < 0 || id >= packages.size()) {
+            throw new IOException("Unknown package id " + id);
+        }
+        return (int) id;
+    }
+
+    private void addRaw(long time, int id) {
+        if (rawCount == rawTimes.length) {
+            rawTimes = Arrays.copyOf(rawTimes, rawCount * 2);
+            rawIds = Arrays.copyOf(rawIds, rawCount * 2);
+        }
+        rawTimes[rawCount] = time;
+        rawIds[rawCount] = id;
+        rawCount++;
+    }
+
+    private void insertRaw(long time, int id) {
+        addRaw(time, id);
+        int i = rawCount - 1;
+        while (i > 0 && rawTimes[i - 1] > time) {
+            rawTimes[i] = rawTimes[i - 1];
+            rawIds[i] = rawIds[i - 1];
+            i--;
+        }
+        rawTimes[i] = time;
+        rawIds[i] = id;
+    }
+
+    private long addCounts(Map<Integer, Integer> bucket, Map<String, Long> perPackage) {
+        long total = 0;
+        for (Map.Entry<Integer, Integer> entry : bucket.entrySet()) {
+            total += entry.getValue();
+            if (perPackage != null) {
+                perPackage.merge(packages.get(entry.getKey()), (long) entry.getValue(), Long::sum);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Local day of t; open-ended ranges (Long.MIN_VALUE / MAX_VALUE) map to the extreme days
+     */
+    private long dayOf(long t) {
+        if (t <= Long.MIN_VALUE + 24 * HOUR_MS) {
+            return Long.MIN_VALUE;
+        }
+        if (t >= Long.MAX_VALUE - 24 * HOUR_MS) {
+            return Long.MAX_VALUE;
+        }
+        return RecurrenceRule.localDay(t, timeZone);
+    }
+
+    private long dayStart(long day) {
+        // Offset at noon UTC of that day is the zone's offset for the day outside DST edge hours
+        long noon = day * 24 * HOUR_MS + 12 * HOUR_MS;
+        return day * 24 * HOUR_MS - timeZone.getOffset(noon);
+    }
+
+    private static void increment(TreeMap<Long, Map<Integer, Integer>> tier, long key, int id, int count) {
+        Map<Integer, Integer> bucket = tier.get(key);
+        if (bucket == null) {
+            bucket = new LinkedHashMap<>();
+            tier.put(key, bucket);
+        }
+        bucket.merge(id, count, Integer::sum);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
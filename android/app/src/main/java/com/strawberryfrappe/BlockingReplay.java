@@ -0,0 +1,179 @@
+package com.strawberryfrappe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline replay of a recording made with BlockingEventRecorder
+ * Drives BlockingDecisionEngine with a virtual clock rebuilt from the recorded event
+ * times, reports every decision next to the one taken on the device, and counts home
+ * actions and decision latency. Runs on a plain JVM:
+ *
+ *   adb exec-out run-as com.strawberryfrappe.aricapp cat files/recordings/NAME.abrec > NAME.abrec
+ *   javac -d out BlockingDecisionEngine.java BlockingEventLog.java BlockingReplay.java
+ *   java -cp out com.strawberryfrappe.BlockingReplay NAME.abrec [--max-speed] [--repeat N] [--quiet]
+ *
+ * By default the replay is paced like the recording; --max-speed drops the pacing
+ * (combine with --repeat and --quiet for throughput testing).
+ */
+public class BlockingReplay {
+    private static final int RECORD_RULES = 0;
+    private static final int RECORD_EVENT = 1;
+
+    // Recording loaded up front so replay timing measures the engine, not file reads
+    private static class Record {
+        final int kind;
+        final long uptime;
+        BlockingDecisionEngine.Rules rules;
+        long wallTime;
+        int eventType;
+        String packageName;
+        String className;
+        int liveDecision;
+
+        Record(int kind, long uptime) {
+            this.kind = kind;
+            this.uptime = uptime;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: BlockingReplay <recording.abrec> [--max-speed] [--repeat N] [--quiet]");
+            System.exit(2);
+        }
+        File file = new File(args[0]);
+        boolean maxSpeed = false;
+        boolean quiet = false;
+        int repeat = 1;
+        for (int i = 1; i < args.length; i++) {
+            if ("--max-speed".equals(args[i])) {
+                maxSpeed = true;
+            } else if ("--quiet".equals(args[i])) {
+                quiet = true;
+            } else if ("--repeat".equals(args[i]) && i + 1 < args.length) {
+                repeat = Math.max(1, Integer.parseInt(args[++i]));
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        List<Record> records = new ArrayList<>();
+        Map<String, Integer> categories = BlockingEventLog.read(file, new BlockingEventLog.Visitor() {
+            @Override
+            public void onRules(BlockingDecisionEngine.Rules rules, long uptime, long wallTime) {
+                Record record = new Record(RECORD_RULES, uptime);
+                record.rules = rules;
+                record.wallTime = wallTime;
+                records.add(record);
+            }
+
+            @Override
+            public void onEvent(int eventType, String packageName, String className, long uptime, int liveDecision) {
+                Record record = new Record(RECORD_EVENT, uptime);
+                record.eventType = eventType;
+                record.packageName = packageName;
+                record.className = className;
+                record.liveDecision = liveDecision;
+                records.add(record);
+            }
+        });
+
+        // Same bit test as AppCategoryIndex.matches, over the categories seen on the device
+        BlockingDecisionEngine engine = new BlockingDecisionEngine((packageName, categoryMask) -> {
+            Integer category = categories.get(packageName);
+            return categoryMask != 0 && category != null && category >= 0 && category < 32
+                && (categoryMask & (1 << category)) != 0;
+        });
+
+        for (int run = 0; run < repeat; run++) {
+            replay(records, engine, maxSpeed, quiet || run > 0);
+        }
+    }
+
+    private static void replay(List<Record> records, BlockingDecisionEngine engine,
+                               boolean maxSpeed, boolean quiet) throws InterruptedException {
+        BlockingDecisionEngine.Rules rules = null;
+        long wallOffset = 0;
+        long startUptime = records.isEmpty() ? 0 : records.get(0).uptime;
+        long virtualClock = startUptime;
+
+        int events = 0;
+        int homeActions = 0;
+        int mismatches = 0;
+        long[] latencies = new long[records.size()];
+        long startNanos = System.nanoTime();
+
+        for (Record record : records) {
+            if (!maxSpeed && record.uptime > virtualClock) {
+                Thread.sleep(record.uptime - virtualClock);
+            }
+            virtualClock = Math.max(virtualClock, record.uptime);
+
+            if (record.kind == RECORD_RULES) {
+                rules = record.rules;
+                wallOffset = record.wallTime - record.uptime;
+                if (!quiet) {
+                    System.out.printf("%10.3fs  rules v%d: %d blocked, mask 0x%x, allowlist %b, ends %+.1fs%n",
+                        (virtualClock - startUptime) / 1000.0, rules.version, rules.blockedPackages.size(),
+                        rules.categoryMask, rules.allowlistActive,
+                        (rules.latestEndTime - record.wallTime) / 1000.0);
+                }
+                continue;
+            }
+
+            long decisionStart = System.nanoTime();
+            int decision = BlockingDecisionEngine.filter(record.eventType, record.packageName, record.className);
+            if (decision == BlockingDecisionEngine.PASS) {
+                decision = engine.decide(record.packageName, rules, virtualClock + wallOffset);
+            }
+            latencies[events++] = System.nanoTime() - decisionStart;
+
+            if (BlockingDecisionEngine.isBlock(decision)) {
+                homeActions++;
+            }
+            boolean mismatch = decision != record.liveDecision && isReplayable(record.liveDecision);
+            if (mismatch) {
+                mismatches++;
+            }
+            if (!quiet) {
+                System.out.printf("%10.3fs  %-40s %-34s %-18s%s%n",
+                    (virtualClock - startUptime) / 1000.0,
+                    record.packageName,
+                    record.className != null ? record.className : "-",
+                    BlockingDecisionEngine.describe(decision),
+                    decision != record.liveDecision
+                        ? "  (device: " + BlockingDecisionEngine.describe(record.liveDecision) + ")" : "");
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long[] sorted = Arrays.copyOf(latencies, events);
+        Arrays.sort(sorted);
+        System.out.printf("events %d, home actions %d, mismatches %d, recorded span %.1fs%n",
+            events, homeActions, mismatches, (virtualClock - startUptime) / 1000.0);
+        if (events > 0) {
+            long total = 0;
+            for (long latency : sorted) {
+                total += latency;
+            }
+            System.out.printf("decision latency: avg %d ns, p50 %d ns, p99 %d ns, max %d ns%n",
+                total / events, sorted[events / 2], sorted[Math.min(events - 1, events * 99 / 100)],
+                sorted[events - 1]);
+            System.out.printf("replay throughput: %.0f events/s%n", events / (elapsedNanos / 1e9));
+        }
+    }
+
+    /**
+     * Decisions made outside the engine (budgets, overlay state) cannot be reproduced offline
+     */
+    private static boolean isReplayable(int liveDecision) {
+        return liveDecision != BlockingDecisionEngine.IGNORE_COVERED
+            && liveDecision != BlockingDecisionEngine.BLOCK_BUDGET;
+    }
+}
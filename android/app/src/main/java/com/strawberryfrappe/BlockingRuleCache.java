@@ -0,0 +1,93 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decision rules for the current session snapshot, shared by every detection backend
+ * Rules are rebuilt only when the session snapshot or the system exemptions change,
+ * so each foreground switch costs a version check plus a few set lookups.
+ * Not thread-safe: each backend owns an instance and calls it from its own thread.
+ */
+public class BlockingRuleCache {
+    private final SystemExemptions exemptions;
+    private final BlockingDecisionEngine engine;
+    private volatile BlockingDecisionEngine.Rules rules = BlockingDecisionEngine.Rules.none();
+    private long rulesVersion = -1;
+    private volatile boolean exemptionsChanged = false;
+
+    public BlockingRuleCache(Context context) {
+        // Package -> category index used by category-based blocking profiles
+        AppCategoryIndex categoryIndex = AppCategoryIndex.get(context);
+        categoryIndex.startTracking();
+        engine = new BlockingDecisionEngine(categoryIndex::matches);
+
+        // Packages that are never blocked; a refresh invalidates the rules
+        exemptions = new SystemExemptions(context, () -> exemptionsChanged = true);
+    }
+
+    /**
+     * Cache over a given category lookup and exemption set, for JVM tests
+     */
+    BlockingRuleCache(BlockingDecisionEngine.CategoryLookup categories, SystemExemptions exemptions) {
+        this.engine = new BlockingDecisionEngine(categories);
+        this.exemptions = exemptions;
+    }
+
+    public void startTracking() {
+        exemptions.startTracking();
+    }
+
+    public void stopTracking() {
+        exemptions.stopTracking();
+    }
+
+    /**
+     * Decide for a foreground package under the given snapshot at wall time now
+     */
+    public int decide(String packageName, BlockingSessionStore.Snapshot snapshot, long now) {
+        return engine.decide(packageName, rulesFor(snapshot), now);
+    }
+
+    /**
+     * Rules last used for a decision (recorded alongside events)
+     */
+    public BlockingDecisionEngine.Rules getRules() {
+        return rules;
+    }
+
+    public SystemExemptions getExemptions() {
+        return exemptions;
+    }
+
+    private BlockingDecisionEngine.Rules rulesFor(BlockingSessionStore.Snapshot snapshot) {
+        boolean boundary = snapshot.version != rulesVersion;
+        if (boundary || exemptionsChanged) {
+            exemptionsChanged = false;
+            if (boundary && snapshot.isActive()) {
+                // Session boundary: re-resolve exemptions off this thread; the rules
+                // are rebuilt again once the refresh lands
+                SideEffectQueue.get().post(exemptions::refresh);
+            }
+            rules = buildRules(snapshot);
+            rulesVersion = snapshot.version;
+        }
+        return rules;
+    }
+
+    private BlockingDecisionEngine.Rules buildRules(BlockingSessionStore.Snapshot snapshot) {
+        if (!snapshot.isActive()) {
+            return BlockingDecisionEngine.Rules.none();
+        }
+        Set<String> exempt = exemptions.getPackages();
+        Set<String> permitted = exempt;
+        if (snapshot.allowlistActive) {
+            permitted = new HashSet<>(exempt);
+            permitted.addAll(snapshot.allowedPackages);
+        }
+        return new BlockingDecisionEngine.Rules(snapshot.version, snapshot.blockedPackages,
+            snapshot.categoryMask, snapshot.allowlistActive, permitted, exempt, snapshot.latestEndTime);
+    }
+}
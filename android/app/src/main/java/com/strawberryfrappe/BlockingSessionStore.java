@@ -0,0 +1,457 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide table of concurrent blocking sessions
+ * Each session has an id, origin (manual, calendar, ...), mode, app set and deadline.
+ * The "currently blocked" union is precomputed into an immutable Snapshot that is
+ * rebuilt only at session boundaries (add, remove, expiry), so per-event cost does
+ * not grow with the number of sessions.
+ * Every session that ends, whether it expired or was stopped, is written to the
+ * SessionLedger with its end reason and block attempt count.
+ */
+public class BlockingSessionStore {
+    public static final String MODE_BLOCKLIST = "blocklist";
+    public static final String MODE_ALLOWLIST = "allowlist";
+
+    public static final String ORIGIN_MANUAL = "manual";
+    // Preset sessions started natively from the Quick Settings tile
+    public static final String ORIGIN_QUICK = "quick";
+
+    private static final String PREFS_NAME = "blocking_sessions";
+    private static final String KEY_SESSIONS = "sessions";
+
+    public interface Listener {
+        void onSessionsChanged(Snapshot snapshot);
+    }
+
+    public static class Session {
+        public final String id;
+        public final String origin;
+        public final String mode;
+        public final Set<String> appKeys;
+        public final int categoryMask;
+        public final long startTime;
+        public final long endTime;
+        // Blocks enforced while this session was active; shared with extended copies
+        public final AtomicInteger attempts;
+
+        Session(String id, String origin, String mode, Set<String> appKeys,
+                int categoryMask, long startTime, long endTime, AtomicInteger attempts) {
+            this.id = id;
+            this.origin = origin;
+            this.mode = mode;
+            this.appKeys = Collections.unmodifiableSet(appKeys);
+            this.categoryMask = categoryMask;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * Immutable union of all active sessions
+     */
+    public static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Collections.<String>emptySet(), 0,
+            false, Collections.<String>emptySet(), 0, Long.MAX_VALUE, 0);
+
+        public final long version;
+        // Packages blocked by any blocklist session
+        public final Set<String> blockedPackages;
+        // Categories blocked by any blocklist session
+        public final int categoryMask;
+        // Allowlist sessions permit only packages allowed by all of them
+        public final boolean allowlistActive;
+        public final Set<String> allowedPackages;
+        // Latest deadline, shown by the foreground service
+        public final long latestEndTime;
+        // Earliest deadline; the snapshot must be rebuilt once it passes
+        public final long nextBoundary;
+        public final int sessionCount;
+
+        Snapshot(long version, Set<String> blockedPackages, int categoryMask, boolean allowlistActive,
+                 Set<String> allowedPackages, long latestEndTime, long nextBoundary, int sessionCount) {
+            this.version = version;
+            this.blockedPackages = blockedPackages;
+            this.categoryMask = categoryMask;
+            this.allowlistActive = allowlistActive;
+            this.allowedPackages = allowedPackages;
+            this.latestEndTime = latestEndTime;
+            this.nextBoundary = nextBoundary;
+            this.sessionCount = sessionCount;
+        }
+
+        public boolean isActive() {
+            return sessionCount > 0;
+        }
+    }
+
+    private static BlockingSessionStore instance;
+
+    private final SharedPreferences prefs;
+    private final SessionLedger ledger;
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private long version = 0;
+
+    private BlockingSessionStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        ledger = SessionLedger.get(context.getApplicationContext());
+        load();
+    }
+
+    public static synchronized BlockingSessionStore get(Context context) {
+        if (instance == null) {
+            instance = new BlockingSessionStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Current union of active sessions
+     * O(1) unless a deadline has passed, in which case expired sessions are dropped first
+     */
+    public Snapshot snapshot(long now) {
+        Snapshot current = snapshot;
+        if (now >= current.nextBoundary) {
+            expire(now);
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * Add a session and return its id
+     */
+    public String add(String origin, String mode, Set<String> appKeys, int categoryMask, long endTime) {
+        Session session = new Session(UUID.randomUUID().toString(), origin, mode,
+            new HashSet<>(appKeys), categoryMask, System.currentTimeMillis(), endTime, new AtomicInteger());
+        synchronized (this) {
+            sessions.put(session.id, session);
+            commit();
+        }
+        notifyListeners();
+        return session.id;
+    }
+
+    /**
+     * Remove a session; returns the removed session or null if it did not exist
+     */
+    public Session remove(String sessionId) {
+        return remove(sessionId, SessionLedger.REASON_STOPPED);
+    }
+
+    /**
+     * Remove a session, recording why it ended (see SessionLedger.REASON_*)
+     */
+    public Session remove(String sessionId, int reason) {
+        Session removed;
+        synchronized (this) {
+            removed = sessions.remove(sessionId);
+            if (removed == null) {
+                return null;
+            }
+            commit();
+        }
+        recordEnded(Collections.singletonList(removed), reason);
+        notifyListeners();
+        return removed;
+    }
+
+    /**
+     * Remove every session; returns the removed sessions
+     */
+    public List<Session> clear() {
+        return clear(SessionLedger.REASON_STOPPED);
+    }
+
+    public List<Session> clear(int reason) {
+        List<Session> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(sessions.values());
+            if (removed.isEmpty()) {
+                return removed;
+            }
+            sessions.clear();
+            commit();
+        }
+        recordEnded(removed, reason);
+        notifyListeners();
+        return removed;
+    }
+
+    /**
+     * Remove every session started from the given origin; returns the removed sessions
+     */
+    public List<Session> removeOrigin(String origin, int reason) {
+        List<Session> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+                Session session = it.next();
+                if (session.origin.equals(origin)) {
+                    removed.add(session);
+                    it.remove();
+                }
+            }
+            if (removed.isEmpty()) {
+                return removed;
+            }
+            commit();
+        }
+        recordEnded(removed, reason);
+        notifyListeners();
+        return removed;
+    }
+
+    /**
+     * Count a block against every active session
+     */
+    public synchronized void recordAttempt() {
+        for (Session session : sessions.values()) {
+            session.attempts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Push the deadline of every session started from the given origin back by deltaMs
+     * Returns the number extended; sessions from other origins keep their end time.
+     */
+    public int extendOrigin(String origin, long deltaMs) {
+        snapshot(System.currentTimeMillis()); // Expired sessions are not revived
+        int extended = 0;
+        synchronized (this) {
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                Session session = entry.getValue();
+                if (!session.origin.equals(origin)) {
+                    continue;
+                }
+                entry.setValue(new Session(session.id, session.origin, session.mode,
+                    new HashSet<>(session.appKeys), session.categoryMask,
+                    session.startTime, session.endTime + deltaMs, session.attempts));
+                extended++;
+            }
+            if (extended == 0) {
+                return 0;
+            }
+            commit();
+        }
+        notifyListeners();
+        return extended;
+    }
+
+    public synchronized List<Session> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public synchronized Session getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void expire(long now) {
+        List<Session> expired = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+                Session session = it.next();
+                if (session.endTime <= now) {
+                    expired.add(session);
+                    it.remove();
+                }
+            }
+            if (expired.isEmpty()) {
+                return;
+            }
+            // Expiry is hit on the accessibility thread: rebuild now, persist in the background
+            rebuildSnapshot();
+        }
+        SideEffectQueue.get().post(this::persist);
+        recordEnded(expired, SessionLedger.REASON_COMPLETED);
+        notifyListeners();
+    }
+
+    /**
+     * Append ended sessions to the ledger off the calling thread
+     * A session stopped after its deadline had already passed still counts as completed.
+     */
+    private void recordEnded(List<Session> ended, int reason) {
+        long now = System.currentTimeMillis();
+        List<SessionLedger.Record> records = new ArrayList<>(ended.size());
+        for (Session session : ended) {
+            boolean completed = session.endTime <= now;
+            records.add(new SessionLedger.Record(session.startTime, session.endTime,
+                completed ? session.endTime : now, session.attempts.get(),
+                SessionLedger.originOf(session.origin),
+                completed ? SessionLedger.REASON_COMPLETED : reason));
+        }
+        SideEffectQueue.get().post(() -> {
+            try {
+                for (SessionLedger.Record record : records) {
+                    ledger.append(record);
+                }
+            } catch (IOException e) {
+                android.util.Log.e("AppBlocking", "Failed to record focus session: " + e.getMessage());
+            }
+        });
+    }
+
+    private synchronized void persist() {
+        save(false);
+    }
+
+    /**
+     * Rebuild the snapshot and persist the table; caller holds the lock
+     */
+    private void commit() {
+        rebuildSnapshot();
+        save(false);
+    }
+
+    private void rebuildSnapshot() {
+        Set<String> blocked = new HashSet<>();
+        Set<String> allowed = null;
+        int categoryMask = 0;
+        long latestEnd = 0;
+        long nextBoundary = Long.MAX_VALUE;
+
+        for (Session session : sessions.values()) {
+            latestEnd = Math.max(latestEnd, session.endTime);
+            nextBoundary = Math.min(nextBoundary, session.endTime);
+
+            if (MODE_ALLOWLIST.equals(session.mode)) {
+                Set<String> packages = new HashSet<>();
+                for (String key : session.appKeys) {
+                    packages.add(AppCatalog.packageOf(key));
+                }
+                if (allowed == null) {
+                    allowed = packages;
+                } else {
+                    allowed.retainAll(packages);
+                }
+            } else {
+                for (String key : session.appKeys) {
+                    blocked.add(AppCatalog.packageOf(key));
+                }
+                categoryMask |= session.categoryMask;
+            }
+        }
+
+        snapshot = new Snapshot(++version,
+            Collections.unmodifiableSet(blocked),
+            categoryMask,
+            allowed != null,
+            allowed != null ? Collections.unmodifiableSet(allowed) : Collections.<String>emptySet(),
+            latestEnd,
+            nextBoundary,
+            sessions.size());
+    }
+
+    private void notifyListeners() {
+        Snapshot current = snapshot;
+        for (Listener listener : listeners) {
+            try {
+                listener.onSessionsChanged(current);
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Session listener failed: " + e.getMessage());
+            }
+        }
+        // React Native resyncs its timer from here when the notification or tile changed sessions
+        BlockingEventBus.get().publishSessionsChanged(current.sessionCount, System.currentTimeMillis());
+    }
+
+    /**
+     * Write the session table; sync blocks until it is on disk, otherwise the write is queued
+     */
+    private void save(boolean sync) {
+        try {
+            JSONArray array = new JSONArray();
+            for (Session session : sessions.values()) {
+                JSONObject json = new JSONObject();
+                json.put("id", session.id);
+                json.put("origin", session.origin);
+                json.put("mode", session.mode);
+                json.put("apps", new JSONArray(session.appKeys));
+                json.put("categoryMask", session.categoryMask);
+                json.put("startTime", session.startTime);
+                json.put("endTime", session.endTime);
+                json.put("attempts", session.attempts.get());
+                array.put(json);
+            }
+            SharedPreferences.Editor editor = prefs.edit().putString(KEY_SESSIONS, array.toString());
+            if (sync) {
+                if (!editor.commit()) {
+                    android.util.Log.e("AppBlocking", "Failed to write blocking sessions");
+                }
+            } else {
+                editor.apply();
+            }
+        } catch (JSONException e) {
+            android.util.Log.e("AppBlocking", "Failed to save blocking sessions: " + e.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        String stored = prefs.getString(KEY_SESSIONS, null);
+        if (stored == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Session> expired = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(stored);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                long endTime = json.getLong("endTime");
+                Set<String> appKeys = new HashSet<>();
+                JSONArray apps = json.getJSONArray("apps");
+                for (int j = 0; j < apps.length(); j++) {
+                    appKeys.add(apps.getString(j));
+                }
+                Session session = new Session(json.getString("id"), json.getString("origin"),
+                    json.getString("mode"), appKeys, json.optInt("categoryMask", 0),
+                    json.optLong("startTime", now), endTime, new AtomicInteger(json.optInt("attempts", 0)));
+                if (endTime <= now) {
+                    // Ran out while the process was dead
+                    expired.add(session);
+                    continue;
+                }
+                sessions.put(session.id, session);
+            }
+        } catch (JSONException e) {
+            android.util.Log.e("AppBlocking", "Failed to load blocking sessions: " + e.getMessage());
+        }
+        rebuildSnapshot();
+        if (!expired.isEmpty()) {
+            // Drop them from disk before the ledger append is queued, so a crash in between cannot log them twice
+            save(true);
+            recordEnded(expired, SessionLedger.REASON_COMPLETED);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.strawberryfrappe;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.core.content.ContextCompat;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Domain-level blocking inside known browsers
+ * The URL bar is found by view id: the id that worked last is cached per browser version
+ * (persisted, so a lookup is a single findAccessibilityNodeInfosByViewId), then the known
+ * ids are tried, and only then a small bounded search for a URL-like EditText. The host
+ * is matched against the DomainBlocklist. Nothing here looks at non-browser windows.
+ * Blocklist loading, version lookups and disk writes run on the SideEffectQueue.
+ */
+public class BrowserDomainBlocker {
+    private static final String PREFS_NAME = "app_blocking_prefs";
+    private static final String KEY_URL_BAR_IDS = "browser_url_bar_ids";
+    private static final String FILE_NAME = "blocked_domains.txt";
+    // Nodes visited by the fallback search before giving up
+    private static final int MAX_SEARCH_NODES = 60;
+
+    // Known URL bar view ids per browser package, most likely first
+    private static final Map<String, String[]> URL_BAR_IDS = new HashMap<>();
+
+    static {
+        URL_BAR_IDS.put("com.android.chrome", new String[] { "com.android.chrome:id/url_bar" });
+        URL_BAR_IDS.put("com.chrome.beta", new String[] { "com.chrome.beta:id/url_bar" });
+        URL_BAR_IDS.put("com.chrome.dev", new String[] { "com.chrome.dev:id/url_bar" });
+        URL_BAR_IDS.put("com.sec.android.app.sbrowser", new String[] {
+            "com.sec.android.app.sbrowser:id/location_bar_edit_text",
+            "com.sec.android.app.sbrowser:id/custom_tab_toolbar_url_bar_text" });
+        URL_BAR_IDS.put("org.mozilla.firefox", new String[] {
+            "org.mozilla.firefox:id/mozac_browser_toolbar_url_view",
+            "org.mozilla.firefox:id/url_bar_title" });
+        URL_BAR_IDS.put("com.microsoft.emmx", new String[] { "com.microsoft.emmx:id/url_bar" });
+        URL_BAR_IDS.put("com.brave.browser", new String[] { "com.brave.browser:id/url_bar" });
+        URL_BAR_IDS.put("com.opera.browser", new String[] { "com.opera.browser:id/url_field" });
+        URL_BAR_IDS.put("com.duckduckgo.mobile.android", new String[] {
+            "com.duckduckgo.mobile.android:id/omnibarTextInput" });
+        URL_BAR_IDS.put("com.vivaldi.browser", new String[] { "com.vivaldi.browser:id/url_bar" });
+    }
+
+    private static BrowserDomainBlocker instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final File file;
+    private volatile DomainBlocklist blocklist = DomainBlocklist.EMPTY;
+    private volatile Runnable onChanged;
+    private boolean tracking = false;
+    // Guards the file and loaded; setDomains and the initial load must not interleave
+    private final Object fileLock = new Object();
+    private boolean loaded = false;
+
+    // Installed version per browser, resolved off the accessibility thread
+    private volatile Map<String, Long> versions = Collections.emptyMap();
+    // Browser package -> "version|viewId" of the URL bar that worked last
+    private final Map<String, String> urlBarIds = new HashMap<>();
+
+    // Check timings (accessibility thread writes, bridge reads)
+    private long checkCount = 0;
+    private long checkTotalNanos = 0;
+    private long checkMaxNanos = 0;
+    // Parse and build time of the current blocklist
+    private long buildNanos = 0;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // A browser update may move its URL bar; re-resolve versions so stale ids are dropped
+            SideEffectQueue.get().post(BrowserDomainBlocker.this::refreshVersions);
+        }
+    };
+
+    private BrowserDomainBlocker(Context context) {
+        this.context = context.getApplicationContext();
+        prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        file = new File(this.context.getFilesDir(), FILE_NAME);
+    }
+
+    public static synchronized BrowserDomainBlocker get(Context context) {
+        if (instance == null) {
+            instance = new BrowserDomainBlocker(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Load the blocklist and browser versions, and follow package updates
+     */
+    public synchronized void startTracking() {
+        if (tracking) {
+            return;
+        }
+        tracking = true;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        ContextCompat.registerReceiver(context, packageReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        SideEffectQueue.get().post(() -> {
+            loadUrlBarIds();
+            refreshVersions();
+            ensureLoaded();
+        });
+    }
+
+    public synchronized void stopTracking() {
+        if (!tracking) {
+            return;
+        }
+        tracking = false;
+        try {
+            context.unregisterReceiver(packageReceiver);
+        } catch (IllegalArgumentException e) {
+            // Not registered
+        }
+    }
+
+    /**
+     * Called, on the thread that replaced the blocklist, when it becomes empty or non-empty
+     */
+    public void setOnChanged(Runnable onChanged) {
+        this.onChanged = onChanged;
+    }
+
+    public static boolean isBrowser(String packageName) {
+        return URL_BAR_IDS.containsKey(packageName);
+    }
+
+    public boolean hasDomains() {
+        return blocklist.size() > 0;
+    }
+
+    public int getDomainCount() {
+        return blocklist.size();
+    }
+
+    /**
+     * Blocked domain the browser window rooted at root is showing, or null
+     * Runs on the accessibility thread; root must belong to packageName.
+     */
+    public String check(AccessibilityNodeInfo root, String packageName) {
+        long started = System.nanoTime();
+        String match = null;
+        AccessibilityNodeInfo urlBar = findUrlBar(root, packageName);
+        try {
+            // While the bar is focused its text is what the user is typing, not the page
+            if (urlBar != null && !urlBar.isFocused()) {
+                String host = DomainBlocklist.hostOf(urlBar.getText());
+                if (host != null) {
+                    match = blocklist.match(host);
+                }
+            }
+        } finally {
+            if (urlBar != null && urlBar != root) {
+                urlBar.recycle();
+            }
+        }
+        recordCheck(System.nanoTime() - started);
+        return match;
+    }
+
+    /**
+     * Replace the blocklist; returns the number of distinct valid domains
+     * Blocking work: call off the main and accessibility threads.
+     */
+    public int setDomains(Collection<String> domains) throws IOException {
+        long started = System.nanoTime();
+        DomainBlocklist updated = new DomainBlocklist(domains);
+        recordBuild(System.nanoTime() - started);
+        synchronized (fileLock) {
+            writeDomains(domains);
+            loaded = true;
+            publish(updated);
+        }
+        return updated.size();
+    }
+
+    /**
+     * Replace the blocklist with a domain list or hosts file; returns the number of domains
+     */
+    public int importFrom(File source) throws IOException {
+        long started = System.nanoTime();
+        DomainBlocklist updated = DomainBlocklist.read(source);
+        recordBuild(System.nanoTime() - started);
+        synchronized (fileLock) {
+            if (!source.getCanonicalPath().equals(file.getCanonicalPath())) {
+                copyToFile(source);
+            }
+            loaded = true;
+            publish(updated);
+        }
+        return updated.size();
+    }
+
+    /**
+     * Read the stored blocklist once; blocking, call off the main and accessibility threads
+     */
+    public void ensureLoaded() {
+        synchronized (fileLock) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!file.isFile()) {
+                return;
+            }
+            try {
+                long started = System.nanoTime();
+                DomainBlocklist stored = DomainBlocklist.read(file);
+                recordBuild(System.nanoTime() - started);
+                publish(stored);
+            } catch (IOException e) {
+                android.util.Log.e("AppBlocking", "Failed to load blocked domains: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeDomains(Collection<String> domains) throws IOException {
+        File partial = new File(file.getPath() + ".partial");
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(partial), StandardCharsets.UTF_8))) {
+            for (String domain : domains) {
+                String entry = DomainBlocklist.normalize(domain);
+                if (entry != null) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void copyToFile(File source) throws IOException {
+        File partial = new File(file.getPath() + ".partial");
+        try (FileChannel in = new FileInputStream(source).getChannel();
+             FileChannel out = new FileOutputStream(partial).getChannel()) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    public synchronized long getCheckCount() {
+        return checkCount;
+    }
+
+    public synchronized double getAverageCheckMs() {
+        return checkCount > 0 ? checkTotalNanos / 1e6 / checkCount : 0;
+    }
+
+    public synchronized double getMaxCheckMs() {
+        return checkMaxNanos / 1e6;
+    }
+
+    /**
+     * Time taken to read and build the current blocklist (file reading included for imports)
+     */
+    public synchronized double getBuildMs() {
+        return buildNanos / 1e6;
+    }
+
+    public int getDomainCount() {
+        return blocklist.size();
+    }
+
+    /**
+     * URL bar node of the browser window, or null; the caller recycles it unless it is root
+     */
+    private AccessibilityNodeInfo findUrlBar(AccessibilityNodeInfo root, String packageName) {
+        Long version = versions.get(packageName);
+        String cached;
+        synchronized (urlBarIds) {
+            cached = urlBarIds.get(packageName);
+        }
+        String prefix = version + "|";
+        if (cached != null && cached.startsWith(prefix)) {
+            AccessibilityNodeInfo node = firstById(root, cached.substring(prefix.length()));
+            if (node != null) {
+                return node;
+            }
+        }
+        for (String viewId : URL_BAR_IDS.get(packageName)) {
+            AccessibilityNodeInfo node = firstById(root, viewId);
+            if (node != null) {
+                rememberUrlBar(packageName, version, viewId);
+                return node;
+            }
+        }
+        // Unknown layout: bounded breadth-first search for an EditText holding a URL
+        ArrayDeque<AccessibilityNodeInfo> queue = new ArrayDeque<>();
+        queue.add(root);
+        int visited = 0;
+        try {
+            while (!queue.isEmpty() && visited++ < MAX_SEARCH_NODES) {
+                AccessibilityNodeInfo node = queue.poll();
+                CharSequence className = node.getClassName();
+                if (className != null && className.toString().endsWith("EditText")
+                        && DomainBlocklist.hostOf(node.getText()) != null) {
+                    if (node.getViewIdResourceName() != null) {
+                        rememberUrlBar(packageName, version, node.getViewIdResourceName());
+                    }
+                    return node;
+                }
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    AccessibilityNodeInfo child = node.getChild(i);
+                    if (child != null) {
+                        queue.add(child);
+                    }
+                }
+                if (node != root) {
+                    node.recycle();
+                }
+            }
+        } finally {
+            // Fetched but never visited
+            for (AccessibilityNodeInfo node : queue) {
+                if (node != root) {
+                    node.recycle();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * First node with the view id, or null; the caller recycles it
+     */
+    private static AccessibilityNodeInfo firstById(AccessibilityNodeInfo root, String viewId) {
+        List<AccessibilityNodeInfo> nodes = root.findAccessibilityNodeInfosByViewId(viewId);
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        for (int i = 1; i < nodes.size(); i++) {
+            nodes.get(i).recycle();
+        }
+        return nodes.get(0);
+    }
+
+    private void rememberUrlBar(String packageName, Long version, String viewId) {
+        if (version == null) {
+            return; // Versions not resolved yet; do not cache under an unknown version
+        }
+        String entry = version + "|" + viewId;
+        synchronized (urlBarIds) {
+            if (entry.equals(urlBarIds.put(packageName, entry))) {
+                return;
+            }
+        }
+        SideEffectQueue.get().post(this::saveUrlBarIds);
+    }
+
+    private synchronized void recordBuild(long nanos) {
+        buildNanos = nanos;
+    }
+
+    private synchronized void recordCheck(long nanos) {
+        checkCount++;
+        checkTotalNanos += nanos;
+        checkMaxNanos = Math.max(checkMaxNanos, nanos);
+    }
+
+    private void publish(DomainBlocklist updated) {
+        boolean wasActive = blocklist.size() > 0;
+        blocklist = updated;
+        Runnable listener = onChanged;
+        if (listener != null && wasActive != (updated.size() > 0)) {
+            listener.run();
+        }
+    }
+
+    private void refreshVersions() {
+        PackageManager pm = context.getPackageManager();
+        Map<String, Long> resolved = new HashMap<>();
+        for (String packageName : URL_BAR_IDS.keySet()) {
+            try {
+                resolved.put(packageName, PackageInfoCompat.getLongVersionCode(pm.getPackageInfo(packageName, 0)));
+            } catch (PackageManager.NameNotFoundException e) {
+                // Not installed
+            }
+        }
+        versions = resolved;
+    }
+
+    private void loadUrlBarIds() {
+        Set<String> stored = prefs.getStringSet(KEY_URL_BAR_IDS, Collections.<String>emptySet());
+        synchronized (urlBarIds) {
+            for (String entry : stored) {
+                // package|version|viewId
+                int separator = entry.indexOf('|');
+                if (separator > 0) {
+                    urlBarIds.put(entry.substring(0, separator), entry.substring(separator + 1));
+                }
+            }
+        }
+    }
+
+    private void saveUrlBarIds() {
+        Set<String> entries = new HashSet<>();
+        synchronized (urlBarIds) {
+            for (Map.Entry<String, String> entry : urlBarIds.entrySet()) {
+                entries.add(entry.getKey() + "|" + entry.getValue());
+            }
+        }
+        prefs.edit().putStringSet(KEY_URL_BAR_IDS, entries).apply();
+    }
+}
@@ -0,0 +1,638 @@
+package com.strawberryfrappe;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQLite-backed calendar event store
+ * Each event is kept as its JSON document plus the indexed columns the queries need:
+ * start/end as local epoch millis and priority, indexed on (start_time, end_time, priority).
+ * Range and overlap queries are index range scans, so month views and auto-blocking cost
+ * O(log n + k) instead of parsing every event. Writes are batched in transactions.
+ * Backups stream through NDJSON files record by record (see NdjsonChannel).
+ * Recurring events are stored once (recurring = 1) and expanded lazily from an in-memory
+ * index of RecurrenceRules; expanded occurrences get the id "<seriesId>@<date>".
+ */
+public class CalendarEventStore extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "calendar_events.db";
+    // 2: recurring column
+    private static final int DATABASE_VERSION = 2;
+    private static final String TABLE_EVENTS = "events";
+
+    public static final String PRIORITY_STRICT = "strict";
+    // Same default as the JS blocking scheduler
+    public static final int DEFAULT_DURATION_MINUTES = 60;
+
+    private static final Pattern DATE = Pattern.compile("^(\\d{4})-(\\d{2})-(\\d{2})$");
+    private static final Pattern TIME = Pattern.compile("^([01]?\\d|2[0-3]):([0-5]\\d)$");
+
+    // Records per transaction when importing a backup
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    // Rows between export progress reports
+    private static final int EXPORT_PROGRESS_INTERVAL = 500;
+
+    public interface TransferListener {
+        /**
+         * records processed so far; done/total in events for exports and bytes for imports
+         */
+        void onProgress(int records, long done, long total);
+    }
+
+    public static class ImportResult {
+        public int imported;
+        public int duplicates;
+        public int invalid;
+        public long bytes;
+    }
+
+    private static CalendarEventStore instance;
+
+    // Longest event, bounding how far back an overlap query scans start_time (-1 = unknown)
+    private long maxDurationMs = -1;
+
+    // Parsed rules of recurring events with their documents; rebuilt after writes (null = stale)
+    private List<Series> series;
+
+    private static class Series {
+        final RecurrenceRule rule;
+        final String data;
+
+        Series(RecurrenceRule rule, String data) {
+            this.rule = rule;
+            this.data = data;
+        }
+    }
+
+    // An event or expanded occurrence with its start, for merging query results
+    private static class Item {
+        final long start;
+        final String json;
+
+        Item(long start, String json) {
+            this.start = start;
+            this.json = json;
+        }
+    }
+
+    private CalendarEventStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized CalendarEventStore get(Context context) {
+        if (instance == null) {
+            instance = new CalendarEventStore(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_EVENTS + " ("
+            + "id TEXT PRIMARY KEY, "
+            + "start_time INTEGER NOT NULL, "
+            + "end_time INTEGER NOT NULL, "
+            + "priority TEXT NOT NULL, "
+            + "recurring INTEGER NOT NULL DEFAULT 0, "
+            + "data TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_events_start_end_priority ON " + TABLE_EVENTS
+            + " (start_time, end_time, priority)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Events written before recurrence support are all one-off
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN recurring INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+
+    /**
+     * Every stored event (recurring ones once, with their rule) ordered by start, as a JSON array string
+     */
+    public synchronized String getAll() {
+        return queryArray("SELECT data FROM " + TABLE_EVENTS + " ORDER BY start_time", null);
+    }
+
+    /**
+     * Event document by id, or null
+     */
+    public synchronized String get(String id) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT data FROM " + TABLE_EVENTS + " WHERE id = ?", new String[] { id })) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    /**
+     * Events and recurring occurrences starting in [from, to), as a JSON array string
+     */
+    public synchronized String getStartingBetween(long from, long to) {
+        List<Item> items = queryItems("SELECT start_time, data FROM " + TABLE_EVENTS
+                + " WHERE start_time >= ? AND start_time < ? AND recurring = 0 ORDER BY start_time",
+            new String[] { Long.toString(from), Long.toString(to) });
+        for (Series entry : getSeries()) {
+            for (long start = entry.rule.nextStartAtOrAfter(from); start >= 0 && start < to;
+                    start = entry.rule.nextStartAtOrAfter(start + 1)) {
+                items.add(new Item(start, occurrence(entry, start)));
+            }
+        }
+        return toArray(items);
+    }
+
+    /**
+     * Strict events and occurrences overlapping [t1, t2] (bounds inclusive), as a JSON array string
+     * No event is longer than maxDurationMs, so only starts in [t1 - max, t2] are scanned.
+     */
+    public synchronized String getStrictOverlapping(long t1, long t2) {
+        long scanFrom = t1 - getMaxDurationMs();
+        List<Item> items = queryItems("SELECT start_time, data FROM " + TABLE_EVENTS
+                + " WHERE start_time >= ? AND start_time <= ? AND end_time >= ? AND priority = ?"
+                + " AND recurring = 0 ORDER BY start_time",
+            new String[] { Long.toString(scanFrom), Long.toString(t2), Long.toString(t1), PRIORITY_STRICT });
+        for (Series entry : getSeries()) {
+            if (!entry.rule.strict) {
+                continue;
+            }
+            for (long start = entry.rule.nextStartAtOrAfter(t1 - entry.rule.durationMs); start >= 0 && start <= t2;
+                    start = entry.rule.nextStartAtOrAfter(start + 1)) {
+                items.add(new Item(start, occurrence(entry, start)));
+            }
+        }
+        return toArray(items);
+    }
+
+    /**
+     * First limit events or occurrences starting at or after t, as a JSON array string
+     * One-off events come from the start index and each series yields its next start on
+     * demand, so only limit occurrences are ever expanded.
+     */
+    public synchronized String getNextOccurrences(long t, int limit, boolean strictOnly) {
+        List<Item> events = queryItems("SELECT start_time, data FROM " + TABLE_EVENTS
+                + " WHERE start_time >= ? AND recurring = 0"
+                + (strictOnly ? " AND priority = '" + PRIORITY_STRICT + "'" : "")
+                + " ORDER BY start_time LIMIT " + limit,
+            new String[] { Long.toString(t) });
+
+        // (next start, series index) heap over the series that still have occurrences
+        List<Series> all = getSeries();
+        PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < all.size(); i++) {
+            RecurrenceRule rule = all.get(i).rule;
+            long start = strictOnly && !rule.strict ? -1 : rule.nextStartAtOrAfter(t);
+            if (start >= 0) {
+                heap.add(new long[] { start, i });
+            }
+        }
+
+        List<Item> result = new ArrayList<>(limit);
+        int next = 0;
+        while (result.size() < limit && (next < events.size() || !heap.isEmpty())) {
+            long[] top = heap.peek();
+            if (top == null || (next < events.size() && events.get(next).start <= top[0])) {
+                result.add(events.get(next++));
+                continue;
+            }
+            heap.poll();
+            Series entry = all.get((int) top[1]);
+            result.add(new Item(top[0], occurrence(entry, top[0])));
+            long following = entry.rule.nextStartAtOrAfter(top[0] + 1);
+            if (following >= 0) {
+                heap.add(new long[] { following, top[1] });
+            }
+        }
+        return toArray(result);
+    }
+
+    public synchronized int count() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_EVENTS, null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Insert or replace one event; throws IllegalArgumentException if it has no valid id, date or time
+     */
+    public synchronized void put(JSONObject event) {
+        ContentValues values = toValues(event);
+        series = null;
+        getWritableDatabase().insertWithOnConflict(TABLE_EVENTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        noteDuration(values);
+    }
+
+    /**
+     * Insert or replace a batch of events in one transaction; invalid events are skipped
+     * Returns the number of events written.
+     */
+    public synchronized int putAll(List<JSONObject> events) {
+        return write(events, SQLiteDatabase.CONFLICT_REPLACE, false);
+    }
+
+    /**
+     * One-time import of the legacy AsyncStorage blob (a JSON array of events)
+     * Events already in the store win, so re-running after a partial migration is harmless.
+     */
+    public synchronized int importLegacy(String blob) throws JSONException {
+        JSONArray array = new JSONArray(blob);
+        List<JSONObject> events = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject event = array.optJSONObject(i);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return write(events, SQLiteDatabase.CONFLICT_IGNORE, false);
+    }
+
+    /**
+     * Stream every event to an NDJSON file, one document per line in start order
+     * Written to a temporary file first, so a failed export never leaves a partial backup.
+     * Returns the number of events written.
+     */
+    public int exportTo(File file, TransferListener listener) throws IOException {
+        File partial = new File(file.getPath() + ".partial");
+        int total = count();
+        int written = 0;
+        long bytes;
+        try (NdjsonChannel.Writer writer = new NdjsonChannel.Writer(new FileOutputStream(partial).getChannel());
+             Cursor cursor = getReadableDatabase().rawQuery(
+                 "SELECT data FROM " + TABLE_EVENTS + " ORDER BY start_time", null)) {
+            while (cursor.moveToNext()) {
+                writer.writeLine(cursor.getString(0));
+                written++;
+                if (listener != null && written % EXPORT_PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(written, written, Math.max(total, written));
+                }
+            }
+            bytes = writer.getBytesWritten();
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Cannot move backup to " + file);
+        }
+        if (listener != null) {
+            listener.onProgress(written, written, written);
+        }
+        android.util.Log.i("AppBlocking", "Exported " + written + " calendar events (" + bytes + " bytes)");
+        return written;
+    }
+
+    /**
+     * Stream events from an NDJSON file, validating each record and committing in chunks
+     * Existing events win unless replace is set, in which case the store is cleared in the
+     * first chunk's transaction. Only the current chunk is held in memory.
+     */
+    public ImportResult importFrom(File file, boolean replace, TransferListener listener) throws IOException {
+        ImportResult result = new ImportResult();
+        long size = file.length();
+        int conflict = replace ? SQLiteDatabase.CONFLICT_REPLACE : SQLiteDatabase.CONFLICT_IGNORE;
+        boolean clearFirst = replace;
+        List<JSONObject> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int records = 0;
+        try (NdjsonChannel.Reader reader = new NdjsonChannel.Reader(new FileInputStream(file).getChannel())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                records++;
+                JSONObject event;
+                try {
+                    event = new JSONObject(line);
+                } catch (JSONException e) {
+                    result.invalid++;
+                    continue;
+                }
+                String error = validate(event);
+                if (error != null) {
+                    android.util.Log.w("AppBlocking", "Skipping invalid calendar event on record " + records + ": " + error);
+                    result.invalid++;
+                    continue;
+                }
+                chunk.add(event);
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    commitChunk(chunk, conflict, clearFirst, result);
+                    clearFirst = false;
+                    if (listener != null) {
+                        listener.onProgress(records, reader.getBytesRead(), size);
+                    }
+                }
+            }
+            if (!chunk.isEmpty() || clearFirst) {
+                commitChunk(chunk, conflict, clearFirst, result);
+            }
+            result.bytes = reader.getBytesRead();
+        }
+        if (listener != null) {
+            listener.onProgress(records, size, size);
+        }
+        android.util.Log.i("AppBlocking", "Imported " + result.imported + " calendar events ("
+            + result.duplicates + " duplicates, " + result.invalid + " invalid)");
+        return result;
+    }
+
+    /**
+     * Same checks as CalendarEvent.validate in JS; returns the first error or null
+     */
+    public static String validate(JSONObject event) {
+        if (event.optString("id", "").isEmpty()) {
+            return "Event id is required";
+        }
+        if (event.optString("title", "").trim().isEmpty()) {
+            return "Event title is required";
+        }
+        if (!DATE.matcher(event.optString("date", "")).matches()) {
+            return "Valid date is required";
+        }
+        if (!TIME.matcher(event.optString("time", "")).matches()) {
+            return "Valid time is required";
+        }
+        String priority = event.optString("priority", "");
+        if (!PRIORITY_STRICT.equals(priority) && !"non-strict".equals(priority)) {
+            return "Priority must be strict or non-strict";
+        }
+        try {
+            parseRule(event, startOf(event.optString("date"), event.optString("time")));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    public synchronized boolean delete(String id) {
+        boolean deleted = getWritableDatabase().delete(TABLE_EVENTS, "id = ?", new String[] { id }) > 0;
+        if (deleted) {
+            maxDurationMs = -1;
+            series = null;
+        }
+        return deleted;
+    }
+
+    public synchronized void clear() {
+        getWritableDatabase().delete(TABLE_EVENTS, null, null);
+        maxDurationMs = 0;
+        series = null;
+    }
+
+    /**
+     * Local midnight at the start of a YYYY-MM-DD date
+     */
+    public static long dayStart(String date) {
+        Matcher matcher = DATE.matcher(date != null ? date : "");
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1,
+            Integer.parseInt(matcher.group(3)));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Local start of an event from its date (YYYY-MM-DD) and time (HH:mm)
+     */
+    public static long startOf(String date, String time) {
+        Matcher matcher = TIME.matcher(time != null ? time : "");
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dayStart(date));
+        calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(matcher.group(1)));
+        calendar.set(Calendar.MINUTE, Integer.parseInt(matcher.group(2)));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Write one import chunk under the store lock, then release it for queries between chunks
+     */
+    private void commitChunk(List<JSONObject> chunk, int conflict, boolean clearFirst, ImportResult result) {
+        int written;
+        synchronized (this) {
+            written = write(chunk, conflict, clearFirst);
+        }
+        result.imported += written;
+        result.duplicates += chunk.size() - written;
+        chunk.clear();
+    }
+
+    private int write(List<JSONObject> events, int conflictAlgorithm, boolean clearFirst) {
+        SQLiteDatabase db = getWritableDatabase();
+        int written = 0;
+        series = null;
+        db.beginTransaction();
+        try {
+            if (clearFirst) {
+                db.delete(TABLE_EVENTS, null, null);
+                maxDurationMs = 0;
+            }
+            for (JSONObject event : events) {
+                ContentValues values;
+                try {
+                    values = toValues(event);
+                } catch (IllegalArgumentException e) {
+                    android.util.Log.w("AppBlocking", "Skipping invalid calendar event: " + e.getMessage());
+                    continue;
+                }
+                if (db.insertWithOnConflict(TABLE_EVENTS, null, values, conflictAlgorithm) != -1) {
+                    noteDuration(values);
+                    written++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return written;
+    }
+
+    private static ContentValues toValues(JSONObject event) {
+        String id = event.optString("id", "");
+        if (id.isEmpty()) {
+            throw new IllegalArgumentException("Event has no id");
+        }
+        long start = startOf(event.optString("date", null), event.optString("time", null));
+        int duration = event.optInt("duration", DEFAULT_DURATION_MINUTES);
+        if (duration <= 0) {
+            duration = DEFAULT_DURATION_MINUTES;
+        }
+        ContentValues values = new ContentValues();
+        values.put("id", id);
+        values.put("start_time", start);
+        values.put("end_time", start + duration * 60 * 1000L);
+        values.put("priority", event.optString("priority", "non-strict"));
+        // Rejects malformed rules before they are stored
+        values.put("recurring", parseRule(event, start) != null ? 1 : 0);
+        values.put("data", event.toString());
+        return values;
+    }
+
+    /**
+     * Recurrence rule of an event document, or null if it does not repeat
+     * { frequency: 'daily' | 'weekly', interval?, byWeekday?: [0-6, 0 = Sunday],
+     *   until?: 'YYYY-MM-DD', count?, exceptions?: ['YYYY-MM-DD'] }
+     */
+    private static RecurrenceRule parseRule(JSONObject event, long start) {
+        JSONObject recurrence = event.optJSONObject("recurrence");
+        if (recurrence == null) {
+            return null;
+        }
+        String frequency = recurrence.optString("frequency", "");
+        int freq;
+        if ("daily".equals(frequency)) {
+            freq = RecurrenceRule.FREQ_DAILY;
+        } else if ("weekly".equals(frequency)) {
+            freq = RecurrenceRule.FREQ_WEEKLY;
+        } else {
+            throw new IllegalArgumentException("Unsupported recurrence frequency: " + frequency);
+        }
+
+        int weekdayMask = 0;
+        JSONArray weekdays = recurrence.optJSONArray("byWeekday");
+        if (weekdays != null) {
+            for (int i = 0; i < weekdays.length(); i++) {
+                int weekday = weekdays.optInt(i, -1);
+                if (weekday < 0 || weekday > 6) {
+                    throw new IllegalArgumentException("Invalid weekday: " + weekdays.opt(i));
+                }
+                weekdayMask |= 1 << weekday;
+            }
+        }
+
+        TimeZone timeZone = TimeZone.getDefault();
+        String until = recurrence.optString("until", "");
+        long untilDay = until.isEmpty() ? Long.MAX_VALUE : RecurrenceRule.localDay(dayStart(until), timeZone);
+        Set<Long> exceptionDays = new HashSet<>();
+        JSONArray exceptions = recurrence.optJSONArray("exceptions");
+        if (exceptions != null) {
+            for (int i = 0; i < exceptions.length(); i++) {
+                exceptionDays.add(RecurrenceRule.localDay(dayStart(exceptions.optString(i)), timeZone));
+            }
+        }
+
+        int duration = event.optInt("duration", DEFAULT_DURATION_MINUTES);
+        return new RecurrenceRule(event.optString("id"), PRIORITY_STRICT.equals(event.optString("priority")),
+            freq, recurrence.optInt("interval", 1), weekdayMask, start,
+            (duration > 0 ? duration : DEFAULT_DURATION_MINUTES) * 60 * 1000L,
+            untilDay, recurrence.optInt("count", 0), exceptionDays, timeZone);
+    }
+
+    private List<Series> getSeries() {
+        if (series == null) {
+            List<Series> loaded = new ArrayList<>();
+            try (Cursor cursor = getReadableDatabase().rawQuery(
+                    "SELECT start_time, data FROM " + TABLE_EVENTS + " WHERE recurring = 1", null)) {
+                while (cursor.moveToNext()) {
+                    String data = cursor.getString(1);
+                    try {
+                        loaded.add(new Series(parseRule(new JSONObject(data), cursor.getLong(0)), data));
+                    } catch (JSONException | IllegalArgumentException e) {
+                        android.util.Log.w("AppBlocking", "Skipping unreadable recurring event: " + e.getMessage());
+                    }
+                }
+            }
+            series = loaded;
+        }
+        return series;
+    }
+
+    /**
+     * Document of one occurrence: the series document on the occurrence's date
+     */
+    private static String occurrence(Series entry, long start) {
+        try {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(start);
+            String date = String.format(Locale.US, "%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+            JSONObject occurrence = new JSONObject(entry.data);
+            occurrence.remove("recurrence");
+            occurrence.put("id", entry.rule.seriesId + "@" + date);
+            occurrence.put("seriesId", entry.rule.seriesId);
+            occurrence.put("date", date);
+            return occurrence.toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void noteDuration(ContentValues values) {
+        if (maxDurationMs >= 0) {
+            maxDurationMs = Math.max(maxDurationMs, values.getAsLong("end_time") - values.getAsLong("start_time"));
+        }
+    }
+
+    private long getMaxDurationMs() {
+        if (maxDurationMs < 0) {
+            try (Cursor cursor = getReadableDatabase().rawQuery(
+                    "SELECT MAX(end_time - start_time) FROM " + TABLE_EVENTS, null)) {
+                maxDurationMs = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+            }
+        }
+        return maxDurationMs;
+    }
+
+    private List<Item> queryItems(String sql, String[] args) {
+        List<Item> items = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                items.add(new Item(cursor.getLong(0), cursor.getString(1)));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Join documents into a JSON array in start order without re-parsing them
+     */
+    private static String toArray(List<Item> items) {
+        Collections.sort(items, (a, b) -> Long.compare(a.start, b.start));
+        StringBuilder builder = new StringBuilder("[");
+        for (Item item : items) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(item.json);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Join the data column of a query into a JSON array without re-parsing each document
+     */
+    private String queryArray(String sql, String[] args) {
+        StringBuilder builder = new StringBuilder("[");
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(cursor.getString(0));
+            }
+        }
+        return builder.append(']').toString();
+    }
+}
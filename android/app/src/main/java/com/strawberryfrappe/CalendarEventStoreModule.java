@@ -0,0 +1,292 @@
+package com.strawberryfrappe;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Native module bridge for the SQLite calendar event store
+ * Events cross the bridge as JSON strings (one document or an array), so query results
+ * are passed through without converting each event to a map. Backups are NDJSON files
+ * streamed natively, with progress reported as 'CalendarTransferProgress' events.
+ */
+public class CalendarEventStoreModule extends ReactContextBaseJavaModule {
+    private static final String MODULE_NAME = "CalendarEventStore";
+
+    private final ReactApplicationContext reactContext;
+    private final CalendarEventStore store;
+    // Database work runs off the bridge thread, one operation at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public CalendarEventStoreModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        store = CalendarEventStore.get(reactContext);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return MODULE_NAME;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        executor.shutdown();
+    }
+
+    @ReactMethod
+    public void getAllEvents(Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.getAll());
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Resolves with the event document, or null if there is no such event
+     */
+    @ReactMethod
+    public void getEvent(String eventId, Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.get(eventId));
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Events starting between two YYYY-MM-DD dates, both inclusive
+     */
+    @ReactMethod
+    public void getEventsByDateRange(String startDate, String endDate, Promise promise) {
+        executor.execute(() -> {
+            try {
+                long from = CalendarEventStore.dayStart(startDate);
+                // Next local midnight after endDate; days are not always 24h long
+                Calendar calendar = Calendar.getInstance();
+                calendar.setTimeInMillis(CalendarEventStore.dayStart(endDate));
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+                long to = calendar.getTimeInMillis();
+                promise.resolve(store.getStartingBetween(from, to));
+            } catch (IllegalArgumentException e) {
+                promise.reject("INVALID_DATE", e.getMessage());
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Strict events overlapping [startTime, endTime] (epoch millis, inclusive)
+     */
+    @ReactMethod
+    public void getStrictEventsOverlapping(double startTime, double endTime, Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.getStrictOverlapping((long) startTime, (long) endTime));
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * First limit events or recurring occurrences starting at or after afterTime (epoch millis)
+     */
+    @ReactMethod
+    public void getNextOccurrences(double afterTime, int limit, boolean strictOnly, Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.getNextOccurrences((long) afterTime, Math.max(0, limit), strictOnly));
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getEventCount(Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.count());
+            } catch (Exception e) {
+                promise.reject("CALENDAR_QUERY_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Insert or replace one event document (validated in JS; date/time are re-checked here)
+     */
+    @ReactMethod
+    public void putEvent(String eventJson, Promise promise) {
+        executor.execute(() -> {
+            try {
+                store.put(new JSONObject(eventJson));
+                promise.resolve(true);
+            } catch (IllegalArgumentException e) {
+                promise.reject("INVALID_EVENT", e.getMessage());
+            } catch (Exception e) {
+                promise.reject("CALENDAR_WRITE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Insert or replace a JSON array of events in one transaction; resolves with the count written
+     */
+    @ReactMethod
+    public void putEvents(String eventsJson, Promise promise) {
+        executor.execute(() -> {
+            try {
+                JSONArray array = new JSONArray(eventsJson);
+                List<JSONObject> events = new ArrayList<>(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    events.add(array.getJSONObject(i));
+                }
+                promise.resolve(store.putAll(events));
+            } catch (Exception e) {
+                promise.reject("CALENDAR_WRITE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Resolves false if there was no such event
+     */
+    @ReactMethod
+    public void deleteEvent(String eventId, Promise promise) {
+        executor.execute(() -> {
+            try {
+                promise.resolve(store.delete(eventId));
+            } catch (Exception e) {
+                promise.reject("CALENDAR_WRITE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void clearAllEvents(Promise promise) {
+        executor.execute(() -> {
+            try {
+                store.clear();
+                promise.resolve(true);
+            } catch (Exception e) {
+                promise.reject("CALENDAR_WRITE_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * One-time migration of the legacy '@calendar_events' AsyncStorage blob
+     * Resolves with the number of events imported
+     */
+    @ReactMethod
+    public void migrateLegacyEvents(String blob, Promise promise) {
+        executor.execute(() -> {
+            try {
+                int imported = store.importLegacy(blob);
+                android.util.Log.i("AppBlocking", "Migrated " + imported + " calendar events to SQLite");
+                promise.resolve(imported);
+            } catch (Exception e) {
+                promise.reject("CALENDAR_MIGRATION_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stream every event to an NDJSON file; path defaults to filesDir/backups/calendar-<time>.ndjson
+     * Resolves with { path, events, bytes }
+     */
+    @ReactMethod
+    public void exportEventsToFile(String path, Promise promise) {
+        executor.execute(() -> {
+            try {
+                File file;
+                if (path != null) {
+                    file = new File(path);
+                } else {
+                    File directory = new File(reactContext.getFilesDir(), "backups");
+                    if (!directory.isDirectory() && !directory.mkdirs()) {
+                        promise.reject("CALENDAR_EXPORT_ERROR", "Cannot create " + directory);
+                        return;
+                    }
+                    file = new File(directory, "calendar-" + System.currentTimeMillis() + ".ndjson");
+                }
+                int events = store.exportTo(file, (records, done, total) -> sendProgress("export", records, done, total));
+                WritableMap result = Arguments.createMap();
+                result.putString("path", file.getAbsolutePath());
+                result.putInt("events", events);
+                result.putDouble("bytes", file.length());
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("CALENDAR_EXPORT_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stream events from an NDJSON file, validating each record and committing in chunks
+     * Resolves with { imported, duplicates, invalid, bytes }
+     */
+    @ReactMethod
+    public void importEventsFromFile(String path, boolean replace, Promise promise) {
+        executor.execute(() -> {
+            try {
+                File file = new File(path);
+                if (!file.isFile()) {
+                    promise.reject("FILE_NOT_FOUND", "No backup at " + path);
+                    return;
+                }
+                CalendarEventStore.ImportResult imported = store.importFrom(file, replace,
+                    (records, done, total) -> sendProgress("import", records, done, total));
+                WritableMap result = Arguments.createMap();
+                result.putInt("imported", imported.imported);
+                result.putInt("duplicates", imported.duplicates);
+                result.putInt("invalid", imported.invalid);
+                result.putDouble("bytes", imported.bytes);
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("CALENDAR_IMPORT_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    private void sendProgress(String operation, int records, long done, long total) {
+        try {
+            WritableMap params = Arguments.createMap();
+            params.putString("operation", operation);
+            params.putInt("records", records);
+            params.putDouble("done", done);
+            params.putDouble("total", total);
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit("CalendarTransferProgress", params);
+        } catch (Exception e) {
+            // No active React instance; the transfer continues
+        }
+    }
+}
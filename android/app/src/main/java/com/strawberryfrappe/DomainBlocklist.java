@@ -0,0 +1,261 @@
+package com.strawberryfrappe;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable set of blocked domains matched against a host and each of its parent domains
+ * Domains are stored sorted in one ASCII byte blob with an offset table (no per-domain
+ * objects) and fronted by a Bloom filter, so most suffixes of a host are rejected by a
+ * few bit probes and only Bloom hits pay for an exact binary search. Blocking
+ * "example.com" also blocks "www.example.com" and "m.example.com".
+ * Free of Android dependencies.
+ */
+public class DomainBlocklist {
+    public static final DomainBlocklist EMPTY = new DomainBlocklist(Collections.<String>emptyList());
+
+    private static final int BLOOM_BITS_PER_DOMAIN = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private final byte[] blob;
+    // Start of domain i in blob; offsets[size] is the blob length
+    private final int[] offsets;
+    private final long[] bloom;
+    private final int bloomBits;
+
+    public DomainBlocklist(Collection<String> domains) {
+        List<String> normalized = new ArrayList<>(domains.size());
+        for (String domain : domains) {
+            String entry = normalize(domain);
+            if (entry != null) {
+                normalized.add(entry);
+            }
+        }
+        String[] sorted = normalized.toArray(new String[0]);
+        Arrays.sort(sorted);
+
+        int unique = 0;
+        int length = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || !sorted[i].equals(sorted[i - 1])) {
+                sorted[unique++] = sorted[i];
+                length += sorted[i].length();
+            }
+        }
+        blob = new byte[length];
+        offsets = new int[unique + 1];
+        bloomBits = Math.max(64, (unique * BLOOM_BITS_PER_DOMAIN + 63) & ~63);
+        bloom = new long[bloomBits / 64];
+        int position = 0;
+        for (int i = 0; i < unique; i++) {
+            String domain = sorted[i];
+            offsets[i] = position;
+            for (int j = 0; j < domain.length(); j++) {
+                blob[position++] = (byte) domain.charAt(j);
+            }
+            addToBloom(domain);
+        }
+        offsets[unique] = position;
+    }
+
+    /**
+     * Read one domain per line; hosts-file lines ("0.0.0.0 example.com") and # comments are accepted
+     */
+    public static DomainBlocklist read(File file) throws IOException {
+        List<String> domains = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // Hosts files list the address first; the domain is the last token
+                int space = Math.max(line.lastIndexOf(' '), line.lastIndexOf('\t'));
+                domains.add(space >= 0 ? line.substring(space + 1) : line);
+            }
+        }
+        return new DomainBlocklist(domains);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Blocked domain covering host (the host itself or a parent domain), or null
+     * host must already be normalized (lowercase ASCII), as returned by hostOf.
+     */
+    public String match(String host) {
+        if (size() == 0) {
+            return null;
+        }
+        int start = 0;
+        while (start < host.length()) {
+            if (mightContain(host, start) && indexOf(host, start) >= 0) {
+                return host.substring(start);
+            }
+            int dot = host.indexOf('.', start);
+            if (dot < 0) {
+                break;
+            }
+            start = dot + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Lowercase ASCII form of a domain entry, without "*." / leading or trailing dots; null if invalid
+     */
+    public static String normalize(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        String entry = domain.trim().toLowerCase(Locale.ROOT);
+        if (entry.startsWith("*.")) {
+            entry = entry.substring(2);
+        }
+        while (entry.startsWith(".")) {
+            entry = entry.substring(1);
+        }
+        while (entry.endsWith(".")) {
+            entry = entry.substring(0, entry.length() - 1);
+        }
+        if (entry.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < entry.length(); i++) {
+            if (entry.charAt(i) > 127) {
+                // Internationalized domain: match on its punycode form, as browsers show it
+                try {
+                    entry = IDN.toASCII(entry);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+                break;
+            }
+        }
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '.')) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Host of the text shown in a browser URL bar ("https://m.example.com/x", "example.com"),
+     * or null when the text is not a URL (a search query, a page title, empty)
+     */
+    public static String hostOf(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        String url = text.toString().trim();
+        if (url.isEmpty() || url.indexOf(' ') >= 0) {
+            return null;
+        }
+        int scheme = url.indexOf("://");
+        int start = scheme >= 0 ? scheme + 3 : 0;
+        int end = url.length();
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1; // user:password@host
+        }
+        int port = url.indexOf(':', start);
+        if (port >= 0 && port < end) {
+            end = port;
+        }
+        String host = normalize(url.substring(start, end));
+        return host != null && host.indexOf('.') > 0 ? host : null;
+    }
+
+    private void addToBloom(String domain) {
+        int h1 = hash(domain, 0, 0x811c9dc5);
+        int h2 = hash(domain, 0, 0x5bd1e995) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    private boolean mightContain(String host, int start) {
+        int h1 = hash(host, start, 0x811c9dc5);
+        int h2 = hash(host, start, 0x5bd1e995) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a over host[start..], with the seed as offset basis
+    private static int hash(String value, int start, int seed) {
+        int h = seed;
+        for (int i = start; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Binary search for host[start..] in the sorted blob
+     */
+    private int indexOf(String host, int start) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, host, start);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int index, String host, int start) {
+        int from = offsets[index];
+        int length = offsets[index + 1] - from;
+        int hostLength = host.length() - start;
+        int n = Math.min(length, hostLength);
+        for (int i = 0; i < n; i++) {
+            int diff = blob[from + i] - host.charAt(start + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - hostLength;
+    }
+}
@@ -0,0 +1,67 @@
+package com.strawberryfrappe;
+
+import android.app.PendingIntent;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+
+/**
+ * Quick Settings tile that toggles a preset focus session
+ * Handled entirely natively through QuickSessions; the JS runtime is never started.
+ */
+public class FocusTileService extends TileService {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Tile state follows session changes made anywhere while the panel is open
+    private final BlockingSessionStore.Listener sessionListener = snapshot -> handler.post(this::updateTile);
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        BlockingSessionStore.get(this).addListener(sessionListener);
+        updateTile();
+    }
+
+    @Override
+    public void onStopListening() {
+        super.onStopListening();
+        BlockingSessionStore.get(this).removeListener(sessionListener);
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        long tapTime = SystemClock.elapsedRealtime();
+        if (QuickSessions.isActive(this)) {
+            QuickSessions.stop(this);
+        } else if (QuickSessions.start(this, tapTime) == null) {
+            // Nothing selected yet: open the app to pick apps
+            Intent intent = new Intent(this, com.strawberryfrappe.aricapp.MainActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                startActivityAndCollapse(PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_IMMUTABLE));
+            } else {
+                startActivityAndCollapse(intent);
+            }
+        }
+        updateTile();
+    }
+
+    private void updateTile() {
+        Tile tile = getQsTile();
+        if (tile == null) {
+            return;
+        }
+        boolean active = QuickSessions.isActive(this);
+        tile.setState(active ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE);
+        tile.setLabel("Focus");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            tile.setSubtitle(active ? "On" : QuickSessions.getMinutes(this) + " min");
+        }
+        tile.updateTile();
+    }
+}
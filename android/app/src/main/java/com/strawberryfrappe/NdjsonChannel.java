@@ -0,0 +1,139 @@
+package com.strawberryfrappe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Newline-delimited JSON over a FileChannel with one reusable direct buffer
+ * Records are read and written one line at a time, so a backup is never held in
+ * memory as a whole; only the current line is. Free of Android dependencies.
+ */
+public class NdjsonChannel {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] NEWLINE = { '\n' };
+
+    /**
+     * Reads UTF-8 lines; a missing newline after the last record is tolerated
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private byte[] line = new byte[1024];
+        private int lineLength = 0;
+        private long bytesRead = 0;
+        private boolean eof = false;
+
+        public Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip(); // Start empty
+        }
+
+        /**
+         * Next line without its terminator (blank lines included), or null at end of file
+         */
+        public String readLine() throws IOException {
+            lineLength = 0;
+            while (true) {
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        return decode();
+                    }
+                    append(b);
+                }
+                if (eof) {
+                    return lineLength > 0 ? decode() : null;
+                }
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    bytesRead += read;
+                }
+            }
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void append(byte b) {
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+
+        private String decode() {
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes one record per line; call close() (or flush()) to push out the tail
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long bytesWritten = 0;
+
+        public Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public void writeLine(String record) throws IOException {
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            put(bytes);
+            put(NEWLINE);
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten + buffer.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Preset focus sessions started natively, without booting the React Native runtime
+ * Uses the app and category selection stored by AppBlockingModule and a preset
+ * duration, so a tile tap only writes the session store and starts the service.
+ */
+public class QuickSessions {
+    private static final String PREFS_NAME = "app_blocking_prefs";
+    private static final String KEY_SELECTED_APPS = "selected_apps_for_blocking";
+    private static final String KEY_SELECTED_CATEGORY_MASK = "selected_category_mask";
+    static final String KEY_QUICK_SESSION_MINUTES = "quick_session_minutes";
+
+    static final int DEFAULT_MINUTES = 25;
+
+    /**
+     * Start a preset blocklist session; tapTime is the tap's elapsedRealtime for latency stats
+     * Returns the session id, or null if nothing is selected for blocking
+     */
+    public static String start(Context context, long tapTime) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Set<String> apps = new HashSet<>(prefs.getStringSet(KEY_SELECTED_APPS, new HashSet<>()));
+        int categoryMask = prefs.getInt(KEY_SELECTED_CATEGORY_MASK, 0);
+        if (apps.isEmpty() && categoryMask == 0) {
+            android.util.Log.w("AppBlocking", "Quick session not started - no apps or categories selected");
+            return null;
+        }
+        long endTime = System.currentTimeMillis() + getMinutes(context) * 60 * 1000L;
+        String sessionId = BlockingSessionStore.get(context).add(BlockingSessionStore.ORIGIN_QUICK,
+            BlockingSessionStore.MODE_BLOCKLIST, apps, categoryMask, endTime);
+
+        // The accessibility service already enforces from the store; the service adds the
+        // notification and the usage stats fallback
+        Intent serviceIntent = new Intent(context, BlockingForegroundService.class);
+        serviceIntent.putExtra(BlockingForegroundService.EXTRA_TAP_TIME, tapTime);
+        try {
+            context.startForegroundService(serviceIntent);
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Could not start blocking service for quick session: " + e.getMessage());
+        }
+        return sessionId;
+    }
+
+    /**
+     * End quick sessions only; sessions started from the app or the calendar keep running
+     */
+    public static void stop(Context context) {
+        BlockingSessionStore.get(context).removeOrigin(BlockingSessionStore.ORIGIN_QUICK, SessionLedger.REASON_TILE);
+    }
+
+    public static boolean isActive(Context context) {
+        for (BlockingSessionStore.Session session : BlockingSessionStore.get(context).getSessions()) {
+            if (BlockingSessionStore.ORIGIN_QUICK.equals(session.origin)
+                    && session.endTime > System.currentTimeMillis()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int getMinutes(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getInt(KEY_QUICK_SESSION_MINUTES, DEFAULT_MINUTES);
+    }
+}
@@ -0,0 +1,165 @@
+package com.strawberryfrappe;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * RRULE-style recurrence of a calendar event, expanded lazily
+ * Supports daily and weekly frequencies with an interval, weekly weekday sets, an
+ * end date or occurrence count, and excluded dates. Occurrences keep the local
+ * wall-clock time of the first one across DST changes. COUNT is resolved once into
+ * the last occurrence start, so every query is a bounded forward scan from t.
+ * Free of Android dependencies.
+ */
+public class RecurrenceRule {
+    public static final int FREQ_DAILY = 0;
+    public static final int FREQ_WEEKLY = 1;
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    // Upper bound on candidate days scanned per query (exceptions can skip occurrences)
+    private static final int MAX_SCAN_DAYS = 5000;
+
+    public final String seriesId;
+    public final boolean strict;
+    public final int frequency;
+    public final int interval;
+    // Bit (1 << n) per weekday, n = 0 for Sunday as in JS Date.getDay()
+    public final int weekdayMask;
+    public final long firstStart;
+    public final long durationMs;
+    // Start of the last occurrence (Long.MAX_VALUE if unbounded)
+    public final long lastStart;
+
+    private final TimeZone timeZone;
+    private final long firstDay;
+    private final int minuteOfDay;
+    private final Set<Long> exceptionDays;
+
+    /**
+     * @param untilDay  local epoch day of the last allowed occurrence, or Long.MAX_VALUE
+     * @param count     maximum number of occurrences (excluded dates included), or 0
+     * @param exceptionDays local epoch days without an occurrence
+     */
+    public RecurrenceRule(String seriesId, boolean strict, int frequency, int interval, int weekdayMask,
+                          long firstStart, long durationMs, long untilDay, int count,
+                          Set<Long> exceptionDays, TimeZone timeZone) {
+        if (frequency != FREQ_DAILY && frequency != FREQ_WEEKLY) {
+            throw new IllegalArgumentException("Unsupported frequency: " + frequency);
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        this.seriesId = seriesId;
+        this.strict = strict;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.firstStart = firstStart;
+        this.durationMs = durationMs;
+        this.timeZone = timeZone;
+        this.exceptionDays = exceptionDays != null ? new HashSet<>(exceptionDays) : Collections.<Long>emptySet();
+        this.firstDay = localDay(firstStart, timeZone);
+        this.minuteOfDay = (int) ((firstStart + timeZone.getOffset(firstStart) - firstDay * DAY_MS) / 60000);
+
+        int mask = weekdayMask & 0x7f;
+        if (frequency == FREQ_WEEKLY && mask == 0) {
+            mask = 1 << weekday(firstDay);
+        }
+        this.weekdayMask = mask;
+
+        long last = untilDay == Long.MAX_VALUE ? Long.MAX_VALUE : startOfDay(untilDay);
+        if (count > 0) {
+            // Walk the first count occurrences once; excluded dates still consume the count
+            long start = -1;
+            long day = firstDay;
+            for (int i = 0; i < count; i++) {
+                day = nextCandidateDay(day);
+                if (day < 0) {
+                    break;
+                }
+                start = startOfDay(day);
+                day++;
+            }
+            last = Math.min(last, start);
+        }
+        this.lastStart = last;
+    }
+
+    /**
+     * Start of the first occurrence at or after t, or -1 if the series has ended
+     */
+    public long nextStartAtOrAfter(long t) {
+        if (t > lastStart) {
+            return -1;
+        }
+        long day = Math.max(firstDay, localDay(t, timeZone) - 1);
+        for (int scanned = 0; scanned < MAX_SCAN_DAYS; scanned++) {
+            day = nextCandidateDay(day);
+            if (day < 0) {
+                return -1;
+            }
+            long start = startOfDay(day);
+            if (start > lastStart) {
+                return -1;
+            }
+            if (start >= t && start >= firstStart && !exceptionDays.contains(day)) {
+                return start;
+            }
+            day++;
+        }
+        return -1;
+    }
+
+    /**
+     * Local epoch day (days since 1970-01-01 in the given zone) containing time t
+     */
+    public static long localDay(long t, TimeZone timeZone) {
+        return Math.floorDiv(t + timeZone.getOffset(t), DAY_MS);
+    }
+
+    /**
+     * First day at or after day that the frequency/interval/weekday pattern selects
+     */
+    private long nextCandidateDay(long day) {
+        if (day < firstDay) {
+            day = firstDay;
+        }
+        if (frequency == FREQ_DAILY) {
+            long offset = Math.floorMod(day - firstDay, (long) interval);
+            return offset == 0 ? day : day + (interval - offset);
+        }
+        // Weekly: weeks start on Monday (RFC 5545 default WKST)
+        long firstWeek = weekStart(firstDay);
+        for (int i = 0; i < 7 * interval + 7; i++, day++) {
+            long weekIndex = (weekStart(day) - firstWeek) / 7;
+            if (weekIndex % interval == 0 && (weekdayMask & (1 << weekday(day))) != 0) {
+                return day;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Local start of the occurrence on a given epoch day, keeping the wall-clock time
+     */
+    private long startOfDay(long day) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(day * DAY_MS);
+        Calendar local = Calendar.getInstance(timeZone);
+        local.clear();
+        local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH),
+            minuteOfDay / 60, minuteOfDay % 60);
+        return local.getTimeInMillis();
+    }
+
+    // 0 = Sunday; epoch day 0 (1970-01-01) was a Thursday
+    private static int weekday(long day) {
+        return (int) Math.floorMod(day + 4, 7L);
+    }
+
+    private static long weekStart(long day) {
+        return day - Math.floorMod(day + 3, 7L); // Monday
+    }
+}
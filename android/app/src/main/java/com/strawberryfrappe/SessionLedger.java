@@ -0,0 +1,238 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Append-only ledger of finished focus sessions, one fixed-size record each
+ * Layout: magic "FSLG" and a version int, then 32-byte records (start, planned end,
+ * actual end, attempts, origin, end reason). Fixed records make the newest N readable
+ * from the tail without an index; a torn tail from a crash is cut off when opening.
+ * Stats (completion rate, focused time, streaks) are aggregated in one pass when the
+ * ledger is opened and then maintained on every append.
+ */
+public class SessionLedger {
+    public static final int REASON_COMPLETED = 0;
+    // Stopped from the app (stop button, calendar override)
+    public static final int REASON_STOPPED = 1;
+    public static final int REASON_NOTIFICATION = 2;
+    public static final int REASON_TILE = 3;
+
+    public static final int ORIGIN_MANUAL = 0;
+    public static final int ORIGIN_QUICK = 1;
+    public static final int ORIGIN_CALENDAR = 2;
+    public static final int ORIGIN_OTHER = 3;
+
+    private static final String FILE_NAME = "focus_sessions.ledger";
+    private static final int MAGIC = 0x46534c47; // "FSLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 32;
+
+    public static class Record {
+        public final long startTime;
+        public final long plannedEndTime;
+        public final long actualEndTime;
+        public final int attempts;
+        public final int origin;
+        public final int reason;
+
+        public Record(long startTime, long plannedEndTime, long actualEndTime, int attempts, int origin, int reason) {
+            this.startTime = startTime;
+            this.plannedEndTime = plannedEndTime;
+            this.actualEndTime = actualEndTime;
+            this.attempts = attempts;
+            this.origin = origin;
+            this.reason = reason;
+        }
+
+        public boolean isCompleted() {
+            return reason == REASON_COMPLETED;
+        }
+    }
+
+    public static class Stats {
+        public final int sessions;
+        public final int completed;
+        public final long focusedMs;
+        public final long attempts;
+        public final int currentStreak;
+        public final int longestStreak;
+
+        Stats(int sessions, int completed, long focusedMs, long attempts, int currentStreak, int longestStreak) {
+            this.sessions = sessions;
+            this.completed = completed;
+            this.focusedMs = focusedMs;
+            this.attempts = attempts;
+            this.currentStreak = currentStreak;
+            this.longestStreak = longestStreak;
+        }
+
+        public double getCompletionRate() {
+            return sessions > 0 ? (double) completed / sessions : 0;
+        }
+    }
+
+    private static SessionLedger instance;
+
+    private final File file;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private FileChannel channel;
+    private int count = 0;
+
+    // Aggregates over every record
+    private int completed = 0;
+    private long focusedMs = 0;
+    private long attempts = 0;
+    // Streaks count consecutive local days with at least one completed session
+    private long lastStreakDay = Long.MIN_VALUE;
+    private int streak = 0;
+    private int longestStreak = 0;
+
+    SessionLedger(File file) {
+        this.file = file;
+    }
+
+    public static synchronized SessionLedger get(Context context) {
+        if (instance == null) {
+            instance = new SessionLedger(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Ledger origin code for a session origin ("calendar:<eventId>" counts as calendar)
+     */
+    public static int originOf(String origin) {
+        if (BlockingSessionStore.ORIGIN_MANUAL.equals(origin)) {
+            return ORIGIN_MANUAL;
+        }
+        if (BlockingSessionStore.ORIGIN_QUICK.equals(origin)) {
+            return ORIGIN_QUICK;
+        }
+        return origin != null && origin.startsWith("calendar") ? ORIGIN_CALENDAR : ORIGIN_OTHER;
+    }
+
+    public synchronized void append(Record entry) throws IOException {
+        FileChannel out = open();
+        record.clear();
+        record.putLong(entry.startTime);
+        record.putLong(entry.plannedEndTime);
+        record.putLong(entry.actualEndTime);
+        record.putInt(entry.attempts);
+        record.put((byte) entry.origin);
+        record.put((byte) entry.reason);
+        record.putShort((short) 0);
+        record.flip();
+        long position = HEADER_SIZE + (long) count * RECORD_SIZE;
+        while (record.hasRemaining()) {
+            position += out.write(record, position);
+        }
+        count++;
+        accumulate(entry);
+    }
+
+    public synchronized Stats getStats(long now) {
+        try {
+            open();
+        } catch (IOException e) {
+            android.util.Log.e("AppBlocking", "Failed to open session ledger: " + e.getMessage());
+        }
+        // The streak is still current if the last completed day was today or yesterday
+        long today = RecurrenceRule.localDay(now, TimeZone.getDefault());
+        int current = lastStreakDay >= today - 1 ? streak : 0;
+        return new Stats(count, completed, focusedMs, attempts, current, longestStreak);
+    }
+
+    /**
+     * Newest records first, at most limit of them
+     */
+    public synchronized List<Record> getRecent(int limit) throws IOException {
+        FileChannel in = open();
+        int n = Math.min(limit, count);
+        List<Record> records = new ArrayList<>(n);
+        for (int i = count - 1; i >= count - n; i--) {
+            records.add(read(in, i));
+        }
+        return records;
+    }
+
+    /**
+     * Open the file, cut off a torn tail and aggregate the existing records
+     */
+    private FileChannel open() throws IOException {
+        if (channel != null) {
+            return channel;
+        }
+        FileChannel opened = new RandomAccessFile(file, "rw").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (opened.size() < HEADER_SIZE || opened.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            opened.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            opened.write(header, 0);
+        }
+        count = (int) ((opened.size() - HEADER_SIZE) / RECORD_SIZE);
+        opened.truncate(HEADER_SIZE + (long) count * RECORD_SIZE);
+        channel = opened;
+        for (int i = 0; i < count; i++) {
+            accumulate(read(opened, i));
+        }
+        return opened;
+    }
+
+    private Record read(FileChannel in, int index) throws IOException {
+        record.clear();
+        long position = HEADER_SIZE + (long) index * RECORD_SIZE;
+        while (record.hasRemaining()) {
+            int read = in.read(record, position + record.position());
+            if (read < 0) {
+                throw new IOException("Truncated ledger record " + index);
+            }
+        }
+        record.flip();
+        long start = record.getLong();
+        long plannedEnd = record.getLong();
+        long actualEnd = record.getLong();
+        int recordAttempts = record.getInt();
+        int origin = record.get();
+        int reason = record.get();
+        // A torn or foreign record must not index past the names the bridge maps these to
+        if (origin < ORIGIN_MANUAL || origin > ORIGIN_OTHER) {
+            origin = ORIGIN_OTHER;
+        }
+        if (reason < REASON_COMPLETED || reason > REASON_TILE) {
+            // Not counted as completed, so a bad byte cannot extend a streak
+            reason = REASON_STOPPED;
+        }
+        return new Record(start, plannedEnd, actualEnd, recordAttempts, origin, reason);
+    }
+
+    private void accumulate(Record entry) {
+        focusedMs += Math.max(0, entry.actualEndTime - entry.startTime);
+        attempts += entry.attempts;
+        if (!entry.isCompleted()) {
+            return;
+        }
+        completed++;
+        long day = RecurrenceRule.localDay(entry.actualEndTime, TimeZone.getDefault());
+        if (day == lastStreakDay + 1) {
+            streak++;
+        } else if (day > lastStreakDay) {
+            streak = 1;
+        } else {
+            // Same day, or a late record for an earlier day (e.g. expired while the process was dead)
+            return;
+        }
+        lastStreakDay = day;
+        longestStreak = Math.max(longestStreak, streak);
+    }
+}
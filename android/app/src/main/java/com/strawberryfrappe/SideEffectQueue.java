@@ -0,0 +1,80 @@
+package com.strawberryfrappe;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background queue for work that must stay off the accessibility main thread
+ * Stats, recordings, persistence and package lookups run here so a disk stall never
+ * delays the next block (blocking events go through BlockingEventBus instead). The queue is bounded: when it is
+ * full new work is dropped and counted instead of piling up behind a stall.
+ */
+public class SideEffectQueue {
+    private static final int CAPACITY = 256;
+
+    private static SideEffectQueue instance;
+
+    private final Handler handler;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private SideEffectQueue() {
+        HandlerThread thread = new HandlerThread("AppBlockingSideEffects", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized SideEffectQueue get() {
+        if (instance == null) {
+            instance = new SideEffectQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a side effect; returns false (and counts a drop) if the queue is full
+     */
+    public boolean post(Runnable task) {
+        if (pending.incrementAndGet() > CAPACITY) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        handler.post(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Side effect failed: " + e.getMessage());
+            } finally {
+                pending.decrementAndGet();
+                executed.incrementAndGet();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Looper of the queue thread, for callbacks that should be delivered off the main thread
+     */
+    public Looper getLooper() {
+        return handler.getLooper();
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,331 @@
+package com.strawberryfrappe;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opt-in streaming analytics over foreground app switches, in fixed memory
+ * - Switches per hour: a ring of the last HOURS hourly counters.
+ * - Most switched-to apps: Space-Saving summary of TOP_K counters. Any app switched to
+ *   more than total / TOP_K times is guaranteed to be tracked, and each count
+ *   overestimates by at most its recorded error.
+ * - Unlock to distraction: time from unlocking to the first switch to a selected (blocked)
+ *   app or category, as a histogram with count, sum, min and max.
+ * Each switch costs O(TOP_K) at worst (a constant), and memory does not grow with history.
+ */
+public class SwitchAnalytics {
+    public static final int HOURS = 7 * 24;
+    public static final int TOP_K = 32;
+    // A distraction this long after unlocking is not counted as following the unlock
+    public static final long UNLOCK_WINDOW_MS = 10 * 60 * 1000;
+    // Histogram upper bounds; the last bucket holds everything up to UNLOCK_WINDOW_MS
+    public static final long[] INTERVAL_BOUNDS_MS = { 5000, 15000, 30000, 60000, 120000, 300000 };
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final String FILE_NAME = "switch_analytics.bin";
+    private static final int MAGIC = 0x41425357; // "ABSW"
+    private static final int VERSION = 1;
+
+    public static class TopApp {
+        public final String packageName;
+        public final long count;
+        // Upper bound on how much count overestimates
+        public final long error;
+
+        TopApp(String packageName, long count, long error) {
+            this.packageName = packageName;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static SwitchAnalytics instance;
+
+    private final File file;
+
+    private long totalSwitches = 0;
+    private String lastPackage;
+    private final long[] hourKeys = new long[HOURS];
+    private final int[] hourCounts = new int[HOURS];
+
+    private final String[] topPackages = new String[TOP_K];
+    private final long[] topCounts = new long[TOP_K];
+    private final long[] topErrors = new long[TOP_K];
+    private final Map<String, Integer> topSlots = new HashMap<>();
+    private int topSize = 0;
+
+    // elapsedRealtime of the last unlock still waiting for a distraction, or -1
+    private long unlockTime = -1;
+    private final long[] intervalCounts = new long[INTERVAL_BOUNDS_MS.length + 1];
+    private long intervalCount = 0;
+    private long intervalSumMs = 0;
+    private long intervalMinMs = Long.MAX_VALUE;
+    private long intervalMaxMs = 0;
+
+    private Set<String> distractingPackages = Collections.emptySet();
+    private int distractingCategoryMask = 0;
+
+    SwitchAnalytics(File file) {
+        this.file = file;
+        try {
+            load();
+        } catch (IOException e) {
+            android.util.Log.w("AppBlocking", "Discarding unreadable switch analytics: " + e.getMessage());
+            reset();
+        }
+    }
+
+    public static synchronized SwitchAnalytics get(Context context) {
+        if (instance == null) {
+            instance = new SwitchAnalytics(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Apps and categories counted as distractions (the blocking selection)
+     */
+    public synchronized void setDistractions(Set<String> packages, int categoryMask) {
+        distractingPackages = new HashSet<>(packages);
+        distractingCategoryMask = categoryMask;
+    }
+
+    /**
+     * A window of packageName came to the foreground
+     * Exempt packages (launcher, system UI) end the previous app's turn without counting.
+     */
+    public synchronized void onSwitch(String packageName, int category, boolean exempt, long wallTime, long elapsed) {
+        if (packageName.equals(lastPackage)) {
+            return;
+        }
+        lastPackage = packageName;
+        if (exempt) {
+            return;
+        }
+        totalSwitches++;
+
+        long hour = Math.floorDiv(wallTime, HOUR_MS);
+        int slot = (int) Math.floorMod(hour, (long) HOURS);
+        if (hourKeys[slot] != hour) {
+            hourKeys[slot] = hour;
+            hourCounts[slot] = 0;
+        }
+        hourCounts[slot]++;
+
+        countTop(packageName);
+
+        if (unlockTime >= 0) {
+            long interval = elapsed - unlockTime;
+            if (interval > UNLOCK_WINDOW_MS) {
+                unlockTime = -1;
+            } else if (distractingPackages.contains(packageName)
+                    || (category >= 0 && category < 32 && (distractingCategoryMask & (1 << category)) != 0)) {
+                recordInterval(interval);
+                unlockTime = -1;
+            }
+        }
+    }
+
+    public synchronized void onUnlock(long elapsed) {
+        unlockTime = elapsed;
+    }
+
+    public synchronized void onScreenOff() {
+        unlockTime = -1;
+        lastPackage = null;
+    }
+
+    public synchronized long getTotalSwitches() {
+        return totalSwitches;
+    }
+
+    /**
+     * Switches in each of the last hours hours, oldest first, the last being the current hour
+     */
+    public synchronized int[] getSwitchesPerHour(long now, int hours) {
+        int count = Math.min(hours, HOURS);
+        int[] result = new int[count];
+        long currentHour = Math.floorDiv(now, HOUR_MS);
+        for (int i = 0; i < count; i++) {
+            long hour = currentHour - (count - 1 - i);
+            int slot = (int) Math.floorMod(hour, (long) HOURS);
+            result[i] = hourKeys[slot] == hour ? hourCounts[slot] : 0;
+        }
+        return result;
+    }
+
+    public synchronized List<TopApp> getTopApps(int limit) {
+        List<TopApp> apps = new ArrayList<>(topSize);
+        for (int i = 0; i < topSize; i++) {
+            apps.add(new TopApp(topPackages[i], topCounts[i], topErrors[i]));
+        }
+        Collections.sort(apps, (a, b) -> Long.compare(b.count, a.count));
+        return apps.subList(0, Math.min(Math.max(0, limit), apps.size()));
+    }
+
+    public synchronized long[] getIntervalHistogram() {
+        return intervalCounts.clone();
+    }
+
+    public synchronized long getIntervalCount() {
+        return intervalCount;
+    }
+
+    public synchronized long getIntervalAverageMs() {
+        return intervalCount > 0 ? intervalSumMs / intervalCount : 0;
+    }
+
+    public synchronized long getIntervalMinMs() {
+        return intervalCount > 0 ? intervalMinMs : 0;
+    }
+
+    public synchronized long getIntervalMaxMs() {
+        return intervalMaxMs;
+    }
+
+    public synchronized void reset() {
+        totalSwitches = 0;
+        lastPackage = null;
+        Arrays.fill(hourKeys, 0);
+        Arrays.fill(hourCounts, 0);
+        Arrays.fill(topPackages, null);
+        Arrays.fill(topCounts, 0);
+        Arrays.fill(topErrors, 0);
+        topSlots.clear();
+        topSize = 0;
+        unlockTime = -1;
+        Arrays.fill(intervalCounts, 0);
+        intervalCount = 0;
+        intervalSumMs = 0;
+        intervalMinMs = Long.MAX_VALUE;
+        intervalMaxMs = 0;
+    }
+
+    /**
+     * Write the fixed-size state; call off the accessibility thread
+     */
+    public synchronized void save() throws IOException {
+        File partial = new File(file.getPath() + ".partial");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(totalSwitches);
+            for (int i = 0; i < HOURS; i++) {
+                out.writeLong(hourKeys[i]);
+                out.writeInt(hourCounts[i]);
+            }
+            out.writeByte(topSize);
+            for (int i = 0; i < topSize; i++) {
+                out.writeUTF(topPackages[i]);
+                out.writeLong(topCounts[i]);
+                out.writeLong(topErrors[i]);
+            }
+            out.writeByte(intervalCounts.length);
+            for (long count : intervalCounts) {
+                out.writeLong(count);
+            }
+            out.writeLong(intervalCount);
+            out.writeLong(intervalSumMs);
+            out.writeLong(intervalMinMs);
+            out.writeLong(intervalMaxMs);
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Not a switch analytics file");
+            }
+            totalSwitches = in.readLong();
+            for (int i = 0; i < HOURS; i++) {
+                hourKeys[i] = in.readLong();
+                hourCounts[i] = in.readInt();
+            }
+            int size = in.readUnsignedByte();
+            if (size > TOP_K) {
+                throw new IOException("Too many top apps: " + size);
+            }
+            for (int i = 0; i < size; i++) {
+                topPackages[i] = in.readUTF();
+                topCounts[i] = in.readLong();
+                topErrors[i] = in.readLong();
+                topSlots.put(topPackages[i], i);
+            }
+            topSize = size;
+            if (in.readUnsignedByte() != intervalCounts.length) {
+                throw new IOException("Histogram layout changed");
+            }
+            for (int i = 0; i < intervalCounts.length; i++) {
+                intervalCounts[i] = in.readLong();
+            }
+            intervalCount = in.readLong();
+            intervalSumMs = in.readLong();
+            intervalMinMs = in.readLong();
+            intervalMaxMs = in.readLong();
+        }
+    }
+
+    /**
+     * Space-Saving update: count a tracked app, fill a free slot, or replace the minimum
+     */
+    private void countTop(String packageName) {
+        Integer slot = topSlots.get(packageName);
+        if (slot != null) {
+            topCounts[slot]++;
+            return;
+        }
+        if (topSize < TOP_K) {
+            topPackages[topSize] = packageName;
+            topCounts[topSize] = 1;
+            topErrors[topSize] = 0;
+            topSlots.put(packageName, topSize);
+            topSize++;
+            return;
+        }
+        int min = 0;
+        for (int i = 1; i < TOP_K; i++) {
+            if (topCounts[i] < topCounts[min]) {
+                min = i;
+            }
+        }
+        topSlots.remove(topPackages[min]);
+        topPackages[min] = packageName;
+        topErrors[min] = topCounts[min];
+        topCounts[min]++;
+        topSlots.put(packageName, min);
+    }
+
+    private void recordInterval(long interval) {
+        int bucket = 0;
+        while (bucket < INTERVAL_BOUNDS_MS.length && interval > INTERVAL_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        intervalCounts[bucket]++;
+        intervalCount++;
+        intervalSumMs += interval;
+        intervalMinMs = Math.min(intervalMinMs, interval);
+        intervalMaxMs = Math.max(intervalMaxMs, interval);
+    }
+}
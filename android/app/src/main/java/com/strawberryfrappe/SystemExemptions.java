@@ -0,0 +1,176 @@
+package com.strawberryfrappe;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Build;
+import android.telecom.TelecomManager;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Packages that must never be blocked, whatever the blocking mode
+ * Covers every home app (so GLOBAL_ACTION_HOME can never loop), the default
+ * dialer, enabled input methods, System UI, the framework and this app.
+ * Resolved once and refreshed only when IME, dialer or package state changes.
+ * Lookups are binder calls, so they run on the SideEffectQueue thread.
+ */
+public class SystemExemptions {
+    private static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+    private static final String FRAMEWORK_PACKAGE = "android";
+
+    private final Context context;
+    private final Runnable onChanged;
+    private volatile Set<String> packages = Collections.emptySet();
+    private volatile Set<String> inputMethods = Collections.emptySet();
+    private boolean tracking = false;
+
+    private final BroadcastReceiver changeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            SideEffectQueue.get().post(SystemExemptions.this::refresh);
+        }
+    };
+
+    public SystemExemptions(Context context, Runnable onChanged) {
+        this.context = context;
+        this.onChanged = onChanged;
+        // Fixed entries are known without any lookup and cover the time until the first refresh
+        Set<String> fixed = new HashSet<>();
+        fixed.add(context.getPackageName());
+        fixed.add(SYSTEM_UI_PACKAGE);
+        fixed.add(FRAMEWORK_PACKAGE);
+        packages = Collections.unmodifiableSet(fixed);
+    }
+
+    /**
+     * Fixed exempt set that is never tracked or refreshed, for JVM tests
+     */
+    SystemExemptions(Set<String> packages) {
+        this.context = null;
+        this.onChanged = null;
+        this.packages = Collections.unmodifiableSet(new HashSet<>(packages));
+    }
+
+    /**
+     * Resolve the exempt set now and refresh it on IME, dialer and package changes
+     */
+    public void startTracking() {
+        if (tracking) {
+            return;
+        }
+        tracking = true;
+
+        IntentFilter systemFilter = new IntentFilter();
+        systemFilter.addAction(Intent.ACTION_INPUT_METHOD_CHANGED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            systemFilter.addAction(TelecomManager.ACTION_DEFAULT_DIALER_CHANGED);
+        }
+        ContextCompat.registerReceiver(context, changeReceiver, systemFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        // A newly installed or changed package may be a launcher or keyboard
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        ContextCompat.registerReceiver(context, changeReceiver, packageFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        SideEffectQueue.get().post(this::refresh);
+    }
+
+    public void stopTracking() {
+        if (!tracking) {
+            return;
+        }
+        tracking = false;
+        try {
+            context.unregisterReceiver(changeReceiver);
+        } catch (IllegalArgumentException e) {
+            // Receiver was never registered
+        }
+    }
+
+    /**
+     * Re-resolve the exempt packages and notify the owner
+     * Blocking; call from a background thread
+     */
+    public void refresh() {
+        Set<String> resolved = new HashSet<>();
+        resolved.add(context.getPackageName());
+        resolved.add(SYSTEM_UI_PACKAGE);
+        resolved.add(FRAMEWORK_PACKAGE);
+
+        PackageManager pm = context.getPackageManager();
+
+        // Every home-capable app, not just the default, so no launcher can be blocked
+        try {
+            Intent homeIntent = new Intent(Intent.ACTION_MAIN);
+            homeIntent.addCategory(Intent.CATEGORY_HOME);
+            List<ResolveInfo> homeApps = pm.queryIntentActivities(homeIntent, 0);
+            for (ResolveInfo info : homeApps) {
+                if (info.activityInfo != null) {
+                    resolved.add(info.activityInfo.packageName);
+                }
+            }
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Home app lookup failed: " + e.getMessage());
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                TelecomManager telecom = (TelecomManager) context.getSystemService(Context.TELECOM_SERVICE);
+                String dialer = telecom != null ? telecom.getDefaultDialerPackage() : null;
+                if (dialer != null) {
+                    resolved.add(dialer);
+                }
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Default dialer lookup failed: " + e.getMessage());
+            }
+        }
+
+        Set<String> imes = new HashSet<>();
+        try {
+            InputMethodManager imm = (InputMethodManager) context.getSystemService(Context.INPUT_METHOD_SERVICE);
+            if (imm != null) {
+                for (InputMethodInfo ime : imm.getEnabledInputMethodList()) {
+                    imes.add(ime.getPackageName());
+                }
+            }
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Input method lookup failed: " + e.getMessage());
+        }
+        resolved.addAll(imes);
+
+        inputMethods = Collections.unmodifiableSet(imes);
+        packages = Collections.unmodifiableSet(resolved);
+        android.util.Log.d("AppBlocking", "System exemptions resolved: " + resolved);
+        if (onChanged != null) {
+            onChanged.run();
+        }
+    }
+
+    /**
+     * Current exempt packages (immutable snapshot)
+     */
+    public Set<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Enabled input methods; their windows overlay the app in use rather than replace it
+     */
+    public Set<String> getInputMethodPackages() {
+        return inputMethods;
+    }
+}
@@ -0,0 +1,48 @@
+package com.strawberryfrappe;
+
+import java.util.Arrays;
+
+/**
+ * Time from tapping a native control (Quick Settings tile) until blocking is live
+ * Blocking is live once the session is in the store and the foreground service has
+ * picked a detection backend. The last SAMPLES values are kept for the median.
+ */
+public class TapLatencyStats {
+    private static final int SAMPLES = 64;
+
+    private static final long[] samples = new long[SAMPLES];
+    private static int count = 0;
+    private static long maxMs = 0;
+
+    public static synchronized void record(long latencyMs) {
+        samples[count % SAMPLES] = latencyMs;
+        count++;
+        maxMs = Math.max(maxMs, latencyMs);
+    }
+
+    public static synchronized int getCount() {
+        return count;
+    }
+
+    public static synchronized long getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * Median of the retained samples, or 0 if none were recorded
+     */
+    public static synchronized long getMedianMs() {
+        int size = Math.min(count, SAMPLES);
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return size % 2 == 1 ? sorted[size / 2] : (sorted[size / 2 - 1] + sorted[size / 2]) / 2;
+    }
+
+    public static synchronized void reset() {
+        count = 0;
+        maxMs = 0;
+    }
+}
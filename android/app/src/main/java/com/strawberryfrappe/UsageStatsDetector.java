@@ -0,0 +1,286 @@
+package com.strawberryfrappe;
+
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+import android.provider.Settings;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fallback foreground detection for when the accessibility service is not running
+ * Polls UsageStatsManager.queryEvents incrementally from a saved cursor on its own
+ * thread and feeds foreground switches into the same decision rules as the
+ * accessibility service. Polling is fast right after a switch, backs off while the
+ * foreground app stays the same, and stops entirely while the screen is off.
+ * Blocked apps are sent home with a launcher intent; the launch is confirmed from
+ * the next foreground event and retried, since Android may drop it silently.
+ */
+public class UsageStatsDetector {
+    private static final String PREFS_NAME = "app_blocking_prefs";
+    private static final String KEY_CURSOR = "usage_stats_cursor";
+
+    private static final long MIN_INTERVAL_MS = 500;
+    private static final long MAX_INTERVAL_MS = 2000;
+    // Never replay more than this much history after a restart
+    private static final long MAX_LOOKBACK_MS = 60 * 1000;
+    // A launcher that came forward shows up in usage events well within this
+    private static final long HOME_CONFIRM_MS = 1500;
+    private static final int MAX_HOME_ATTEMPTS = 3;
+
+    // HOME launches that never brought the launcher forward, across runs
+    private static final AtomicInteger homeLaunchFailures = new AtomicInteger();
+
+    private final Context context;
+    private final UsageStatsManager usageStats;
+    private final PowerManager powerManager;
+    private final SharedPreferences prefs;
+    private final BlockingSessionStore sessionStore;
+
+    // Replaced on every start so a late teardown only touches its own thread, handler and cache
+    private volatile Run run;
+
+    public UsageStatsDetector(Context context) {
+        this.context = context.getApplicationContext();
+        this.usageStats = (UsageStatsManager) this.context.getSystemService(Context.USAGE_STATS_SERVICE);
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.sessionStore = BlockingSessionStore.get(this.context);
+    }
+
+    /**
+     * True if the user granted usage access to this app
+     */
+    public static boolean hasUsageAccess(Context context) {
+        android.app.AppOpsManager appOps = (android.app.AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        if (appOps == null) {
+            return false;
+        }
+        @SuppressWarnings("deprecation")
+        int mode = appOps.checkOpNoThrow(android.app.AppOpsManager.OPSTR_GET_USAGE_STATS,
+            Process.myUid(), context.getPackageName());
+        return mode == android.app.AppOpsManager.MODE_ALLOWED;
+    }
+
+    /**
+     * True if blocked apps can be left from the background
+     * Android 10+ drops background activity starts (the HOME intent) without "display over other apps".
+     */
+    public static boolean canLeaveBlockedApps(Context context) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || Settings.canDrawOverlays(context);
+    }
+
+    /**
+     * Number of blocked apps the HOME intent failed to leave
+     */
+    public static int getHomeLaunchFailures() {
+        return homeLaunchFailures.get();
+    }
+
+    public void start() {
+        if (run != null) {
+            return;
+        }
+        if (!canLeaveBlockedApps(context)) {
+            // Reported to JS with the backend; see AppBlockingModule.onBusEvent
+            android.util.Log.w("AppBlocking", "Display over other apps not granted - usage stats blocking may not leave blocked apps");
+        }
+        BlockingHistory.subscribe(context);
+        run = new Run();
+        run.start();
+        android.util.Log.i("AppBlocking", "Usage stats detection started");
+    }
+
+    public void stop() {
+        Run stopping = run;
+        if (stopping == null) {
+            return;
+        }
+        run = null;
+        stopping.stop();
+        android.util.Log.i("AppBlocking", "Usage stats detection stopped");
+    }
+
+    public boolean isRunning() {
+        return run != null;
+    }
+
+    /**
+     * State of one start/stop cycle; everything but start and stop runs on its own thread
+     */
+    private final class Run {
+        private final HandlerThread thread = new HandlerThread("AppBlockingUsageStats", Process.THREAD_PRIORITY_BACKGROUND);
+        private Handler handler;
+        private BlockingRuleCache ruleCache;
+        private final UsageEvents.Event event = new UsageEvents.Event();
+        private long cursor;
+        private long interval = MIN_INTERVAL_MS;
+        private String foregroundPackage;
+        private boolean polling = false;
+
+        // Blocked app sent home, waiting for the launcher (or anything else) to come forward
+        private String pendingHomePackage;
+        private long pendingHomeTime;
+        private int homeAttempts;
+
+        private final Runnable pollRunnable = this::poll;
+
+        private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                boolean screenOn = !Intent.ACTION_SCREEN_OFF.equals(intent.getAction());
+                handler.post(() -> setPolling(screenOn));
+            }
+        };
+
+        void start() {
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            handler.post(() -> {
+                ruleCache = new BlockingRuleCache(context);
+                ruleCache.startTracking();
+                long now = System.currentTimeMillis();
+                cursor = Math.max(prefs.getLong(KEY_CURSOR, 0), now - MAX_LOOKBACK_MS);
+                setPolling(powerManager == null || powerManager.isInteractive());
+            });
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_SCREEN_ON);
+            filter.addAction(Intent.ACTION_SCREEN_OFF);
+            ContextCompat.registerReceiver(context, screenReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        }
+
+        void stop() {
+            try {
+                context.unregisterReceiver(screenReceiver);
+            } catch (IllegalArgumentException e) {
+                // Receiver was never registered
+            }
+            handler.post(() -> {
+                setPolling(false);
+                if (ruleCache != null) {
+                    ruleCache.stopTracking();
+                }
+                prefs.edit().putLong(KEY_CURSOR, cursor).apply();
+                thread.quitSafely();
+            });
+        }
+
+        private void setPolling(boolean enabled) {
+            handler.removeCallbacks(pollRunnable);
+            polling = enabled;
+            if (enabled) {
+                interval = MIN_INTERVAL_MS;
+                handler.post(pollRunnable);
+            } else {
+                // The user leaves the app themselves once the screen is back on
+                pendingHomePackage = null;
+            }
+        }
+
+        private void poll() {
+            if (!polling || usageStats == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            String latest = null;
+            long latestTime = 0;
+            try {
+                UsageEvents events = usageStats.queryEvents(cursor, now);
+                while (events.getNextEvent(event)) {
+                    // MOVE_TO_FOREGROUND and ACTIVITY_RESUMED share the value 1
+                    if (event.getEventType() == UsageEvents.Event.MOVE_TO_FOREGROUND) {
+                        latest = event.getPackageName();
+                        latestTime = event.getTimeStamp();
+                    }
+                }
+                cursor = now;
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Usage stats query failed: " + e.getMessage());
+            }
+
+            if (latest != null) {
+                // Any foreground switch settles the pending HOME launch
+                pendingHomePackage = null;
+            }
+            if (latest != null && !latest.equals(foregroundPackage)) {
+                foregroundPackage = latest;
+                interval = MIN_INTERVAL_MS;
+                onForegroundChanged(latest, latestTime);
+            } else if (pendingHomePackage != null) {
+                interval = MIN_INTERVAL_MS;
+                checkHomeLaunch(now);
+            } else {
+                interval = Math.min(MAX_INTERVAL_MS, interval * 2);
+            }
+            handler.postDelayed(pollRunnable, interval);
+        }
+
+        private void onForegroundChanged(String packageName, long eventTime) {
+            long now = System.currentTimeMillis();
+            BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(now);
+            int decision = ruleCache.decide(packageName, snapshot, now);
+            if (!BlockingDecisionEngine.isBlock(decision)) {
+                return;
+            }
+            homeAttempts = 0;
+            launchHome(packageName, now);
+            BlockingEventBus.get().publishBlocked(packageName, System.currentTimeMillis());
+            android.util.Log.d("AppBlocking", "Blocked " + packageName + " via usage stats ("
+                + BlockingDecisionEngine.describe(decision) + ", detected after " + (now - eventTime) + "ms)");
+        }
+
+        /**
+         * No foreground switch since the HOME launch: retry while the app is still blocked, then give up
+         */
+        private void checkHomeLaunch(long now) {
+            if (now - pendingHomeTime < HOME_CONFIRM_MS) {
+                return;
+            }
+            String packageName = pendingHomePackage;
+            pendingHomePackage = null;
+            BlockingSessionStore.Snapshot snapshot = sessionStore.snapshot(now);
+            if (!BlockingDecisionEngine.isBlock(ruleCache.decide(packageName, snapshot, now))) {
+                return;
+            }
+            if (homeAttempts < MAX_HOME_ATTEMPTS) {
+                launchHome(packageName, now);
+                return;
+            }
+            // Usually "display over other apps" is missing; JS learns through the backend event
+            homeLaunchFailures.incrementAndGet();
+            android.util.Log.w("AppBlocking", "Could not leave " + packageName + " after " + homeAttempts
+                + " HOME launches (display over other apps " + (canLeaveBlockedApps(context) ? "granted" : "not granted") + ")");
+            BlockingEventBus.get().publishBackendChanged(BlockingForegroundService.BACKEND_USAGE_STATS, System.currentTimeMillis());
+            // Block it again on its next foreground event
+            foregroundPackage = null;
+        }
+
+        private void launchHome(String packageName, long now) {
+            homeAttempts++;
+            Intent home = new Intent(Intent.ACTION_MAIN);
+            home.addCategory(Intent.CATEGORY_HOME);
+            home.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            try {
+                context.startActivity(home);
+            } catch (Exception e) {
+                android.util.Log.w("AppBlocking", "Failed to leave blocked app: " + e.getMessage());
+            }
+            // The launcher is exempt, so the next poll sees it and the same app can be blocked again.
+            // A start dropped by the system throws nothing, so the switch is confirmed from usage events.
+            foregroundPackage = null;
+            pendingHomePackage = packageName;
+            pendingHomeTime = now;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.strawberryfrappe;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last known set of visible application windows, kept up to date incrementally from getWindows()
+ * Only windows with an id not seen in the previous snapshot are resolved to a package
+ * (getRoot() is a binder call); known windows just refresh their bounds and PiP state.
+ * A snapshot with the same window ids as the last one is not re-scanned at all.
+ * Used on the accessibility thread only.
+ */
+public class VisibleWindows {
+    public static class AppWindow {
+        public final int id;
+        public final String packageName;
+        public final Rect bounds = new Rect();
+        public boolean pictureInPicture;
+
+        AppWindow(int id, String packageName) {
+            this.id = id;
+            this.packageName = packageName;
+        }
+    }
+
+    /**
+     * What changed between two snapshots
+     */
+    public static class Diff {
+        public final List<AppWindow> added = new ArrayList<>();
+        public final List<Integer> removed = new ArrayList<>();
+        // Known windows that moved, resized or entered/left picture-in-picture
+        public final List<AppWindow> moved = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && moved.isEmpty();
+        }
+    }
+
+    private Map<Integer, AppWindow> windows = new HashMap<>();
+    private int[] lastIds = new int[0];
+    private final Rect scratch = new Rect();
+
+    /**
+     * Apply a getWindows() result and return what changed since the previous one
+     * Nothing of current is kept; the caller recycles the windows afterwards.
+     */
+    public Diff update(List<AccessibilityWindowInfo> current) {
+        Diff diff = new Diff();
+        int[] ids = new int[current.size()];
+        int count = 0;
+        for (AccessibilityWindowInfo window : current) {
+            if (window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION) {
+                ids[count++] = window.getId();
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        boolean sameIds = Arrays.equals(ids, lastIds);
+
+        Map<Integer, AppWindow> next = sameIds ? windows : new HashMap<>();
+        for (AccessibilityWindowInfo window : current) {
+            if (window.getType() != AccessibilityWindowInfo.TYPE_APPLICATION) {
+                continue;
+            }
+            AppWindow known = windows.get(window.getId());
+            if (known == null) {
+                if (sameIds) {
+                    continue; // Package could not be resolved earlier; retried once the set changes
+                }
+                String packageName = packageOf(window);
+                if (packageName == null) {
+                    continue;
+                }
+                known = new AppWindow(window.getId(), packageName);
+                refresh(known, window);
+                diff.added.add(known);
+            } else if (refresh(known, window)) {
+                diff.moved.add(known);
+            }
+            next.put(known.id, known);
+        }
+        if (!sameIds) {
+            for (Integer id : windows.keySet()) {
+                if (!next.containsKey(id)) {
+                    diff.removed.add(id);
+                }
+            }
+            windows = next;
+            lastIds = ids;
+        }
+        return diff;
+    }
+
+    public AppWindow get(int windowId) {
+        return windows.get(windowId);
+    }
+
+    public Collection<AppWindow> getAll() {
+        return Collections.unmodifiableCollection(windows.values());
+    }
+
+    /**
+     * Visible window of packageName, or null
+     */
+    public AppWindow find(String packageName) {
+        for (AppWindow window : windows.values()) {
+            if (window.packageName.equals(packageName)) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True if window fills the screen on its own: the only app window outside picture-in-picture
+     * Such a window is blocked by closing the app; others are covered individually.
+     */
+    public boolean isSoleWindow(AppWindow window) {
+        if (window.pictureInPicture) {
+            return false;
+        }
+        for (AppWindow other : windows.values()) {
+            if (other != window && !other.pictureInPicture) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        windows = new HashMap<>();
+        lastIds = new int[0];
+    }
+
+    /**
+     * Copy bounds and PiP state from the window; returns true if either changed
+     */
+    private boolean refresh(AppWindow known, AccessibilityWindowInfo window) {
+        window.getBoundsInScreen(scratch);
+        boolean pictureInPicture = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+            && window.isInPictureInPictureMode();
+        if (scratch.equals(known.bounds) && pictureInPicture == known.pictureInPicture) {
+            return false;
+        }
+        known.bounds.set(scratch);
+        known.pictureInPicture = pictureInPicture;
+        return true;
+    }
+
+    private static String packageOf(AccessibilityWindowInfo window) {
+        AccessibilityNodeInfo root = window.getRoot();
+        if (root == null) {
+            return null;
+        }
+        try {
+            CharSequence packageName = root.getPackageName();
+            return packageName != null ? packageName.toString() : null;
+        } finally {
+            root.recycle();
+        }
+    }
+}
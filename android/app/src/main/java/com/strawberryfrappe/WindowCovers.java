@@ -0,0 +1,117 @@
+package com.strawberryfrappe;
+
+import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opaque covers over single app windows (split-screen, freeform, picture-in-picture)
+ * Where BlockOverlay takes the whole screen, a cover is sized to the blocked window's
+ * bounds so the other windows stay usable. Covers are TYPE_ACCESSIBILITY_OVERLAY windows
+ * and swallow touches; they follow their window on moves and go away with it.
+ * Used on the accessibility thread only.
+ */
+public class WindowCovers {
+    private final AccessibilityService service;
+    private final WindowManager windowManager;
+    // App window id -> cover
+    private final Map<Integer, TextView> covers = new HashMap<>();
+    private final Map<Integer, String> coveredPackages = new HashMap<>();
+
+    public WindowCovers(AccessibilityService service) {
+        this.service = service;
+        this.windowManager = (WindowManager) service.getSystemService(Context.WINDOW_SERVICE);
+    }
+
+    /**
+     * Cover the window; returns false if the cover could not be attached
+     */
+    public boolean cover(int windowId, String packageName, Rect bounds) {
+        if (covers.containsKey(windowId)) {
+            move(windowId, bounds);
+            return true;
+        }
+        TextView view = new TextView(service);
+        view.setText("🧘 Blocked during your focus session");
+        view.setTextColor(Color.LTGRAY);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        view.setGravity(Gravity.CENTER);
+        view.setBackgroundColor(Color.rgb(18, 18, 24));
+        try {
+            windowManager.addView(view, layoutParams(bounds));
+        } catch (Exception e) {
+            android.util.Log.w("AppBlocking", "Window cover unavailable: " + e.getMessage());
+            return false;
+        }
+        covers.put(windowId, view);
+        coveredPackages.put(windowId, packageName);
+        return true;
+    }
+
+    public void move(int windowId, Rect bounds) {
+        TextView view = covers.get(windowId);
+        if (view != null) {
+            windowManager.updateViewLayout(view, layoutParams(bounds));
+        }
+    }
+
+    public void remove(int windowId) {
+        TextView view = covers.remove(windowId);
+        coveredPackages.remove(windowId);
+        if (view != null) {
+            try {
+                windowManager.removeView(view);
+            } catch (Exception e) {
+                // Window already gone with the service
+            }
+        }
+    }
+
+    public boolean isCovered(int windowId) {
+        return covers.containsKey(windowId);
+    }
+
+    public boolean isEmpty() {
+        return covers.isEmpty();
+    }
+
+    public List<Integer> getCoveredWindows() {
+        return new ArrayList<>(covers.keySet());
+    }
+
+    public String getCoveredPackage(int windowId) {
+        return coveredPackages.get(windowId);
+    }
+
+    public void clear() {
+        for (Integer windowId : getCoveredWindows()) {
+            remove(windowId);
+        }
+    }
+
+    private static WindowManager.LayoutParams layoutParams(Rect bounds) {
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+            bounds.width(),
+            bounds.height(),
+            WindowManager.LayoutParams.TYPE_ACCESSIBILITY_OVERLAY,
+            WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
+            PixelFormat.OPAQUE);
+        params.gravity = Gravity.TOP | Gravity.START;
+        params.x = bounds.left;
+        params.y = bounds.top;
+        return params;
+    }
+}
@@ -0,0 +1,98 @@
+package com.strawberryfrappe;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingDecisionEngineTest {
+    private static final int SOCIAL = 1 << 2;
+    private static final long END = 10_000;
+
+    // "com.social.*" packages are in the SOCIAL category
+    private final BlockingDecisionEngine engine = new BlockingDecisionEngine(
+        (packageName, mask) -> (mask & SOCIAL) != 0 && packageName.startsWith("com.social."));
+
+    private static Set<String> setOf(String... packages) {
+        return new HashSet<>(Arrays.asList(packages));
+    }
+
+    private static BlockingDecisionEngine.Rules blocklist(Set<String> blocked, int categoryMask) {
+        Set<String> exempt = setOf("com.launcher", "com.android.systemui");
+        return new BlockingDecisionEngine.Rules(1, blocked, categoryMask, false, exempt, exempt, END);
+    }
+
+    private static BlockingDecisionEngine.Rules allowlist(Set<String> allowed) {
+        Set<String> exempt = setOf("com.launcher");
+        Set<String> permitted = new HashSet<>(exempt);
+        permitted.addAll(allowed);
+        return new BlockingDecisionEngine.Rules(1, Collections.<String>emptySet(), 0, true, permitted, exempt, END);
+    }
+
+    @Test
+    public void filterPassesOnlyRealForegroundChanges() {
+        assertEquals(BlockingDecisionEngine.IGNORE_EVENT_TYPE, BlockingDecisionEngine.filter(0x800, "com.app", null));
+        assertEquals(BlockingDecisionEngine.IGNORE_EMPTY_PACKAGE,
+            BlockingDecisionEngine.filter(BlockingDecisionEngine.TYPE_WINDOW_STATE_CHANGED, null, null));
+        assertEquals(BlockingDecisionEngine.IGNORE_EMPTY_PACKAGE,
+            BlockingDecisionEngine.filter(BlockingDecisionEngine.TYPE_WINDOW_STATE_CHANGED, "", null));
+        assertEquals(BlockingDecisionEngine.IGNORE_TRANSIENT,
+            BlockingDecisionEngine.filter(BlockingDecisionEngine.TYPE_WINDOW_STATE_CHANGED, "com.app", "android.widget.Toast$TN"));
+        assertEquals(BlockingDecisionEngine.PASS,
+            BlockingDecisionEngine.filter(BlockingDecisionEngine.TYPE_WINDOW_STATE_CHANGED, "com.app", "com.app.MainActivity"));
+    }
+
+    @Test
+    public void nothingIsBlockedWithoutSession() {
+        assertEquals(BlockingDecisionEngine.ALLOW_NO_SESSION, engine.decide("com.game", null, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_NO_SESSION,
+            engine.decide("com.game", BlockingDecisionEngine.Rules.none(), 0));
+    }
+
+    @Test
+    public void rulesStopAtTheLatestEndTime() {
+        BlockingDecisionEngine.Rules rules = blocklist(setOf("com.game"), 0);
+        assertEquals(BlockingDecisionEngine.BLOCK_LISTED, engine.decide("com.game", rules, END - 1));
+        assertEquals(BlockingDecisionEngine.ALLOW_NO_SESSION, engine.decide("com.game", rules, END));
+    }
+
+    @Test
+    public void blocklistBlocksListedAndCategoryPackages() {
+        BlockingDecisionEngine.Rules rules = blocklist(setOf("com.game"), SOCIAL);
+        assertEquals(BlockingDecisionEngine.BLOCK_LISTED, engine.decide("com.game", rules, 0));
+        assertEquals(BlockingDecisionEngine.BLOCK_CATEGORY, engine.decide("com.social.chat", rules, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_NOT_BLOCKED, engine.decide("com.notes", rules, 0));
+    }
+
+    @Test
+    public void exemptPackagesAreNeverBlocked() {
+        BlockingDecisionEngine.Rules rules = blocklist(setOf("com.launcher"), SOCIAL);
+        assertEquals(BlockingDecisionEngine.ALLOW_EXEMPT, engine.decide("com.launcher", rules, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_EXEMPT, engine.decide("com.launcher", allowlist(setOf("com.notes")), 0));
+    }
+
+    @Test
+    public void allowlistBlocksEverythingNotPermitted() {
+        BlockingDecisionEngine.Rules rules = allowlist(setOf("com.notes"));
+        assertEquals(BlockingDecisionEngine.ALLOW_PERMITTED, engine.decide("com.notes", rules, 0));
+        assertEquals(BlockingDecisionEngine.BLOCK_NOT_ALLOWED, engine.decide("com.game", rules, 0));
+    }
+
+    @Test
+    public void onlyBlockCodesAreBlocks() {
+        assertTrue(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.BLOCK_LISTED));
+        assertTrue(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.BLOCK_CATEGORY));
+        assertTrue(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.BLOCK_NOT_ALLOWED));
+        assertTrue(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.BLOCK_BUDGET));
+        assertFalse(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.ALLOW_NOT_BLOCKED));
+        assertFalse(BlockingDecisionEngine.isBlock(BlockingDecisionEngine.IGNORE_COVERED));
+        assertEquals("block:category", BlockingDecisionEngine.describe(BlockingDecisionEngine.BLOCK_CATEGORY));
+        assertEquals("unknown:99", BlockingDecisionEngine.describe(99));
+    }
+}
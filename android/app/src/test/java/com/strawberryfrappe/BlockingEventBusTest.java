@@ -0,0 +1,191 @@
+package com.strawberryfrappe;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingEventBusTest {
+    /**
+     * Runs delivery tasks only when the test asks, so ring states are exact
+     */
+    private static final class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean quit;
+
+        @Override
+        public void execute(Runnable task) {
+            if (quit) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private BlockingEventBus bus;
+    private ManualExecutor executor;
+    private List<Long> received;
+
+    @Before
+    public void setUp() {
+        bus = new BlockingEventBus();
+        executor = new ManualExecutor();
+        received = new ArrayList<>();
+    }
+
+    private BlockingEventBus.Subscription subscribe(int capacity, int policy) {
+        return bus.subscribe("test", BlockingEventBus.TYPE_BLOCKED, capacity, policy,
+            event -> received.add(event.wallTime), executor, () -> executor.quit = true);
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(4, subscribe(3, BlockingEventBus.DROP_NEWEST).getCapacity());
+        assertEquals(8, subscribe(8, BlockingEventBus.DROP_NEWEST).getCapacity());
+        assertEquals(4, subscribe(1, BlockingEventBus.DROP_NEWEST).getCapacity());
+        assertEquals(8, subscribe(5, BlockingEventBus.DROP_NEWEST).getCapacity());
+    }
+
+    @Test
+    public void deliversInOrderAcrossRingWraparound() {
+        BlockingEventBus.Subscription subscription = subscribe(4, BlockingEventBus.DROP_NEWEST);
+        long next = 0;
+        // 3 events per turn on a ring of 4 cells: positions keep wrapping at different offsets
+        for (int turn = 0; turn < 50; turn++) {
+            for (int i = 0; i < 3; i++) {
+                bus.publishBlocked("app", next++);
+            }
+            executor.runAll();
+        }
+        assertEquals(next, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i, (long) received.get(i));
+        }
+        assertEquals(next, subscription.getDeliveredCount());
+        assertEquals(0, subscription.getDroppedCount());
+        assertEquals(0, subscription.getLag());
+        assertEquals(3, subscription.getMaxLag());
+    }
+
+    @Test
+    public void dropNewestKeepsWhatIsQueued() {
+        BlockingEventBus.Subscription subscription = subscribe(4, BlockingEventBus.DROP_NEWEST);
+        for (long i = 0; i < 10; i++) {
+            bus.publishBlocked("app", i);
+        }
+        executor.runAll();
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), received);
+        assertEquals(4, subscription.getPublishedCount());
+        assertEquals(6, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldestKeepsTheLatestEvents() {
+        BlockingEventBus.Subscription subscription = subscribe(4, BlockingEventBus.DROP_OLDEST);
+        for (long i = 0; i < 10; i++) {
+            bus.publishBlocked("app", i);
+        }
+        executor.runAll();
+        assertEquals(Arrays.asList(6L, 7L, 8L, 9L), received);
+        assertEquals(10, subscription.getPublishedCount());
+        assertEquals(6, subscription.getDroppedCount());
+        assertEquals(4, subscription.getDeliveredCount());
+    }
+
+    @Test
+    public void onlySubscribedTypesAreQueued() {
+        BlockingEventBus.Subscription subscription = subscribe(4, BlockingEventBus.DROP_NEWEST);
+        bus.publishUnlock(1, 1);
+        bus.publishBackendChanged("usage_stats", 2);
+        bus.publishSessionsChanged(0, 3);
+        bus.publishBlocked("app", 4);
+        executor.runAll();
+        assertEquals(Arrays.asList(4L), received);
+        assertEquals(1, subscription.getPublishedCount());
+    }
+
+    @Test
+    public void failingSubscriberDoesNotStopDelivery() {
+        BlockingEventBus.Subscription subscription = bus.subscribe("test", BlockingEventBus.TYPE_BLOCKED, 8,
+            BlockingEventBus.DROP_NEWEST, event -> {
+                if (event.wallTime == 1) {
+                    throw new IllegalStateException("boom");
+                }
+                received.add(event.wallTime);
+            }, executor, () -> executor.quit = true);
+        for (long i = 0; i < 3; i++) {
+            bus.publishBlocked("app", i);
+        }
+        executor.runAll();
+        assertEquals(Arrays.asList(0L, 2L), received);
+        assertEquals(1, subscription.getFailedCount());
+        assertEquals(3, subscription.getDeliveredCount());
+    }
+
+    @Test
+    public void unsubscribeDeliversMoreThanOneBatch() {
+        BlockingEventBus.Subscription subscription = subscribe(256, BlockingEventBus.DROP_NEWEST);
+        for (long i = 0; i < 200; i++) {
+            bus.publishBlocked("app", i);
+        }
+        bus.unsubscribe(subscription);
+        executor.runAll();
+        assertEquals(200, received.size());
+        assertEquals(199, (long) received.get(199));
+        assertTrue(executor.quit);
+        assertTrue(bus.getSubscriptions().isEmpty());
+
+        // A publisher still holding the subscription after the looper quit
+        assertTrue(subscription.offer(BlockingEventBus.TYPE_BLOCKED, "app", 200, 0, 0, false, null));
+        assertEquals(200, received.size());
+        assertEquals(1, subscription.getDroppedCount());
+        assertEquals(0, subscription.getLag());
+    }
+
+    @Test
+    public void everyEventIsDeliveredOrDroppedUnderContention() throws Exception {
+        ExecutorService delivery = Executors.newSingleThreadExecutor();
+        AtomicLong seen = new AtomicLong();
+        BlockingEventBus.Subscription subscription = bus.subscribe("stress", BlockingEventBus.TYPE_BLOCKED, 64,
+            BlockingEventBus.DROP_OLDEST, event -> seen.incrementAndGet(), delivery, delivery::shutdown);
+        int perProducer = 100_000;
+        Thread[] producers = new Thread[2];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    bus.publishBlocked("app", i);
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        bus.unsubscribe(subscription);
+        assertTrue(delivery.awaitTermination(10, TimeUnit.SECONDS));
+
+        long total = producers.length * (long) perProducer;
+        assertEquals(seen.get(), subscription.getDeliveredCount());
+        assertEquals(total, subscription.getDeliveredCount() + subscription.getDroppedCount());
+        assertEquals(0, subscription.getLag());
+    }
+}
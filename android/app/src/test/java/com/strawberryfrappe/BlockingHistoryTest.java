@@ -0,0 +1,158 @@
+package com.strawberryfrappe;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingHistoryTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    // 2024-01-01 10:00 UTC
+    private static final long T0 = 1704103200000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private BlockingHistory history;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder();
+        history = new BlockingHistory(directory, UTC);
+    }
+
+    @Test
+    public void rawAttemptsRollIntoHoursAfterTheRawWindow() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.game", T0 + HOUR_MS);
+        history.record("com.social", T0 + 2 * HOUR_MS);
+        assertEquals(3, history.getRawCount());
+        assertEquals(0, history.getHourCount());
+
+        // More than the 48 hour window plus the hour of slack later
+        history.record("com.game", T0 + 52 * HOUR_MS);
+        assertEquals(1, history.getRawCount());
+        assertEquals(3, history.getHourCount());
+
+        Map<String, Long> perPackage = new HashMap<>();
+        assertEquals(4, history.count(T0, T0 + 53 * HOUR_MS, perPackage));
+        assertEquals(3L, (long) perPackage.get("com.game"));
+        assertEquals(1L, (long) perPackage.get("com.social"));
+    }
+
+    @Test
+    public void hoursRollIntoDaysAfterTheHourlyWindow() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.game", T0 + 30 * 60 * 1000L);
+        history.record("com.game", T0 + 36 * DAY_MS);
+        assertEquals(1, history.getDayCount());
+        assertEquals(0, history.getHourCount());
+        assertEquals(1, history.getRawCount());
+
+        long[] days = history.dailyCounts(T0, 37);
+        assertEquals(2, days[0]);
+        assertEquals(1, days[36]);
+        assertEquals(3, history.count(T0 - HOUR_MS * 10, T0 + 37 * DAY_MS, null));
+    }
+
+    @Test
+    public void journalSurvivesRestartAndIsFoldedIntoTheSnapshot() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.social", T0 + 60_000);
+        history.record("com.game", T0 + 120_000);
+        File journal = new File(directory, "blocking_history.journal");
+        assertTrue(journal.length() > 0);
+
+        BlockingHistory reopened = new BlockingHistory(directory, UTC);
+        assertEquals(3, reopened.count(T0, T0 + HOUR_MS, null));
+        assertEquals(2, reopened.getPackageCount());
+        assertFalse(journal.exists());
+
+        // Appends after the restart go to a fresh journal and survive the next one too
+        reopened.record("com.news", T0 + 180_000);
+        assertEquals(4, new BlockingHistory(directory, UTC).count(T0, T0 + HOUR_MS, null));
+    }
+
+    @Test
+    public void compactionCarriesTiersAcrossRestarts() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.game", T0 + 52 * HOUR_MS);
+        history.record("com.game", T0 + 37 * DAY_MS);
+
+        BlockingHistory reopened = new BlockingHistory(directory, UTC);
+        reopened.preload();
+        assertEquals(history.getDayCount(), reopened.getDayCount());
+        assertEquals(history.getHourCount(), reopened.getHourCount());
+        assertEquals(history.getRawCount(), reopened.getRawCount());
+        assertEquals(3, reopened.count(T0 - DAY_MS, T0 + 38 * DAY_MS, null));
+    }
+
+    @Test
+    public void tornJournalTailIsIgnored() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.game", T0 + 60_000);
+        // A crash in the middle of an append: attempt tag without its payload
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "blocking_history.journal"), true)) {
+            out.write(2);
+        }
+        assertEquals(2, new BlockingHistory(directory, UTC).count(T0, T0 + HOUR_MS, null));
+    }
+
+    @Test
+    public void clearRemovesEverything() throws Exception {
+        history.record("com.game", T0);
+        history.record("com.game", T0 + 52 * HOUR_MS);
+        history.clear();
+        assertEquals(0, history.getStoredBytes());
+        assertEquals(0, new BlockingHistory(directory, UTC).count(0, Long.MAX_VALUE, null));
+    }
+
+    /**
+     * A year of heavy use (170 attempts a day over 30 apps, 62,050 attempts) with a fixed seed
+     * Measured at 25,104 bytes; the bound catches encoding regressions.
+     */
+    @Test
+    public void yearOfHeavyUseStaysSmall() throws Exception {
+        String[] apps = new String[30];
+        for (int i = 0; i < apps.length; i++) {
+            apps[i] = "com.example.app" + i;
+        }
+        Random random = new Random(42);
+        long start = 1704067200000L; // 2024-01-01 00:00 UTC
+        BlockingHistory year = new BlockingHistory(directory, TimeZone.getTimeZone("Europe/Berlin"));
+        long[] times = new long[170];
+        for (int day = 0; day < 365; day++) {
+            long dayStart = start + day * DAY_MS;
+            for (int i = 0; i < times.length; i++) {
+                // Waking hours only
+                times[i] = dayStart + 8 * HOUR_MS + (long) (random.nextDouble() * 15 * HOUR_MS);
+            }
+            Arrays.sort(times);
+            for (long time : times) {
+                // A few apps take most of the attempts
+                year.record(apps[(int) Math.min(apps.length - 1, Math.abs(random.nextGaussian() * 8))], time);
+            }
+        }
+        long total = year.count(0, Long.MAX_VALUE, null);
+        assertEquals(62_050, total);
+        assertTrue("history takes " + year.getStoredBytes() + " bytes", year.getStoredBytes() < 28 * 1024);
+
+        BlockingHistory reopened = new BlockingHistory(directory, TimeZone.getTimeZone("Europe/Berlin"));
+        assertEquals(total, reopened.count(0, Long.MAX_VALUE, null));
+    }
+}
@@ -0,0 +1,77 @@
+package com.strawberryfrappe;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingRuleCacheTest {
+    private static final int SOCIAL = 1 << 2;
+
+    private BlockingRuleCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new BlockingRuleCache(
+            (packageName, mask) -> (mask & SOCIAL) != 0 && packageName.startsWith("com.social."),
+            new SystemExemptions(setOf("com.launcher")));
+    }
+
+    private static Set<String> setOf(String... packages) {
+        return new HashSet<>(Arrays.asList(packages));
+    }
+
+    private static BlockingSessionStore.Snapshot blocking(long version, Set<String> blocked, int categoryMask, long end) {
+        return new BlockingSessionStore.Snapshot(version, blocked, categoryMask, false,
+            Collections.<String>emptySet(), end, end, 1);
+    }
+
+    @Test
+    public void inactiveSnapshotBlocksNothing() {
+        assertEquals(BlockingDecisionEngine.ALLOW_NO_SESSION,
+            cache.decide("com.game", BlockingSessionStore.Snapshot.EMPTY, 0));
+        assertEquals(0, cache.getRules().latestEndTime);
+    }
+
+    @Test
+    public void activeSnapshotBlocksListedAndCategoryButNotExempt() {
+        BlockingSessionStore.Snapshot snapshot = blocking(1, setOf("com.game", "com.launcher"), SOCIAL, 1000);
+        assertEquals(BlockingDecisionEngine.BLOCK_LISTED, cache.decide("com.game", snapshot, 0));
+        assertEquals(BlockingDecisionEngine.BLOCK_CATEGORY, cache.decide("com.social.feed", snapshot, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_EXEMPT, cache.decide("com.launcher", snapshot, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_NO_SESSION, cache.decide("com.game", snapshot, 1000));
+    }
+
+    @Test
+    public void rulesAreRebuiltOnlyWhenTheSnapshotVersionChanges() {
+        BlockingSessionStore.Snapshot first = blocking(1, setOf("com.game"), 0, 1000);
+        cache.decide("com.game", first, 0);
+        BlockingDecisionEngine.Rules rules = cache.getRules();
+        cache.decide("com.notes", first, 1);
+        assertSame(rules, cache.getRules());
+
+        BlockingSessionStore.Snapshot second = blocking(2, setOf("com.notes"), 0, 2000);
+        assertEquals(BlockingDecisionEngine.BLOCK_LISTED, cache.decide("com.notes", second, 1));
+        assertEquals(BlockingDecisionEngine.ALLOW_NOT_BLOCKED, cache.decide("com.game", second, 1));
+        assertNotSame(rules, cache.getRules());
+        assertEquals(2, cache.getRules().version);
+    }
+
+    @Test
+    public void allowlistPermitsAllowedAndExemptPackages() {
+        BlockingSessionStore.Snapshot snapshot = new BlockingSessionStore.Snapshot(3, Collections.<String>emptySet(), 0,
+            true, setOf("com.notes"), 1000, 1000, 1);
+        assertEquals(BlockingDecisionEngine.ALLOW_PERMITTED, cache.decide("com.notes", snapshot, 0));
+        assertEquals(BlockingDecisionEngine.ALLOW_EXEMPT, cache.decide("com.launcher", snapshot, 0));
+        assertEquals(BlockingDecisionEngine.BLOCK_NOT_ALLOWED, cache.decide("com.game", snapshot, 0));
+        assertTrue(cache.getRules().permittedPackages.containsAll(setOf("com.notes", "com.launcher")));
+    }
+}
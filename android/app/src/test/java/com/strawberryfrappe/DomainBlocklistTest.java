@@ -0,0 +1,120 @@
+package com.strawberryfrappe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DomainBlocklistTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void subdomainsOfABlockedDomainMatch() {
+        DomainBlocklist blocklist = new DomainBlocklist(Arrays.asList("example.com", "news.site.org"));
+        assertEquals("example.com", blocklist.match("example.com"));
+        assertEquals("example.com", blocklist.match("www.example.com"));
+        assertEquals("example.com", blocklist.match("a.b.m.example.com"));
+        assertEquals("news.site.org", blocklist.match("eu.news.site.org"));
+    }
+
+    @Test
+    public void parentsAndLookalikesDoNotMatch() {
+        DomainBlocklist blocklist = new DomainBlocklist(Arrays.asList("example.com", "news.site.org"));
+        assertNull(blocklist.match("site.org"));
+        assertNull(blocklist.match("www.site.org"));
+        assertNull(blocklist.match("notexample.com"));
+        assertNull(blocklist.match("example.com.evil.net"));
+        assertNull(blocklist.match("com"));
+    }
+
+    @Test
+    public void mostSpecificEntryIsReportedFirst() {
+        DomainBlocklist blocklist = new DomainBlocklist(Arrays.asList("example.com", "m.example.com"));
+        assertEquals("m.example.com", blocklist.match("www.m.example.com"));
+    }
+
+    @Test
+    public void entriesAreNormalizedAndDeduplicated() {
+        DomainBlocklist blocklist = new DomainBlocklist(Arrays.asList(
+            "Example.COM", "*.example.com", ".example.com.", "bad domain", "", "bücher.de"));
+        assertEquals(2, blocklist.size());
+        assertEquals("example.com", blocklist.match("www.example.com"));
+        assertEquals("xn--bcher-kva.de", blocklist.match("shop.xn--bcher-kva.de"));
+    }
+
+    @Test
+    public void emptyBlocklistMatchesNothing() {
+        assertEquals(0, DomainBlocklist.EMPTY.size());
+        assertNull(DomainBlocklist.EMPTY.match("example.com"));
+    }
+
+    @Test
+    public void bloomFalsePositivesFallBackToTheExactSearch() throws Exception {
+        List<String> domains = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            domains.add("blocked" + i + ".com");
+        }
+        DomainBlocklist blocklist = new DomainBlocklist(domains);
+        Method mightContain = DomainBlocklist.class.getDeclaredMethod("mightContain", String.class, int.class);
+        mightContain.setAccessible(true);
+
+        // With a small filter some unlisted hosts pass the Bloom check; none may match
+        int falsePositives = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String host = "host" + i + ".net";
+            if ((Boolean) mightContain.invoke(blocklist, host, 0)) {
+                falsePositives++;
+            }
+            assertNull(host, blocklist.match(host));
+        }
+        assertTrue("no Bloom false positive was exercised", falsePositives > 0);
+        for (String domain : domains) {
+            assertEquals(domain, blocklist.match("www." + domain));
+        }
+    }
+
+    @Test
+    public void readsDomainListsAndHostsFiles() throws IOException {
+        File file = folder.newFile("hosts");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write("# blocklist\n");
+            out.write("0.0.0.0 ads.example.com\n");
+            out.write("127.0.0.1\ttracker.net # inline comment\n");
+            out.write("\n");
+            out.write("social.org\n");
+        }
+        DomainBlocklist blocklist = DomainBlocklist.read(file);
+        assertEquals(3, blocklist.size());
+        assertEquals("ads.example.com", blocklist.match("x.ads.example.com"));
+        assertEquals("tracker.net", blocklist.match("tracker.net"));
+        assertEquals("social.org", blocklist.match("m.social.org"));
+        assertNull(blocklist.match("example.com"));
+    }
+
+    @Test
+    public void hostOfExtractsTheHostFromUrlBarText() {
+        assertEquals("m.example.com", DomainBlocklist.hostOf("https://m.example.com/path?q=1"));
+        assertEquals("example.com", DomainBlocklist.hostOf("example.com"));
+        assertEquals("example.com", DomainBlocklist.hostOf("http://user:pw@Example.com:8080/"));
+        assertNull(DomainBlocklist.hostOf("cat videos"));
+        assertNull(DomainBlocklist.hostOf("localhost"));
+        assertNull(DomainBlocklist.hostOf(""));
+        assertNull(DomainBlocklist.hostOf(null));
+        assertNull(DomainBlocklist.normalize("  "));
+    }
+}
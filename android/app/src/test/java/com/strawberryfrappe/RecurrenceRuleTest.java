@@ -0,0 +1,115 @@
+package com.strawberryfrappe;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class RecurrenceRuleTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final int MONDAY = 1 << 1;
+    private static final int WEDNESDAY = 1 << 3;
+
+    // month is 1-based
+    private static long at(TimeZone timeZone, int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long day(int year, int month, int day) {
+        return RecurrenceRule.localDay(at(UTC, year, month, day, 12, 0), UTC);
+    }
+
+    private static RecurrenceRule daily(long firstStart, long untilDay, int count, Set<Long> exceptionDays, TimeZone timeZone) {
+        return new RecurrenceRule("series", false, RecurrenceRule.FREQ_DAILY, 1, 0, firstStart, HOUR_MS,
+            untilDay, count, exceptionDays, timeZone);
+    }
+
+    @Test
+    public void countEndsTheSeriesAtTheLastOccurrence() {
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = daily(first, Long.MAX_VALUE, 3, null, UTC);
+        long third = at(UTC, 2024, 1, 3, 9, 0);
+        assertEquals(third, rule.lastStart);
+        assertEquals(third, rule.nextStartAtOrAfter(third));
+        assertEquals(-1, rule.nextStartAtOrAfter(third + 1));
+    }
+
+    @Test
+    public void countOfOneIsOnlyTheFirstOccurrence() {
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = daily(first, Long.MAX_VALUE, 1, null, UTC);
+        assertEquals(first, rule.lastStart);
+        assertEquals(first, rule.nextStartAtOrAfter(first - HOUR_MS));
+        assertEquals(-1, rule.nextStartAtOrAfter(first + 1));
+    }
+
+    @Test
+    public void excludedDatesStillConsumeTheCount() {
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = daily(first, Long.MAX_VALUE, 3, Collections.singleton(day(2024, 1, 2)), UTC);
+        assertEquals(at(UTC, 2024, 1, 3, 9, 0), rule.lastStart);
+        assertEquals(at(UTC, 2024, 1, 3, 9, 0), rule.nextStartAtOrAfter(first + 1));
+    }
+
+    @Test
+    public void countFollowsWeeklyIntervalAndWeekdays() {
+        // Monday 2024-01-01, every other week on Monday and Wednesday
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = new RecurrenceRule("series", false, RecurrenceRule.FREQ_WEEKLY, 2, MONDAY | WEDNESDAY,
+            first, HOUR_MS, Long.MAX_VALUE, 4, null, UTC);
+        assertEquals(at(UTC, 2024, 1, 3, 9, 0), rule.nextStartAtOrAfter(first + 1));
+        assertEquals(at(UTC, 2024, 1, 15, 9, 0), rule.nextStartAtOrAfter(at(UTC, 2024, 1, 4, 0, 0)));
+        assertEquals(at(UTC, 2024, 1, 17, 9, 0), rule.lastStart);
+    }
+
+    @Test
+    public void countStartsAtTheFirstMatchingWeekday() {
+        // Starts on a Monday but only recurs on Wednesdays
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = new RecurrenceRule("series", false, RecurrenceRule.FREQ_WEEKLY, 1, WEDNESDAY,
+            first, HOUR_MS, Long.MAX_VALUE, 2, null, UTC);
+        assertEquals(at(UTC, 2024, 1, 3, 9, 0), rule.nextStartAtOrAfter(first));
+        assertEquals(at(UTC, 2024, 1, 10, 9, 0), rule.lastStart);
+    }
+
+    @Test
+    public void untilDayIsInclusive() {
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        RecurrenceRule rule = daily(first, day(2024, 1, 5), 0, null, UTC);
+        assertEquals(at(UTC, 2024, 1, 5, 9, 0), rule.nextStartAtOrAfter(at(UTC, 2024, 1, 5, 0, 0)));
+        assertEquals(-1, rule.nextStartAtOrAfter(at(UTC, 2024, 1, 5, 9, 1)));
+    }
+
+    @Test
+    public void earlierOfUntilAndCountWins() {
+        long first = at(UTC, 2024, 1, 1, 9, 0);
+        assertEquals(at(UTC, 2024, 1, 3, 9, 0), daily(first, day(2024, 1, 3), 10, null, UTC).lastStart);
+        assertEquals(at(UTC, 2024, 1, 2, 9, 0), daily(first, day(2024, 1, 9), 2, null, UTC).lastStart);
+    }
+
+    @Test
+    public void untilBeforeTheFirstStartHasNoOccurrences() {
+        long first = at(UTC, 2024, 1, 10, 9, 0);
+        RecurrenceRule rule = daily(first, day(2024, 1, 5), 0, null, UTC);
+        assertEquals(-1, rule.nextStartAtOrAfter(first));
+    }
+
+    @Test
+    public void countKeepsWallClockTimeAcrossDaylightSaving() {
+        // Berlin switches to summer time on 2024-03-31
+        long first = at(BERLIN, 2024, 3, 30, 9, 0);
+        RecurrenceRule rule = daily(first, Long.MAX_VALUE, 3, null, BERLIN);
+        assertEquals(at(BERLIN, 2024, 3, 31, 9, 0), rule.nextStartAtOrAfter(first + 1));
+        assertEquals(at(BERLIN, 2024, 4, 1, 9, 0), rule.lastStart);
+        assertEquals(23 * HOUR_MS, at(BERLIN, 2024, 3, 31, 9, 0) - first);
+    }
+}
@@ -28,6 +28,24 @@ import { useCalendarContext } from '../context/CalendarContext';
 import { CalendarEvent } from '../models/CalendarModels';
 import { useThemedStyles } from '../hooks/useThemedStyles';
 
+// Repeat options stored as a recurrence rule and expanded natively
+const RECURRENCES = {
+  Daily: { frequency: 'daily' },
+  Weekly: { frequency: 'weekly' },
+  Weekdays: { frequency: 'weekly', byWeekday: [1, 2, 3, 4, 5] },
+};
+
+/**
+ * Repeat option of a stored recurrence rule
+ */
+const repeatOf = (recurrence) => {
+  if (!recurrence) return null;
+  if (recurrence.frequency === 'daily') return 'Daily';
+  const weekdays = recurrence.byWeekday || [];
+  if (weekdays.length === 5 && [1, 2, 3, 4, 5].every(day => weekdays.includes(day))) return 'Weekdays';
+  return 'Weekly';
+};
+
 const CreateEvent = ({ 
   visible, 
   onClose, 
@@ -265,7 +283,12 @@ const CreateEvent = ({
   const [showRepeatList, setShowRepeatList] = useState(false);
 
   // Calendar context
-  const { createEvent, updateEvent, loading } = useCalendarContext();
+  const { createEvent, updateEvent, events, loading } = useCalendarContext();
+
+  // Series of a recurring occurrence being edited
+  const editedSeries = eventToEdit?.seriesId
+    ? events.find(event => event.id === eventToEdit.seriesId)
+    : null;
 
   // Loading state
   const [isSaving, setIsSaving] = useState(false);
@@ -279,6 +302,8 @@ const CreateEvent = ({
       setTitle(eventToEdit.title || '');
       setDescription(eventToEdit.description || '');
       setPriority(eventToEdit.priority || 'non-strict');
+      // Copies made by the old Monthly/Yearly path carry only a repeat label and stay single events
+      setSelectedRepeat(repeatOf(editedSeries?.recurrence || eventToEdit.recurrence) || "Doesn't repeat");
       
       // Parse date and time
       if (eventToEdit.date) {
@@ -438,27 +463,52 @@ const CreateEvent = ({
   const handleSave = async () => {
     if (!validateForm()) return;
 
+    const eventData = {
+      title: title.trim(),
+      description: description.trim(),
+      date: startDate.toISOString().split('T')[0], // YYYY-MM-DD format
+      time: startDate.toTimeString().slice(0, 5), // HH:mm format
+      priority,
+      // Additional metadata can be added here
+      repeat: selectedRepeat,
+      recurrence: RECURRENCES[selectedRepeat]
+    };
+
+    if (editedSeries) {
+      Alert.alert(
+        'Edit Repeating Event',
+        'Apply these changes to this event only, or to every event in the series?',
+        [
+          { text: 'Cancel', style: 'cancel' },
+          // The occurrence is detached from its series and no longer repeats
+          { text: 'This Event', onPress: () => saveEvent(eventToEdit.id, { ...eventData, repeat: "Doesn't repeat", recurrence: undefined }) },
+          // The series keeps its first date; exceptions survive a change of pattern
+          { text: 'All Events', onPress: () => saveEvent(editedSeries.id, {
+            ...eventData,
+            date: editedSeries.date,
+            recurrence: eventData.recurrence && { ...eventData.recurrence, exceptions: editedSeries.recurrence?.exceptions }
+          }) },
+        ]
+      );
+      return;
+    }
+
+    await saveEvent(eventToEdit ? eventToEdit.id : null, eventData);
+  };
+
+  /**
+   * Create the event, or update the one with eventId
+   */
+  const saveEvent = async (eventId, eventData) => {
     setIsSaving(true);
     try {
-      const eventData = {
-        title: title.trim(),
-        description: description.trim(),
-        date: startDate.toISOString().split('T')[0], // YYYY-MM-DD format
-        time: startDate.toTimeString().slice(0, 5), // HH:mm format
-        priority,
-        // Additional metadata can be added here
-        repeat: selectedRepeat
-      };
-
-      if (eventToEdit) {
-        await updateEvent(eventToEdit.id, eventData);
+      if (eventId) {
+        await updateEvent(eventId, eventData);
+      } else if (selectedRepeat === 'Monthly' || selectedRepeat === 'Yearly') {
+        // Not expressible as a stored recurrence rule; created as separate events
+        await createRecurringEvents(eventData, selectedRepeat);
       } else {
-        // Check if this is a recurring event
-        if (selectedRepeat && selectedRepeat !== "Doesn't repeat") {
-          await createRecurringEvents(eventData, selectedRepeat);
-        } else {
-          await createEvent(eventData);
-        }
+        await createEvent(eventData);
       }
 
       onClose();
@@ -718,7 +768,7 @@ const CreateEvent = ({
             </TouchableOpacity>
             {showRepeatList && (
               <View style={dynamicStyles.dropdownList}>
-                {["Doesn't repeat", 'Daily', 'Weekly', 'Monthly', 'Yearly'].map(repeat => (
+                {["Doesn't repeat", 'Daily', 'Weekdays', 'Weekly', 'Monthly', 'Yearly'].map(repeat => (
                   <TouchableOpacity 
                     key={repeat} 
                     style={dynamicStyles.dropdownItem} 
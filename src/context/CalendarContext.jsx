@@ -5,13 +5,37 @@
  * Handles event loading, caching, and state synchronization across components.
  */
 
-import React, { createContext, useContext, useState, useEffect, useCallback } from 'react';
+import React, { createContext, useContext, useState, useEffect, useCallback, useMemo } from 'react';
 import CalendarStorage from '../services/CalendarStorage';
 import { CalendarEvent, CalendarViewState } from '../models/CalendarModels';
 import EventBlockingService from '../services/EventBlockingService';
 
 const CalendarContext = createContext(null);
 
+const NO_EVENTS = [];
+
+const formatLocalDate = (date) =>
+  `${date.getFullYear()}-${String(date.getMonth() + 1).padStart(2, '0')}-${String(date.getDate()).padStart(2, '0')}`;
+
+/**
+ * Dates covered by the 6-week month grid around currentDate (Monday start, as in getMonthGrid)
+ * The selected date is included even if it falls outside the grid.
+ */
+const getVisibleRange = (currentDate, selectedDate) => {
+  const current = new Date(currentDate);
+  const first = new Date(current.getFullYear(), current.getMonth(), 1);
+  const offset = first.getDay() === 0 ? 6 : first.getDay() - 1;
+  const start = formatLocalDate(new Date(first.getFullYear(), first.getMonth(), 1 - offset));
+  const end = formatLocalDate(new Date(first.getFullYear(), first.getMonth(), 1 - offset + 41));
+  if (!selectedDate) {
+    return { start, end };
+  }
+  return {
+    start: selectedDate < start ? selectedDate : start,
+    end: selectedDate > end ? selectedDate : end
+  };
+};
+
 export const CalendarProvider = ({ children }) => {
   // Core state
   const [events, setEvents] = useState([]);
@@ -21,6 +45,10 @@ export const CalendarProvider = ({ children }) => {
   // View state
   const [viewState, setViewState] = useState(() => CalendarViewState.create());
   
+  // Events and recurring occurrences of the visible range, from the native range query
+  const [rangeEvents, setRangeEvents] = useState(NO_EVENTS);
+  const [rangeVersion, setRangeVersion] = useState(0);
+  
   // Cache state
   const [lastRefresh, setLastRefresh] = useState(null);
   const [isDirty, setIsDirty] = useState(false);
@@ -67,6 +95,43 @@ export const CalendarProvider = ({ children }) => {
     }
   }, [events]);
 
+  const visibleRange = useMemo(
+    () => getVisibleRange(viewState.currentDate, viewState.selectedDate),
+    [viewState.currentDate, viewState.selectedDate]
+  );
+
+  /**
+   * Reload the visible range after navigation, refreshes and edits (storage must be initialized)
+   */
+  useEffect(() => {
+    if (!lastRefresh) return;
+    let cancelled = false;
+    CalendarStorage.getEventsByDateRange(visibleRange.start, visibleRange.end).then(loaded => {
+      if (!cancelled) {
+        setRangeEvents(Array.isArray(loaded) ? loaded : NO_EVENTS);
+      }
+    });
+    return () => {
+      cancelled = true;
+    };
+  }, [visibleRange.start, visibleRange.end, lastRefresh, rangeVersion]);
+
+  /**
+   * Visible events by date, so each day cell is a lookup instead of a scan
+   */
+  const eventsByDate = useMemo(() => {
+    const index = new Map();
+    rangeEvents.forEach(event => {
+      const dayEvents = index.get(event.date);
+      if (dayEvents) {
+        dayEvents.push(event);
+      } else {
+        index.set(event.date, [event]);
+      }
+    });
+    return index;
+  }, [rangeEvents]);
+
   const initializeCalendar = async () => {
     try {
       setLoading(true);
@@ -117,6 +182,7 @@ export const CalendarProvider = ({ children }) => {
       
       // Update local state
       setEvents(prevEvents => [...prevEvents, newEvent]);
+      setRangeVersion(version => version + 1);
       setIsDirty(true);
       
       return newEvent;
@@ -127,12 +193,43 @@ export const CalendarProvider = ({ children }) => {
     }
   }, []);
 
+  /**
+   * Add an occurrence's date to its series' exceptions, so it is no longer expanded
+   */
+  const excludeOccurrence = useCallback(async (occurrence) => {
+    const series = events.find(event => event.id === occurrence.seriesId);
+    if (!series || !series.recurrence) {
+      throw new Error(`Recurring event ${occurrence.seriesId} not found`);
+    }
+    const exceptions = series.recurrence.exceptions || [];
+    const updatedSeries = await CalendarStorage.updateEvent(series.id, {
+      recurrence: { ...series.recurrence, exceptions: [...exceptions, occurrence.date] }
+    });
+    setEvents(prevEvents =>
+      prevEvents.map(event => event.id === series.id ? updatedSeries : event)
+    );
+    return updatedSeries;
+  }, [events]);
+
   /**
    * Update an existing event
+   * Updating a recurring occurrence detaches it: the series skips that date and
+   * a standalone event with the changes takes its place.
    */
   const updateEvent = useCallback(async (eventId, updateData) => {
     try {
       setError(null);
+      const occurrence = rangeEvents.find(event => event.id === eventId && event.seriesId);
+      if (occurrence) {
+        const { id, seriesId, createdAt, updatedAt, ...fields } = occurrence;
+        const detachedEvent = await CalendarStorage.saveEvent({ ...fields, ...updateData });
+        await excludeOccurrence(occurrence);
+        setEvents(prevEvents => [...prevEvents, detachedEvent]);
+        setRangeVersion(version => version + 1);
+        setIsDirty(true);
+        return detachedEvent;
+      }
+
       const updatedEvent = await CalendarStorage.updateEvent(eventId, updateData);
       
       // Update local state
@@ -141,6 +238,7 @@ export const CalendarProvider = ({ children }) => {
           event.id === eventId ? updatedEvent : event
         )
       );
+      setRangeVersion(version => version + 1);
       setIsDirty(true);
       
       return updatedEvent;
@@ -149,20 +247,27 @@ export const CalendarProvider = ({ children }) => {
       setError(err.message);
       throw err;
     }
-  }, []);
+  }, [rangeEvents, excludeOccurrence]);
 
   /**
    * Delete an event
+   * Deleting a recurring occurrence only removes that date from its series.
    */
   const deleteEvent = useCallback(async (eventId) => {
     try {
       setError(null);
-      await CalendarStorage.deleteEvent(eventId);
-      
-      // Update local state
-      setEvents(prevEvents => 
-        prevEvents.filter(event => event.id !== eventId)
-      );
+      const occurrence = rangeEvents.find(event => event.id === eventId && event.seriesId);
+      if (occurrence) {
+        await excludeOccurrence(occurrence);
+      } else {
+        await CalendarStorage.deleteEvent(eventId);
+        
+        // Update local state
+        setEvents(prevEvents => 
+          prevEvents.filter(event => event.id !== eventId)
+        );
+      }
+      setRangeVersion(version => version + 1);
       setIsDirty(true);
       
       return true;
@@ -171,23 +276,24 @@ export const CalendarProvider = ({ children }) => {
       setError(err.message);
       throw err;
     }
-  }, []);
+  }, [rangeEvents, excludeOccurrence]);
 
   /**
-   * Get events for a specific date
+   * Get events and recurring occurrences for a specific date
+   * Only dates of the visible range are loaded; others have no events.
    */
   const getEventsByDate = useCallback((date) => {
-    return events.filter(event => event.date === date);
-  }, [events]);
+    return eventsByDate.get(date) || NO_EVENTS;
+  }, [eventsByDate]);
 
   /**
-   * Get events within a date range
+   * Get events and recurring occurrences within a date range, clipped to the visible range
    */
   const getEventsByDateRange = useCallback((startDate, endDate) => {
-    return events.filter(event => 
+    return rangeEvents.filter(event => 
       event.date >= startDate && event.date <= endDate
     );
-  }, [events]);
+  }, [rangeEvents]);
 
   /**
    * Get events for current month
@@ -272,8 +378,8 @@ export const CalendarProvider = ({ children }) => {
   }, [events]);
 
   const hasEventsOnDate = useCallback((date) => {
-    return events.some(event => event.date === date);
-  }, [events]);
+    return eventsByDate.has(date);
+  }, [eventsByDate]);
 
   /**
    * Auto-blocking functions
@@ -314,7 +420,9 @@ export const CalendarProvider = ({ children }) => {
     const now = new Date();
     const nowTime = now.getTime();
     
-    return events.filter(event => {
+    // Series are listed by their loaded occurrences rather than their first date
+    const occurrences = rangeEvents.filter(event => event.seriesId);
+    return [...events.filter(event => !event.recurrence), ...occurrences].filter(event => {
       if (!event.date || !event.time) return false;
       if (event.priority !== 'strict') return false;
       
@@ -325,7 +433,7 @@ export const CalendarProvider = ({ children }) => {
       const dateB = new Date(`${b.date}T${b.time}`);
       return dateA.getTime() - dateB.getTime();
     });
-  }, [events]);
+  }, [events, rangeEvents]);
 
   // Context value
   const contextValue = {
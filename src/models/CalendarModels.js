@@ -55,6 +55,10 @@ export const CalendarEvent = {
       errors.push('Priority must be strict or non-strict');
     }
     
+    if (event.recurrence) {
+      errors.push(...validateRecurrence(event.recurrence));
+    }
+    
     return {
       isValid: errors.length === 0,
       errors
@@ -76,6 +80,37 @@ export const CalendarViewState = {
 };
 
 // Helper functions
+
+/**
+ * Validates a recurrence rule, stored once with its series event and expanded natively:
+ * { frequency: 'daily' | 'weekly', interval?, byWeekday?: number[] (0 = Sunday),
+ *   until?: 'YYYY-MM-DD', count?, exceptions?: ['YYYY-MM-DD'] }
+ */
+const validateRecurrence = (recurrence) => {
+  const errors = [];
+  if (!['daily', 'weekly'].includes(recurrence.frequency)) {
+    errors.push('Recurrence frequency must be daily or weekly');
+  }
+  if (recurrence.interval !== undefined && !(Number.isInteger(recurrence.interval) && recurrence.interval >= 1)) {
+    errors.push('Recurrence interval must be a positive integer');
+  }
+  if (recurrence.byWeekday !== undefined
+      && !(Array.isArray(recurrence.byWeekday)
+        && recurrence.byWeekday.every(day => Number.isInteger(day) && day >= 0 && day <= 6))) {
+    errors.push('Recurrence weekdays must be numbers from 0 (Sunday) to 6');
+  }
+  if (recurrence.until !== undefined && !isValidDate(recurrence.until)) {
+    errors.push('Recurrence end date is invalid');
+  }
+  if (recurrence.count !== undefined && !(Number.isInteger(recurrence.count) && recurrence.count >= 1)) {
+    errors.push('Recurrence count must be a positive integer');
+  }
+  if (recurrence.exceptions !== undefined
+      && !(Array.isArray(recurrence.exceptions) && recurrence.exceptions.every(isValidDate))) {
+    errors.push('Recurrence exceptions must be valid dates');
+  }
+  return errors;
+};
 const isValidDate = (dateString) => {
   const regex = /^\d{4}-\d{2}-\d{2}$/;
   if (!regex.test(dateString)) return false;
@@ -1,4 +1,4 @@
-import React, { useState, useEffect, useMemo, useCallback } from 'react';
+import React, { useState, useEffect, useMemo, useCallback, useRef } from 'react';
 import {
   View,
   Text,
@@ -8,11 +8,15 @@ import {
   Alert,
   Image,
   FlatList,
+  PixelRatio,
 } from 'react-native';
 import { useTheme } from '../../../context/ThemeContext';
 import { useThemedStyles } from '../../../hooks/useThemedStyles';
 import { commonStyles } from '../../../styles/commonStyles';
-import AppBlocking from '../../../services/AppBlocking';
+import AppBlocking, { BLOCKABLE_CATEGORIES } from '../../../services/AppBlocking';
+
+// Must match localStyles.appIcon so icons are rendered at their on-screen size
+const ICON_SIZE_DP = 32;
 
 const AppSelector = ({ onSelectionChanged }) => {
   const { colors } = useTheme();
@@ -120,6 +124,19 @@ const AppSelector = ({ onSelectionChanged }) => {
       fontSize: 14,
       fontWeight: 'bold',
     },
+    categoryRow: {
+      flexDirection: 'row',
+      flexWrap: 'wrap',
+      marginBottom: 16,
+    },
+    categoryChip: {
+      paddingHorizontal: 12,
+      paddingVertical: 6,
+      borderRadius: 16,
+      borderWidth: 1,
+      marginRight: 8,
+      marginBottom: 8,
+    },
   };
   
   const [installedApps, setInstalledApps] = useState([]);
@@ -127,6 +144,12 @@ const AppSelector = ({ onSelectionChanged }) => {
   const [loading, setLoading] = useState(true);
   const [saving, setSaving] = useState(false);
   const [searchQuery, setSearchQuery] = useState('');
+  const [icons, setIcons] = useState({});
+  const [selectedCategories, setSelectedCategories] = useState(new Set());
+  
+  // Icons already resolved (or known to have none) and icons currently requested
+  const loadedIconsRef = useRef(new Set());
+  const pendingIconsRef = useRef(new Set());
 
   useEffect(() => {
     loadInstalledApps();
@@ -140,7 +163,7 @@ const AppSelector = ({ onSelectionChanged }) => {
       console.log(`Loaded ${apps.length} apps from native module`);
       
       // Filter out any invalid apps
-      const validApps = apps.filter(app => app && app.packageName && app.appName);
+      const validApps = apps.filter(app => app && app.key && app.packageName && app.appName);
       if (validApps.length !== apps.length) {
         console.warn(`Filtered out ${apps.length - validApps.length} invalid apps`);
       }
@@ -155,29 +178,91 @@ const AppSelector = ({ onSelectionChanged }) => {
     }
   };
 
+  /**
+   * Load icons only for the rows on screen and cancel rows that scrolled away
+   */
+  const requestVisibleIcons = useCallback(async (visiblePackages) => {
+    const visibleSet = new Set(visiblePackages);
+    const offscreen = Array.from(pendingIconsRef.current).filter(pkg => !visibleSet.has(pkg));
+    if (offscreen.length > 0) {
+      offscreen.forEach(pkg => pendingIconsRef.current.delete(pkg));
+      AppBlocking.cancelAppIcons(offscreen);
+    }
+
+    const missing = visiblePackages.filter(
+      pkg => !loadedIconsRef.current.has(pkg) && !pendingIconsRef.current.has(pkg)
+    );
+    if (missing.length === 0) return;
+    missing.forEach(pkg => pendingIconsRef.current.add(pkg));
+
+    try {
+      const loaded = await AppBlocking.getAppIcons(
+        missing,
+        PixelRatio.getPixelSizeForLayoutSize(ICON_SIZE_DP)
+      );
+      // Anything still pending was not cancelled, so it is done even without an icon
+      missing.forEach(pkg => {
+        if (pendingIconsRef.current.delete(pkg)) {
+          loadedIconsRef.current.add(pkg);
+        }
+      });
+      if (loaded && Object.keys(loaded).length > 0) {
+        setIcons(prev => ({ ...prev, ...loaded }));
+      }
+    } catch (error) {
+      missing.forEach(pkg => pendingIconsRef.current.delete(pkg));
+      console.warn('Error loading app icons:', error);
+    }
+  }, []);
+
+  const onViewableItemsChanged = useRef(({ viewableItems }) => {
+    const visiblePackages = viewableItems
+      .map(viewable => viewable.item && viewable.item.key)
+      .filter(Boolean);
+    requestVisibleIcons(visiblePackages);
+  }).current;
+
+  const viewabilityConfig = useRef({
+    itemVisiblePercentThreshold: 10,
+    minimumViewTime: 150,
+  }).current;
+
   const loadSelectedApps = async () => {
     try {
       const selected = await AppBlocking.getSelectedApps();
       const selectedSet = new Set(selected);
       setSelectedApps(selectedSet);
       setSelectedCount(selectedSet.size);
+      
+      const categories = await AppBlocking.getBlockedCategories();
+      setSelectedCategories(new Set(categories || []));
     } catch (error) {
       console.error('Error loading selected apps:', error);
     }
   };
 
-  const toggleAppSelection = (packageName) => {
+  const toggleAppSelection = (appKey) => {
     const newSelected = new Set(selectedApps);
-    if (newSelected.has(packageName)) {
-      newSelected.delete(packageName);
+    if (newSelected.has(appKey)) {
+      newSelected.delete(appKey);
     } else {
-      newSelected.add(packageName);
+      newSelected.add(appKey);
     }
     setSelectedApps(newSelected);
     setSelectedCount(newSelected.size);
     onSelectionChanged && onSelectionChanged(newSelected); // Notify parent component
   };
 
+  const toggleCategory = (category) => {
+    const newCategories = new Set(selectedCategories);
+    if (newCategories.has(category)) {
+      newCategories.delete(category);
+    } else {
+      newCategories.add(category);
+    }
+    setSelectedCategories(newCategories);
+  };
+
   const filteredApps = useMemo(() => {
     if (!searchQuery.trim()) {
       return installedApps.filter(app => app && app.packageName); // Filter out invalid apps
@@ -194,23 +279,28 @@ const AppSelector = ({ onSelectionChanged }) => {
     try {
       setSaving(true);
       const selectedArray = Array.from(selectedApps);
+      const categoryArray = Array.from(selectedCategories);
       await AppBlocking.saveSelectedApps(selectedArray);
+      await AppBlocking.saveBlockedCategories(categoryArray);
       
       // Notify parent component of the change
       if (onSelectionChanged) {
         onSelectionChanged(selectedArray.length);
       }
       
-      if (selectedArray.length === 0) {
+      if (selectedArray.length === 0 && categoryArray.length === 0) {
         Alert.alert(
           'No Apps Selected', 
           'You haven\'t selected any apps for blocking. App blocking during calendar events will not work until you select at least one app.',
           [{ text: 'OK' }]
         );
       } else {
+        const categorySummary = categoryArray.length > 0
+          ? ` plus every ${categoryArray.join(', ')} app`
+          : '';
         Alert.alert(
           'Success', 
-          `App blocking preferences saved! ${selectedArray.length} app${selectedArray.length === 1 ? '' : 's'} will be blocked during focus sessions.`
+          `App blocking preferences saved! ${selectedArray.length} app${selectedArray.length === 1 ? '' : 's'}${categorySummary} will be blocked during focus sessions.`
         );
       }
     } catch (error) {
@@ -286,12 +376,13 @@ const AppSelector = ({ onSelectionChanged }) => {
 
   const renderAppItem = useCallback(({ item }) => {
     // Add safety check for undefined items
-    if (!item || !item.packageName) {
+    if (!item || !item.key) {
       console.warn('Skipping undefined app item:', item);
       return null;
     }
     
-    const isSelected = selectedApps.has(item.packageName);
+    const isSelected = selectedApps.has(item.key);
+    const icon = icons[item.key];
     
     return (
       <TouchableOpacity
@@ -302,12 +393,12 @@ const AppSelector = ({ onSelectionChanged }) => {
             backgroundColor: isSelected ? colors.surfaceLight : colors.surface,
           }
         ]}
-        onPress={() => toggleAppSelection(item.packageName)}
+        onPress={() => toggleAppSelection(item.key)}
       >
         <View style={localStyles.appInfo}>
-          {item.icon ? (
+          {icon ? (
             <Image
-              source={{ uri: `data:image/png;base64,${item.icon}` }}
+              source={{ uri: `data:image/webp;base64,${icon}` }}
               style={localStyles.appIcon}
             />
           ) : (
@@ -319,7 +410,7 @@ const AppSelector = ({ onSelectionChanged }) => {
               {item.appName}
             </Text>
             <Text style={[styles.smallText, { color: colors.textSecondary }]} numberOfLines={1}>
-              {item.packageName}
+              {item.isWorkProfile ? `${item.packageName} • Work` : item.packageName}
             </Text>
           </View>
         </View>
@@ -339,7 +430,7 @@ const AppSelector = ({ onSelectionChanged }) => {
         </View>
       </TouchableOpacity>
     );
-  }, [selectedApps, colors, styles, toggleAppSelection]);
+  }, [selectedApps, icons, colors, styles, toggleAppSelection]);
 
   const getItemLayout = useCallback((data, index) => ({
     length: 64, // Approximate height of each item
@@ -347,7 +438,7 @@ const AppSelector = ({ onSelectionChanged }) => {
     index,
   }), []);
 
-  const keyExtractor = useCallback((item) => item.packageName, []);
+  const keyExtractor = useCallback((item) => item.key, []);
 
   useEffect(() => {
     setSelectedCount(selectedApps.size);
@@ -374,6 +465,32 @@ const AppSelector = ({ onSelectionChanged }) => {
         Choose which apps should be blocked during focus sessions. System apps and your main productivity apps are filtered out.
       </Text>
 
+      <Text style={[styles.smallText, { color: colors.textSecondary, marginBottom: 8 }]}>
+        Block whole categories (includes apps installed later):
+      </Text>
+      <View style={localStyles.categoryRow}>
+        {BLOCKABLE_CATEGORIES.map(category => {
+          const isSelected = selectedCategories.has(category.id);
+          return (
+            <TouchableOpacity
+              key={category.id}
+              style={[
+                localStyles.categoryChip,
+                {
+                  borderColor: colors.primary,
+                  backgroundColor: isSelected ? colors.primary : 'transparent',
+                }
+              ]}
+              onPress={() => toggleCategory(category.id)}
+            >
+              <Text style={[styles.smallText, { color: isSelected ? (colors.textOnPrimary || '#fff') : colors.textPrimary }]}>
+                {category.label}
+              </Text>
+            </TouchableOpacity>
+          );
+        })}
+      </View>
+
       <TextInput
         style={[
           localStyles.searchInput,
@@ -394,7 +511,7 @@ const AppSelector = ({ onSelectionChanged }) => {
           <Text style={[styles.smallText, { color: colors.textSecondary }]}>
             {selectedApps.size} apps selected • {filteredApps.length} apps shown
           </Text>
-          {selectedApps.size === 0 && (
+          {selectedApps.size === 0 && selectedCategories.size === 0 && (
             <Text style={[styles.smallText, { color: colors.error || '#FF6B6B', marginTop: 4 }]}>
               ⚠️ No apps selected - blocking will not work during events
             </Text>
@@ -434,6 +551,8 @@ const AppSelector = ({ onSelectionChanged }) => {
         maxToRenderPerBatch={10}
         windowSize={10}
         updateCellsBatchingPeriod={50}
+        onViewableItemsChanged={onViewableItemsChanged}
+        viewabilityConfig={viewabilityConfig}
         style={localStyles.appsList}
         showsVerticalScrollIndicator={false}
       />
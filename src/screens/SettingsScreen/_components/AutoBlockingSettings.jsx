@@ -23,10 +23,12 @@ const AutoBlockingSettings = () => {
 
   const [hasAccessibilityPermission, setHasAccessibilityPermission] = useState(false);
   const [upcomingEvents, setUpcomingEvents] = useState([]);
+  const [useBlockScreen, setUseBlockScreen] = useState(false);
 
   useEffect(() => {
     checkPermissions();
     loadUpcomingEvents();
+    loadEnforcementMode();
   }, []);
 
   useEffect(() => {
@@ -42,6 +44,24 @@ const AutoBlockingSettings = () => {
     }
   };
 
+  const loadEnforcementMode = async () => {
+    try {
+      const mode = await AppBlocking.getEnforcementMode();
+      setUseBlockScreen(mode === 'overlay');
+    } catch (error) {
+      console.error('Error loading enforcement mode:', error);
+    }
+  };
+
+  const handleToggleBlockScreen = async (enabled) => {
+    try {
+      await AppBlocking.setEnforcementMode(enabled ? 'overlay' : 'home');
+      setUseBlockScreen(enabled);
+    } catch (error) {
+      console.error('Error saving enforcement mode:', error);
+    }
+  };
+
   const loadUpcomingEvents = () => {
     const upcoming = getUpcomingPriorityEvents().slice(0, 3); // Show next 3 events
     setUpcomingEvents(upcoming);
@@ -289,6 +309,27 @@ const AutoBlockingSettings = () => {
         </View>
       </View>
 
+      {/* Enforcement Mode */}
+      <View style={localStyles.section}>
+        <Text style={localStyles.sectionTitle}>Enforcement</Text>
+        <View style={localStyles.settingRow}>
+          <View style={{ flex: 1 }}>
+            <Text style={localStyles.settingLabel}>
+              Show block screen
+            </Text>
+            <Text style={localStyles.settingDescription}>
+              Cover blocked apps instantly instead of returning to the home screen
+            </Text>
+          </View>
+          <Switch
+            value={useBlockScreen}
+            onValueChange={handleToggleBlockScreen}
+            trackColor={{ false: colors.borderLight, true: colors.primary + '60' }}
+            thumbColor={useBlockScreen ? colors.primary : colors.textSecondary}
+          />
+        </View>
+      </View>
+
       {/* Current Status */}
       {blockingStatus.autoBlockingEnabled && (
         <View style={localStyles.section}>
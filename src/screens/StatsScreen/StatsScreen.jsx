@@ -1,5 +1,5 @@
 import React, { useState, useEffect } from 'react';
-import { View, Text, StyleSheet, Image, ScrollView, RefreshControl } from 'react-native';
+import { View, Text, StyleSheet, Image, ScrollView, RefreshControl, Switch } from 'react-native';
 import { useThemedStyles } from '../../hooks/useThemedStyles';
 import BlockingStatsService from '../../services/BlockingStatsService';
 
@@ -7,6 +7,7 @@ const StatsScreen = () => {
   const { styles, colors } = useThemedStyles();
   const [weeklyBlocks, setWeeklyBlocks] = useState(0);
   const [totalBlocks, setTotalBlocks] = useState(0);
+  const [insights, setInsights] = useState(null); // null while switch analytics is off
   const [loading, setLoading] = useState(true);
   const [refreshing, setRefreshing] = useState(false);
 
@@ -16,6 +17,7 @@ const StatsScreen = () => {
       const stats = await BlockingStatsService.getStats();
       setWeeklyBlocks(currentWeekBlocks);
       setTotalBlocks(stats.totalBlocks);
+      setInsights(await BlockingStatsService.getSwitchInsights());
     } catch (error) {
       console.error('Error loading blocking stats:', error);
     } finally {
@@ -33,6 +35,18 @@ const StatsScreen = () => {
     loadStats();
   };
 
+  const handleToggleInsights = async (enabled) => {
+    await BlockingStatsService.setSwitchInsightsEnabled(enabled);
+    setInsights(enabled ? await BlockingStatsService.getSwitchInsights() : null);
+  };
+
+  const formatInterval = (ms) => {
+    if (ms < 60000) {
+      return `${Math.round(ms / 1000)}s`;
+    }
+    return `${Math.round(ms / 60000)}m`;
+  };
+
   const getBlockingMessage = () => {
     if (weeklyBlocks === 0) {
       return "No blocked app attempts this week! 🎉";
@@ -86,6 +100,42 @@ const StatsScreen = () => {
           </Text>
         </View>
       </View>
+
+      {/* Distraction Insights (opt-in switch analytics) */}
+      <View style={[localStyles.infoCard, { backgroundColor: colors.surface, borderColor: colors.border }]}>
+        <View style={localStyles.insightsHeader}>
+          <Text style={[localStyles.infoTitle, { color: colors.textPrimary, marginBottom: 0 }]}>
+            Distraction Insights
+          </Text>
+          <Switch
+            value={insights !== null}
+            onValueChange={handleToggleInsights}
+            trackColor={{ false: colors.borderLight, true: colors.primary + '60' }}
+            thumbColor={insights !== null ? colors.primary : colors.textSecondary}
+          />
+        </View>
+        {insights === null ? (
+          <Text style={[localStyles.infoText, { color: colors.textSecondary }]}>
+            Count app switches on this device to see how often you jump between apps. Nothing leaves your phone.
+          </Text>
+        ) : (
+          <View>
+            <Text style={[localStyles.infoText, { color: colors.textPrimary }]}>
+              App switches: {insights.switchesLastHour} this hour, {insights.switchesToday} today
+            </Text>
+            {insights.topApps.length > 0 && (
+              <Text style={[localStyles.infoText, { color: colors.textPrimary }]}>
+                Most switched to: {insights.topApps.map(app => app.packageName).join(', ')}
+              </Text>
+            )}
+            <Text style={[localStyles.infoText, { color: colors.textPrimary }]}>
+              {insights.unlockToDistraction.count > 0
+                ? `Unlock to distraction: ${formatInterval(insights.unlockToDistraction.avgMs)} on average`
+                : 'No distractions right after unlocking yet'}
+            </Text>
+          </View>
+        )}
+      </View>
     </ScrollView>
   );
 };
@@ -157,6 +207,12 @@ const localStyles = StyleSheet.create({
     padding: 20,
     borderWidth: 1,
   },
+  insightsHeader: {
+    flexDirection: 'row',
+    justifyContent: 'space-between',
+    alignItems: 'center',
+    marginBottom: 10,
+  },
   infoTitle: {
     fontSize: 18,
     fontWeight: 'bold',
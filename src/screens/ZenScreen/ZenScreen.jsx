@@ -1,9 +1,9 @@
 import React, { useState, useEffect, useRef } from 'react';
-import { View, Text, TouchableOpacity, StyleSheet, SafeAreaView, KeyboardAvoidingView, Platform, TextInput, Modal, Alert, AppState } from 'react-native';
+import { View, Text, TouchableOpacity, StyleSheet, SafeAreaView, KeyboardAvoidingView, Platform, TextInput, Modal, Alert, AppState, DeviceEventEmitter } from 'react-native';
 import { commonStyles } from '../../styles/commonStyles';
 import { useThemedStyles } from '../../hooks/useThemedStyles';
 import TimePicker from '../../components/TimePicker';
-import AppBlocking, { getSelectedAppsStrict } from '../../services/AppBlocking';
+import AppBlocking, { getSelectedAppsStrict, getBlockedCategoriesStrict } from '../../services/AppBlocking';
 
 /**
  * ZenScreen Component
@@ -95,6 +95,12 @@ const ZenScreen = ({ navigation }) => {
       color: colors.textPrimary,
       fontWeight: '600',
     },
+    backendText: {
+      marginTop: 16,
+      fontSize: 12,
+      color: colors.textSecondary,
+      textAlign: 'center',
+    },
   };
   // Zen Mode timer state
   const [hours, setHours] = useState(0);
@@ -115,12 +121,19 @@ const ZenScreen = ({ navigation }) => {
   // Track start time and total duration for accurate timing when app is backgrounded
   const startTimeRef = useRef(null);
   const totalDurationRef = useRef(0);
+  const sessionIdRef = useRef(null); // This screen's session; calendar sessions run independently
 
   // App blocking state
   const [isAccessibilityEnabled, setIsAccessibilityEnabled] = useState(false);
+  // Usage access lets the native usage stats fallback block when accessibility is off or killed
+  const [hasUsageAccess, setHasUsageAccess] = useState(false);
+  const [detectionBackend, setDetectionBackend] = useState('none');
+  // Without "display over other apps" the usage stats fallback cannot send blocked apps home
+  const [canLeaveBlockedApps, setCanLeaveBlockedApps] = useState(true);
   const [blockingActive, setBlockingActive] = useState(false);
   const [notificationsEnabled, setNotificationsEnabled] = useState(true);
   const [selectedApps, setSelectedApps] = useState([]);
+  const [blockedCategories, setBlockedCategories] = useState([]);
 
   // Check accessibility status on mount and request if needed
   useEffect(() => {
@@ -130,17 +143,22 @@ const ZenScreen = ({ navigation }) => {
       await checkNotificationStatus();
       await loadSelectedApps();
       
-      // If accessibility is not enabled, prompt user immediately
+      // If neither detection backend is available, prompt user immediately
       const enabled = await AppBlocking.isAccessibilityEnabled();
-      if (!enabled) {
+      const usageAccess = enabled || await AppBlocking.hasUsageAccess();
+      if (!enabled && !usageAccess) {
         Alert.alert(
           'App Blocking Permission Required',
-          'To use focus sessions with app blocking, please grant accessibility permission in the next screen.',
+          'To use focus sessions with app blocking, please grant accessibility permission in the next screen. Usage access works as a fallback if accessibility is unavailable.',
           [
             {
               text: 'Skip',
               style: 'cancel',
             },
+            {
+              text: 'Usage Access',
+              onPress: handleOpenUsageAccessSettings,
+            },
             {
               text: 'Grant Permission',
               onPress: handleOpenAccessibilitySettings,
@@ -187,16 +205,84 @@ const ZenScreen = ({ navigation }) => {
     return unsubscribe;
   }, [navigation]);
 
-  // Check accessibility service status
+  // Check accessibility service status, the usage access fallback and the backend in use
   const checkAccessibilityStatus = async () => {
     try {
       const enabled = await AppBlocking.isAccessibilityEnabled();
       setIsAccessibilityEnabled(enabled);
+      setHasUsageAccess(await AppBlocking.hasUsageAccess());
+      setDetectionBackend(await AppBlocking.getDetectionBackend());
+      setCanLeaveBlockedApps(await AppBlocking.canLeaveBlockedApps());
     } catch (error) {
       console.warn('Failed to check accessibility status:', error);
     }
   };
 
+  // The foreground service reports when it switches between accessibility and usage stats
+  useEffect(() => {
+    const subscription = DeviceEventEmitter.addListener('AppBlockingBackendChanged', (event) => {
+      setDetectionBackend(event.backend);
+      setCanLeaveBlockedApps(event.canLeaveBlockedApps);
+      if (event.backend === 'usage_stats' && event.homeLaunchFailures > 0 && !event.canLeaveBlockedApps) {
+        Alert.alert(
+          'Blocked App Stayed Open',
+          'Without accessibility, blocked apps can only be closed if this app may display over other apps.',
+          [
+            { text: 'Later', style: 'cancel' },
+            { text: 'Allow', onPress: handleOpenOverlaySettings },
+            { text: 'Accessibility', onPress: handleOpenAccessibilitySettings },
+          ]
+        );
+      }
+      if (event.backend === 'none' && sessionIdRef.current) {
+        Alert.alert(
+          'App Blocking Paused',
+          'Blocking stopped because neither accessibility nor usage access is available. Re-enable one of them to keep blocking apps.',
+          [
+            { text: 'Later', style: 'cancel' },
+            { text: 'Usage Access', onPress: handleOpenUsageAccessSettings },
+            { text: 'Accessibility', onPress: handleOpenAccessibilitySettings },
+          ]
+        );
+      }
+    });
+
+    return () => subscription.remove();
+  }, []);
+
+  // The notification's Extend/End actions and the quick settings tile change sessions natively
+  useEffect(() => {
+    const subscription = DeviceEventEmitter.addListener('AppBlockingSessionsChanged', () => {
+      syncSessionFromNative();
+    });
+
+    return () => subscription.remove();
+  }, []);
+
+  // Align the timer with this screen's session as native code now sees it
+  const syncSessionFromNative = async () => {
+    if (!sessionIdRef.current) return;
+    try {
+      const sessions = await AppBlocking.getActiveSessions();
+      const session = sessions.find(s => s.id === sessionIdRef.current);
+      if (!session) {
+        // Ended outside the app; nothing left to stop
+        sessionIdRef.current = null;
+        setBlockingActive(false);
+        setIsRunning(false);
+        startTimeRef.current = null;
+        totalDurationRef.current = 0;
+        return;
+      }
+      startTimeRef.current = session.startTime;
+      totalDurationRef.current = Math.round((session.endTime - session.startTime) / 1000);
+      setTimeLeft(Math.max(0, Math.round((session.endTime - Date.now()) / 1000)));
+      setBlockingActive(true);
+    } catch (error) {
+      console.warn('Failed to sync focus session:', error);
+    }
+  };
+
   // Check if blocking is currently active
   const checkBlockingStatus = async () => {
     try {
@@ -223,6 +309,7 @@ const ZenScreen = ({ navigation }) => {
     try {
       const apps = await getSelectedAppsStrict();
       setSelectedApps(apps);
+      setBlockedCategories(await getBlockedCategoriesStrict());
     } catch (error) {
       console.warn('Failed to load selected apps:', error);
       setSelectedApps([]);
@@ -240,6 +327,26 @@ const ZenScreen = ({ navigation }) => {
     }
   };
 
+  // Handle opening usage access settings (fallback detection)
+  const handleOpenUsageAccessSettings = async () => {
+    try {
+      await AppBlocking.openUsageAccessSettings();
+      setTimeout(checkAccessibilityStatus, 1000);
+    } catch (error) {
+      Alert.alert('Error', 'Failed to open usage access settings');
+    }
+  };
+
+  // Handle opening "display over other apps" settings (needed by the usage stats fallback)
+  const handleOpenOverlaySettings = async () => {
+    try {
+      await AppBlocking.openOverlaySettings();
+      setTimeout(checkAccessibilityStatus, 1000);
+    } catch (error) {
+      Alert.alert('Error', 'Failed to open display over other apps settings');
+    }
+  };
+
   // Countdown effect - calculate elapsed time instead of using intervals
   useEffect(() => {
     if (!isRunning) return;
@@ -266,8 +373,8 @@ const ZenScreen = ({ navigation }) => {
   }, [timeLeft]);
 
   const handleStart = async () => {
-    // Check if user has selected apps for blocking
-    if (selectedApps.length === 0) {
+    // Check if user has selected apps or categories for blocking
+    if (selectedApps.length === 0 && blockedCategories.length === 0) {
       Alert.alert(
         'No Apps Selected',
         'You haven\'t selected any apps for blocking. Please go to Settings > App Selection to choose which apps to block during focus sessions.',
@@ -285,10 +392,10 @@ const ZenScreen = ({ navigation }) => {
     totalDurationRef.current = duration;
     setIsRunning(true);
 
-    // Start app blocking if accessibility is enabled
-    if (isAccessibilityEnabled) {
+    // Start app blocking if either detection backend can enforce it
+    if (isAccessibilityEnabled || hasUsageAccess) {
       try {
-        await AppBlocking.startBlocking(duration, selectedApps);
+        sessionIdRef.current = await AppBlocking.startBlocking(duration, selectedApps);
         setBlockingActive(true);
       } catch (error) {
         console.warn('Failed to start app blocking:', error);
@@ -303,9 +410,10 @@ const ZenScreen = ({ navigation }) => {
     totalDurationRef.current = 0;
     
     // Stop app blocking
-    if (blockingActive) {
+    if (blockingActive && sessionIdRef.current) {
       try {
-        AppBlocking.stopBlocking();
+        AppBlocking.stopBlockingSession(sessionIdRef.current);
+        sessionIdRef.current = null;
         setBlockingActive(false);
       } catch (error) {
         console.warn('Failed to stop app blocking:', error);
@@ -319,9 +427,10 @@ const ZenScreen = ({ navigation }) => {
     totalDurationRef.current = 0;
     
     // Stop app blocking on emergency stop too
-    if (blockingActive) {
+    if (blockingActive && sessionIdRef.current) {
       try {
-        AppBlocking.stopBlocking();
+        AppBlocking.stopBlockingSession(sessionIdRef.current);
+        sessionIdRef.current = null;
         setBlockingActive(false);
       } catch (error) {
         console.warn('Failed to stop app blocking:', error);
@@ -403,6 +512,18 @@ const ZenScreen = ({ navigation }) => {
                 String(timeLeft%60).padStart(2,'0')
               }</Text>
             </TouchableOpacity>
+            {blockingActive && detectionBackend !== 'accessibility' && (
+              <Text
+                style={dynamicStyles.backendText}
+                onPress={detectionBackend === 'usage_stats' && !canLeaveBlockedApps ? handleOpenOverlaySettings : undefined}
+              >
+                {detectionBackend !== 'usage_stats'
+                  ? 'App blocking paused - no permission'
+                  : canLeaveBlockedApps
+                    ? 'Blocking via usage access (fallback)'
+                    : 'Blocked apps cannot be closed - tap to allow display over other apps'}
+              </Text>
+            )}
           </View>
         )}
       </KeyboardAvoidingView>
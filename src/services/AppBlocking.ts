@@ -1,9 +1,166 @@
 import { NativeModules } from 'react-native';
 
+export type AppCategory =
+  | 'game'
+  | 'audio'
+  | 'video'
+  | 'image'
+  | 'social'
+  | 'news'
+  | 'maps'
+  | 'productivity'
+  | 'accessibility';
+
 export interface InstalledApp {
+  key: string; // packageName for the current user, packageName#serial for other profiles
   packageName: string;
   appName: string;
-  icon: string; // base64 encoded icon
+  isWorkProfile: boolean;
+  userSerial: number;
+  category: AppCategory | null;
+}
+
+export interface IconBenchmarkResult {
+  iconCount: number;
+  iconSizePx: number;
+  legacyAvgBytes?: number;
+  legacyAvgMs?: number;
+  pipelineAvgBytes?: number;
+  pipelineAvgMs?: number;
+  pipelineOverBudget: number; // Icons still over the byte budget at the lowest WebP quality
+}
+
+export type BlockingMode = 'blocklist' | 'allowlist';
+
+export interface BlockingSession {
+  id: string;
+  origin: string; // 'manual', 'calendar:<eventId>', ...
+  mode: BlockingMode;
+  apps: string[];
+  startTime: number;
+  endTime: number;
+}
+
+export interface BlockingSessionOptions {
+  origin?: string;
+  mode?: BlockingMode;
+}
+
+export interface AppBudget {
+  packageName: string;
+  limitMs: number;
+  usedMs: number; // Today's foreground time, reset at local midnight
+  remainingMs: number;
+}
+
+export type EnforcementMode = 'home' | 'overlay';
+
+export interface BlockLatencyStat {
+  count: number;
+  avgMs: number;
+  maxMs: number;
+}
+
+export interface TapLatencyStat {
+  count: number;
+  medianMs: number;
+  maxMs: number;
+}
+
+// Aggregates of the native focus session ledger
+export interface FocusStats {
+  sessions: number;
+  completed: number;
+  completionRate: number; // 0..1
+  focusedMs: number; // Time actually spent in sessions, including ones ended early
+  attempts: number;
+  currentStreak: number; // Consecutive days with a completed session, ending today or yesterday
+  longestStreak: number;
+}
+
+export interface FocusSessionRecord {
+  startTime: number;
+  plannedEndTime: number;
+  actualEndTime: number;
+  attempts: number; // Blocks enforced during the session
+  origin: 'manual' | 'quick' | 'calendar' | 'other';
+  endReason: 'completed' | 'stopped' | 'notification' | 'tile';
+}
+
+export interface BlockingHistory {
+  total: number;
+  apps: { packageName: string; count: number }[]; // Most blocked first
+}
+
+export interface BlockingHistoryStats {
+  bytes: number;
+  loadMs: number;
+  rawAttempts: number; // Last 48 hours, kept individually
+  hours: number; // Hourly rollups, last 35 days
+  days: number; // Daily rollups, older
+  packages: number;
+}
+
+export interface SwitchAnalytics {
+  totalSwitches: number;
+  switchesPerHour: number[]; // Oldest first; the last entry is the current hour
+  topApps: { packageName: string; count: number; error: number }[]; // count overestimates by at most error
+  unlockToDistraction: {
+    count: number;
+    avgMs: number;
+    minMs: number;
+    maxMs: number;
+    histogram: { upToMs: number; count: number }[];
+  };
+}
+
+export interface DomainCheckStats {
+  checks: number;
+  averageMs: number; // URL bar lookup and match, on the accessibility thread
+  maxMs: number;
+  domains: number;
+  buildMs: number; // Reading and building the current blocklist, off the accessibility thread
+}
+
+export interface EventRecording {
+  path: string;
+  events: number;
+  bytes: number;
+}
+
+export interface SideEffectStats {
+  pending: number;
+  executed: number;
+  dropped: number; // Work discarded because the queue was full
+}
+
+export interface EventBusSubscriberStats {
+  name: string; // 'persistence' | 'bridge' | 'analytics'
+  capacity: number;
+  dropPolicy: 'newest' | 'oldest'; // Which event is lost when the queue is full
+  published: number; // Events accepted into the queue
+  delivered: number;
+  dropped: number;
+  failed: number; // Deliveries where the subscriber threw
+  lag: number; // Queued, not yet delivered
+  maxLag: number;
+}
+
+export type DetectionBackend = 'accessibility' | 'usage_stats' | 'none';
+
+// Payload of the 'AppBlockingBackendChanged' DeviceEventEmitter event
+// Also re-sent by 'usage_stats' when a blocked app could not be left
+export interface BackendChangedEvent {
+  backend: DetectionBackend;
+  canLeaveBlockedApps: boolean; // "Display over other apps" granted or not needed
+  homeLaunchFailures: number;
+  timestamp: number;
+}
+
+// Payload of the 'AppBlockingSessionsChanged' DeviceEventEmitter event
+export interface SessionsChangedEvent {
+  sessionCount: number;
+  timestamp: number;
 }
 
 interface AppBlockingInterface {
@@ -22,31 +179,220 @@ interface AppBlockingInterface {
    */
   openAccessibilitySettings(): Promise<boolean>;
 
+  /**
+   * Check if usage access is granted (fallback backend when accessibility is off)
+   */
+  hasUsageAccess(): Promise<boolean>;
+
+  /**
+   * Open usage access settings for user to grant the fallback backend
+   */
+  openUsageAccessSettings(): Promise<boolean>;
+
+  /**
+   * Check if "display over other apps" is granted or not needed
+   * Without it the usage access backend cannot leave blocked apps on Android 10+
+   */
+  canLeaveBlockedApps(): Promise<boolean>;
+
+  /**
+   * Open "display over other apps" settings for this app
+   */
+  openOverlaySettings(): Promise<boolean>;
+
+  /**
+   * Backend currently enforcing sessions; changes are emitted as 'AppBlockingBackendChanged'
+   */
+  getDetectionBackend(): Promise<DetectionBackend>;
+
   /**
    * Start app blocking for specified duration and apps
    * @param durationSeconds - Duration to block apps in seconds
    * @param blockedApps - Array of package names to block
+   * @returns Id of the new session
+   */
+  startBlocking(durationSeconds: number, blockedApps: string[]): Promise<string>;
+
+  /**
+   * Start deep-focus blocking: every app except the allowed ones is blocked
+   * The launcher, System UI, input methods, the default dialer and this app are always exempt
+   * @param durationSeconds - Duration to block apps in seconds
+   * @param allowedApps - Array of InstalledApp keys that stay usable
+   * @returns Id of the new session
    */
-  startBlocking(durationSeconds: number, blockedApps: string[]): Promise<boolean>;
+  startAllowlistBlocking(durationSeconds: number, allowedApps: string[]): Promise<string>;
 
   /**
-   * Stop app blocking immediately
+   * Start a session that runs alongside any other active sessions
+   * Blocklist sessions add to what is blocked; allowlist sessions narrow what is allowed
+   * @param options - Origin tag (defaults to 'manual') and mode (defaults to 'blocklist')
+   * @returns Id of the new session
+   */
+  startBlockingSession(durationSeconds: number, apps: string[], options?: BlockingSessionOptions): Promise<string>;
+
+  /**
+   * Stop a single session; other sessions keep blocking
+   * @returns false if the session had already ended
+   */
+  stopBlockingSession(sessionId: string): Promise<boolean>;
+
+  /**
+   * Stop all blocking sessions immediately
    */
   stopBlocking(): void;
 
   /**
-   * Get current blocking status
+   * Get current blocking status (true while any session is active)
    */
   getBlockingStatus(): Promise<boolean>;
 
   /**
-   * Get list of installed apps that can be blocked
+   * Get all active sessions
+   * Sessions changed natively (notification, quick settings tile) are announced as 'AppBlockingSessionsChanged'
+   */
+  getActiveSessions(): Promise<BlockingSession[]>;
+
+  /**
+   * Choose how blocked apps are enforced
+   * 'home' sends the user to the launcher; 'overlay' covers the app with a block screen
+   */
+  setEnforcementMode(mode: EnforcementMode): Promise<boolean>;
+
+  /**
+   * Get the current enforcement mode (defaults to 'home')
+   */
+  getEnforcementMode(): Promise<EnforcementMode>;
+
+  /**
+   * Debug method: time from a blocked app's window event until it is covered, per mode
+   */
+  getBlockLatencyStats(): Promise<Record<EnforcementMode, BlockLatencyStat>>;
+
+  /**
+   * Duration of the preset session started from the Quick Settings tile (default 25)
+   */
+  setQuickSessionMinutes(minutes: number): Promise<boolean>;
+
+  getQuickSessionMinutes(): Promise<number>;
+
+  /**
+   * Debug method: tap-to-blocking latency of natively started sessions
+   */
+  getTapLatencyStats(): Promise<TapLatencyStat>;
+
+  /**
+   * Blocked attempts in [fromTime, toTime) from the native history, with the top appLimit apps
+   * Rolled-up hours and days count when they start inside the range
+   */
+  getBlockingHistory(fromTime: number, toTime: number, appLimit: number): Promise<BlockingHistory>;
+
+  /**
+   * Blocked attempts per local day, for days consecutive days starting with the day of fromTime
+   */
+  getBlockingDailyCounts(fromTime: number, days: number): Promise<number[]>;
+
+  /**
+   * One-time import of attempts kept in JS storage by earlier versions
+   */
+  importBlockingAttempts(attempts: { timestamp: number; packageName: string | null }[]): Promise<number>;
+
+  clearBlockingHistory(): Promise<boolean>;
+
+  /**
+   * Debug method: size and load time of the native blocking history
+   */
+  getBlockingHistoryStats(): Promise<BlockingHistoryStats>;
+
+  /**
+   * Opt-in analytics over every foreground app switch (off by default)
+   */
+  setSwitchAnalyticsEnabled(enabled: boolean): Promise<boolean>;
+
+  isSwitchAnalyticsEnabled(): Promise<boolean>;
+
+  /**
+   * Switches per hour for the last `hours` hours (max 168), most switched-to apps and
+   * time from unlock to the first selected app or category
+   */
+  getSwitchAnalytics(hours: number, appLimit: number): Promise<SwitchAnalytics>;
+
+  resetSwitchAnalytics(): Promise<boolean>;
+
+  /**
+   * Domains blocked in known browsers during focus sessions; subdomains are covered
+   * @returns Number of distinct valid domains kept
+   */
+  setBlockedDomains(domains: string[]): Promise<number>;
+
+  /**
+   * Replace the blocked domains with a domain list or hosts file on the device
+   * @returns Number of distinct valid domains
+   */
+  importBlockedDomains(path: string): Promise<number>;
+
+  getBlockedDomainCount(): Promise<number>;
+
+  /**
+   * Debug method: cost of URL bar checks on the accessibility thread and of the last blocklist build
+   */
+  getDomainCheckStats(): Promise<DomainCheckStats>;
+
+  getFocusStats(): Promise<FocusStats>;
+
+  /**
+   * Most recent finished focus sessions, newest first
+   */
+  getFocusSessions(limit: number): Promise<FocusSessionRecord[]>;
+
+  /**
+   * Debug method: counters of the native queue that runs bridge events, stats and disk writes
+   */
+  getSideEffectStats(): Promise<SideEffectStats>;
+
+  /**
+   * Debug method: queue metrics of each native blocking event subscriber
+   */
+  getEventBusStats(): Promise<EventBusSubscriberStats[]>;
+
+  /**
+   * Debug method: record accessibility events and blocking decisions to a compact file
+   * @returns Path of the recording on the device
+   */
+  startEventRecording(): Promise<string>;
+
+  /**
+   * Debug method: stop recording; null if nothing was being recorded
+   */
+  stopEventRecording(): Promise<EventRecording | null>;
+
+  /**
+   * Get list of launchable apps across all user profiles (metadata only, no icons)
    */
   getInstalledApps(): Promise<InstalledApp[]>;
 
+  /**
+   * Get icons for a batch of apps, typically the rows currently on screen
+   * Newer requests are served first; cancelled apps are omitted from the result
+   * @param appKeys - InstalledApp keys to render icons for
+   * @param sizePx - Icon edge length in physical pixels; must be positive, capped at 192
+   * @returns Map of app key to base64 encoded WebP icon (badged for work profile apps)
+   */
+  getAppIcons(appKeys: string[], sizePx: number): Promise<Record<string, string>>;
+
+  /**
+   * Cancel pending icon loads for apps that scrolled out of view
+   */
+  cancelAppIcons(appKeys: string[]): void;
+
+  /**
+   * Debug method comparing legacy PNG icon encoding with the WebP pipeline
+   * @param maxApps - Maximum number of launchable apps to sample
+   */
+  benchmarkIconPipeline(maxApps: number): Promise<IconBenchmarkResult>;
+
   /**
    * Save user's selected apps for blocking
-   * @param selectedApps - Array of package names to block during focus sessions
+   * @param selectedApps - Array of InstalledApp keys to block during focus sessions
    */
   saveSelectedApps(selectedApps: string[]): Promise<boolean>;
 
@@ -55,6 +401,36 @@ interface AppBlockingInterface {
    */
   getSelectedApps(): Promise<string[]>;
 
+  /**
+   * Save app categories blocked on top of the selected apps
+   * Expanded natively from ApplicationInfo.category, so newly installed apps are covered
+   * @param categories - Categories such as 'social', 'game', 'video'
+   */
+  saveBlockedCategories(categories: AppCategory[]): Promise<boolean>;
+
+  /**
+   * Get app categories blocked on top of the selected apps
+   */
+  getBlockedCategories(): Promise<AppCategory[]>;
+
+  /**
+   * Set a daily foreground time budget; the app is blocked once it is used up
+   * Metered natively, so it applies without an active session or the app running
+   * @param appKey - InstalledApp key (budgets apply to the package in every profile)
+   * @param minutesPerDay - Allowed foreground minutes per local day
+   */
+  setAppBudget(appKey: string, minutesPerDay: number): Promise<boolean>;
+
+  /**
+   * Remove the daily budget of an app
+   */
+  removeAppBudget(appKey: string): Promise<boolean>;
+
+  /**
+   * Get all daily budgets with today's usage
+   */
+  getAppBudgets(): Promise<AppBudget[]>;
+
   /**
    * Debug method to check popular apps status
    */
@@ -107,6 +483,31 @@ export const getSelectedAppsStrict = async () => {
   }
 };
 
+/**
+ * Categories offered as blocking profiles in Settings
+ */
+export const BLOCKABLE_CATEGORIES: { id: AppCategory; label: string }[] = [
+  { id: 'social', label: 'Social' },
+  { id: 'game', label: 'Games' },
+  { id: 'video', label: 'Video' },
+  { id: 'news', label: 'News' },
+  { id: 'audio', label: 'Audio' },
+];
+
+/**
+ * Get user-selected blocking categories
+ * @returns Promise<AppCategory[]> Selected categories, empty if none selected
+ */
+export const getBlockedCategoriesStrict = async (): Promise<AppCategory[]> => {
+  try {
+    const categories = await AppBlocking.getBlockedCategories();
+    return categories || [];
+  } catch (error) {
+    console.warn('Error getting blocked categories:', error);
+    return [];
+  }
+};
+
 /**
  * DEPRECATED: No longer initializes with default apps
  * @deprecated Use getSelectedAppsStrict() instead
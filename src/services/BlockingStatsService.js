@@ -2,9 +2,12 @@
  * Blocking Statistics Service
  * 
  * Tracks and manages app blocking statistics including weekly counters.
+ * Individual attempts are recorded natively (see BlockingHistory.java), which keeps
+ * them raw for two days and then as hourly and daily rollups for the long term.
  */
 
 import AsyncStorage from '@react-native-async-storage/async-storage';
+import AppBlocking from './AppBlocking';
 
 const STORAGE_KEYS = {
   BLOCKING_STATS: '@blocking_statistics'
@@ -24,8 +27,20 @@ class BlockingStatsService {
     return monday.toISOString().split('T')[0]; // YYYY-MM-DD format
   }
 
+  /**
+   * Local midnight of the current week's Monday, in epoch ms
+   */
+  static getCurrentWeekStartTime() {
+    const monday = new Date();
+    const day = monday.getDay();
+    monday.setDate(monday.getDate() - (day === 0 ? 6 : day - 1));
+    monday.setHours(0, 0, 0, 0);
+    return monday.getTime();
+  }
+
   /**
    * Record a blocking attempt (when user tries to access a blocked app)
+   * Only the counters live here; the attempt itself was already stored natively.
    * @param {string} packageName - Package name of the blocked app
    * @param {string} appName - Display name of the blocked app
    */
@@ -38,23 +53,9 @@ class BlockingStatsService {
       if (!stats.weeklyBlocks[weekStart]) {
         stats.weeklyBlocks[weekStart] = 0;
       }
-      if (!stats.weeklyAttempts) {
-        stats.weeklyAttempts = {};
-      }
-      if (!stats.weeklyAttempts[weekStart]) {
-        stats.weeklyAttempts[weekStart] = [];
-      }
-
-      // Record this blocking attempt
-      const attemptRecord = {
-        timestamp: new Date().toISOString(),
-        packageName: packageName || 'unknown',
-        appName: appName || 'Unknown App'
-      };
       
       stats.weeklyBlocks[weekStart]++;
       stats.totalBlocks++;
-      stats.weeklyAttempts[weekStart].push(attemptRecord);
       stats.lastBlockedDate = new Date().toISOString();
       
       await AsyncStorage.setItem(STORAGE_KEYS.BLOCKING_STATS, JSON.stringify(stats));
@@ -71,6 +72,12 @@ class BlockingStatsService {
    * Get current week's blocking count
    */
   static async getCurrentWeekBlocks() {
+    try {
+      const history = await AppBlocking.getBlockingHistory(this.getCurrentWeekStartTime(), Date.now() + 1, 0);
+      return history.total;
+    } catch (error) {
+      console.warn('Native blocking history unavailable, using weekly counter:', error);
+    }
     try {
       const weekStart = this.getCurrentWeekStart();
       const stats = await this.getStats();
@@ -97,10 +104,11 @@ class BlockingStatsService {
       }
       const stats = JSON.parse(statsJson);
       
-      // Ensure weeklyAttempts exists for backward compatibility
-      if (!stats.weeklyAttempts) {
-        stats.weeklyAttempts = {};
+      // Attempt lists from earlier versions move to the native history once
+      if (stats.weeklyAttempts && Object.keys(stats.weeklyAttempts).length > 0) {
+        await this.migrateLegacyAttempts(stats);
       }
+      stats.weeklyAttempts = {};
       
       return stats;
     } catch (error) {
@@ -115,7 +123,29 @@ class BlockingStatsService {
   }
 
   /**
-   * Clear old weekly data (keep last 4 weeks)
+   * Move attempt records stored in the stats blob into the native history
+   * @param {Object} stats - Stats with a non-empty weeklyAttempts map; saved without it on success
+   */
+  static async migrateLegacyAttempts(stats) {
+    try {
+      const attempts = Object.values(stats.weeklyAttempts)
+        .flat()
+        .map(attempt => ({
+          timestamp: new Date(attempt.timestamp).getTime(),
+          packageName: attempt.packageName || null
+        }))
+        .filter(attempt => !isNaN(attempt.timestamp));
+      const imported = await AppBlocking.importBlockingAttempts(attempts);
+      stats.weeklyAttempts = {};
+      await AsyncStorage.setItem(STORAGE_KEYS.BLOCKING_STATS, JSON.stringify(stats));
+      console.log(`Migrated ${imported} blocking attempts to native history`);
+    } catch (error) {
+      console.error('Error migrating blocking attempts:', error);
+    }
+  }
+
+  /**
+   * Clear old weekly counters (keep last 4 weeks); attempt history is kept natively
    */
   static async cleanupOldData() {
     try {
@@ -132,13 +162,6 @@ class BlockingStatsService {
         }
       });
       
-      // Also clean up weeklyAttempts
-      Object.keys(stats.weeklyAttempts || {}).forEach(weekStart => {
-        if (weekStart < cutoffDate) {
-          delete stats.weeklyAttempts[weekStart];
-        }
-      });
-      
       await AsyncStorage.setItem(STORAGE_KEYS.BLOCKING_STATS, JSON.stringify(stats));
     } catch (error) {
       console.error('Error cleaning up old blocking data:', error);
@@ -157,6 +180,7 @@ class BlockingStatsService {
         lastBlockedDate: null
       };
       await AsyncStorage.setItem(STORAGE_KEYS.BLOCKING_STATS, JSON.stringify(emptyStats));
+      await AppBlocking.clearBlockingHistory();
     } catch (error) {
       console.error('Error resetting blocking stats:', error);
     }
@@ -169,14 +193,17 @@ class BlockingStatsService {
     try {
       const stats = await this.getStats();
       const currentWeek = this.getCurrentWeekStart();
+      const currentWeekHistory = await AppBlocking.getBlockingHistory(
+        this.getCurrentWeekStartTime(), Date.now() + 1, 10);
       
       return {
         currentWeek,
-        currentWeekBlocks: stats.weeklyBlocks[currentWeek] || 0,
-        currentWeekAttempts: stats.weeklyAttempts[currentWeek] || [],
+        currentWeekBlocks: currentWeekHistory.total,
+        currentWeekApps: currentWeekHistory.apps,
         totalBlocks: stats.totalBlocks,
         allWeeklyBlocks: stats.weeklyBlocks,
-        lastBlockedDate: stats.lastBlockedDate
+        lastBlockedDate: stats.lastBlockedDate,
+        history: await AppBlocking.getBlockingHistoryStats()
       };
     } catch (error) {
       console.error('Error getting detailed stats:', error);
@@ -190,27 +217,76 @@ class BlockingStatsService {
    */
   static async getMostBlockedApps(limit = 5) {
     try {
-      const weekStart = this.getCurrentWeekStart();
-      const stats = await this.getStats();
-      const weeklyAttempts = stats.weeklyAttempts[weekStart] || [];
-      
-      // Count attempts per app
-      const appCounts = {};
-      weeklyAttempts.forEach(attempt => {
-        const key = attempt.appName || attempt.packageName || 'Unknown';
-        appCounts[key] = (appCounts[key] || 0) + 1;
-      });
-      
-      // Sort by count and return top apps
-      return Object.entries(appCounts)
-        .sort(([,a], [,b]) => b - a)
-        .slice(0, limit)
-        .map(([appName, count]) => ({ appName, count }));
+      const history = await AppBlocking.getBlockingHistory(this.getCurrentWeekStartTime(), Date.now() + 1, limit);
+      // Attempts are recorded by package; the package name doubles as the display name
+      return history.apps.map(({ packageName, count }) => ({ appName: packageName, packageName, count }));
     } catch (error) {
       console.error('Error getting most blocked apps:', error);
       return [];
     }
   }
+
+  /**
+   * Opt-in switch analytics summary for the stats screen, or null while disabled
+   * @returns {Promise<Object|null>} { switchesLastHour, switchesToday, topApps, unlockToDistraction }
+   */
+  static async getSwitchInsights() {
+    try {
+      if (!(await AppBlocking.isSwitchAnalyticsEnabled())) {
+        return null;
+      }
+      const midnight = new Date();
+      midnight.setHours(0, 0, 0, 0);
+      const hoursToday = Math.floor((Date.now() - midnight.getTime()) / 3600000) + 1;
+      const analytics = await AppBlocking.getSwitchAnalytics(hoursToday, 3);
+      const perHour = analytics.switchesPerHour;
+      return {
+        switchesLastHour: perHour[perHour.length - 1] || 0,
+        switchesToday: perHour.reduce((sum, count) => sum + count, 0),
+        topApps: analytics.topApps,
+        unlockToDistraction: analytics.unlockToDistraction
+      };
+    } catch (error) {
+      console.error('Error getting switch insights:', error);
+      return null;
+    }
+  }
+
+  /**
+   * Opt in to or out of switch analytics
+   * @param {boolean} enabled
+   */
+  static async setSwitchInsightsEnabled(enabled) {
+    try {
+      await AppBlocking.setSwitchAnalyticsEnabled(enabled);
+    } catch (error) {
+      console.error('Error toggling switch analytics:', error);
+    }
+  }
+
+  /**
+   * Blocked attempts per day for the last `days` days, oldest first
+   * @param {number} days - Number of days including today
+   * @returns {Promise<Array<{date: string, count: number}>>}
+   */
+  static async getDailyBlocks(days = 365) {
+    try {
+      const first = new Date();
+      first.setHours(0, 0, 0, 0);
+      first.setDate(first.getDate() - (days - 1));
+      const counts = await AppBlocking.getBlockingDailyCounts(first.getTime(), days);
+      return counts.map((count, index) => {
+        const date = new Date(first);
+        date.setDate(first.getDate() + index);
+        const month = String(date.getMonth() + 1).padStart(2, '0');
+        const day = String(date.getDate()).padStart(2, '0');
+        return { date: `${date.getFullYear()}-${month}-${day}`, count };
+      });
+    } catch (error) {
+      console.error('Error getting daily blocks:', error);
+      return [];
+    }
+  }
 }
 
 export default BlockingStatsService;
@@ -0,0 +1,131 @@
+import { NativeModules } from 'react-native';
+
+// Stored calendar event document; see CalendarEvent in models/CalendarModels
+export interface StoredCalendarEvent {
+  id: string;
+  title: string;
+  date: string; // YYYY-MM-DD
+  time: string; // HH:mm
+  duration?: number; // minutes, defaults to 60
+  priority: 'strict' | 'non-strict';
+  recurrence?: Recurrence; // Only on the stored series, never on expanded occurrences
+  seriesId?: string; // Set on occurrences, whose id is '<seriesId>@<date>'
+  [key: string]: any;
+}
+
+// Repetition rule of a series event, stored once and expanded natively
+export interface Recurrence {
+  frequency: 'daily' | 'weekly';
+  interval?: number; // every n days/weeks, defaults to 1
+  byWeekday?: number[]; // weekly only, 0 = Sunday; defaults to the first date's weekday
+  until?: string; // YYYY-MM-DD, last allowed date
+  count?: number; // maximum occurrences, excluded dates included
+  exceptions?: string[]; // YYYY-MM-DD dates without an occurrence
+}
+
+export interface CalendarExportResult {
+  path: string;
+  events: number;
+  bytes: number;
+}
+
+export interface CalendarImportResult {
+  imported: number;
+  duplicates: number; // Already stored; kept unless replacing
+  invalid: number;
+  bytes: number;
+}
+
+// Payload of the 'CalendarTransferProgress' DeviceEventEmitter event
+export interface CalendarTransferProgress {
+  operation: 'export' | 'import';
+  records: number;
+  done: number; // events for exports, bytes for imports
+  total: number;
+}
+
+interface CalendarEventStoreInterface {
+  /**
+   * All events ordered by start, as a JSON array string
+   */
+  getAllEvents(): Promise<string>;
+
+  /**
+   * Event document as a JSON string, or null if not found
+   */
+  getEvent(eventId: string): Promise<string | null>;
+
+  /**
+   * Events and recurring occurrences starting between two YYYY-MM-DD dates (inclusive), as a JSON array string
+   */
+  getEventsByDateRange(startDate: string, endDate: string): Promise<string>;
+
+  /**
+   * Strict events overlapping [startTime, endTime] (epoch ms, inclusive), as a JSON array string
+   */
+  getStrictEventsOverlapping(startTime: number, endTime: number): Promise<string>;
+
+  /**
+   * First limit events or recurring occurrences starting at or after afterTime, as a JSON array string
+   */
+  getNextOccurrences(afterTime: number, limit: number, strictOnly: boolean): Promise<string>;
+
+  getEventCount(): Promise<number>;
+
+  /**
+   * Insert or replace one event document
+   */
+  putEvent(eventJson: string): Promise<boolean>;
+
+  /**
+   * Insert or replace events in one transaction
+   * @returns Number of events written
+   */
+  putEvents(eventsJson: string): Promise<number>;
+
+  deleteEvent(eventId: string): Promise<boolean>;
+
+  clearAllEvents(): Promise<boolean>;
+
+  /**
+   * One-time import of the legacy AsyncStorage blob
+   * @returns Number of events imported
+   */
+  migrateLegacyEvents(blob: string): Promise<number>;
+
+  /**
+   * Stream every event to an NDJSON file (default: app backups directory)
+   */
+  exportEventsToFile(path: string | null): Promise<CalendarExportResult>;
+
+  /**
+   * Stream events from an NDJSON file, validated per record and committed in chunks
+   */
+  importEventsFromFile(path: string, replace: boolean): Promise<CalendarImportResult>;
+}
+
+const { CalendarEventStore } = NativeModules;
+
+export default CalendarEventStore as CalendarEventStoreInterface;
+
+/**
+ * Strict events overlapping [startTime, endTime], parsed
+ */
+export const getStrictEventsOverlapping = async (
+  startTime: number,
+  endTime: number
+): Promise<StoredCalendarEvent[]> => {
+  const json = await CalendarEventStore.getStrictEventsOverlapping(startTime, endTime);
+  return JSON.parse(json);
+};
+
+/**
+ * Next strict event or occurrence starting at or after afterTime, or null
+ */
+export const getNextStrictOccurrence = async (
+  afterTime: number
+): Promise<StoredCalendarEvent | null> => {
+  const json = await CalendarEventStore.getNextOccurrences(afterTime, 1, true);
+  const [next] = JSON.parse(json);
+  return next || null;
+};
@@ -1,12 +1,15 @@
 /**
  * Calendar Storage Service
  * 
- * Handles all AsyncStorage operations for calendar events and related data.
- * Provides CRUD operations, data migration, and offline persistence.
+ * Handles storage for calendar events and related data.
+ * Events live in the native SQLite store (indexed by start/end/priority);
+ * settings stay in AsyncStorage. Provides CRUD operations and data migration.
  */
 
 import AsyncStorage from '@react-native-async-storage/async-storage';
+import { DeviceEventEmitter } from 'react-native';
 import { CalendarEvent } from '../models/CalendarModels';
+import NativeEventStore from './CalendarEventStore';
 
 const STORAGE_KEYS = {
   EVENTS: '@calendar_events',
@@ -14,7 +17,7 @@ const STORAGE_KEYS = {
   VERSION: '@calendar_version'
 };
 
-const CURRENT_VERSION = '1.0.0';
+const CURRENT_VERSION = '2.0.0'; // 2.0.0: events moved from AsyncStorage to SQLite
 
 class CalendarStorage {
   /**
@@ -36,10 +39,7 @@ class CalendarStorage {
    */
   static async getAllEvents() {
     try {
-      const eventsJson = await AsyncStorage.getItem(STORAGE_KEYS.EVENTS);
-      if (!eventsJson) return [];
-      
-      const events = JSON.parse(eventsJson);
+      const events = JSON.parse(await NativeEventStore.getAllEvents());
       return Array.isArray(events) ? events : [];
     } catch (error) {
       console.error('Error getting all events:', error);
@@ -54,8 +54,7 @@ class CalendarStorage {
    */
   static async getEventsByDate(date) {
     try {
-      const allEvents = await this.getAllEvents();
-      return allEvents.filter(event => event.date === date);
+      return JSON.parse(await NativeEventStore.getEventsByDateRange(date, date));
     } catch (error) {
       console.error('Error getting events by date:', error);
       return [];
@@ -70,10 +69,7 @@ class CalendarStorage {
    */
   static async getEventsByDateRange(startDate, endDate) {
     try {
-      const allEvents = await this.getAllEvents();
-      return allEvents.filter(event => 
-        event.date >= startDate && event.date <= endDate
-      );
+      return JSON.parse(await NativeEventStore.getEventsByDateRange(startDate, endDate));
     } catch (error) {
       console.error('Error getting events by date range:', error);
       return [];
@@ -95,14 +91,8 @@ class CalendarStorage {
         throw new Error(`Event validation failed: ${validation.errors.join(', ')}`);
       }
 
-      // Get existing events
-      const events = await this.getAllEvents();
-      
-      // Add new event
-      events.push(newEvent);
-      
-      // Save back to storage
-      await AsyncStorage.setItem(STORAGE_KEYS.EVENTS, JSON.stringify(events));
+      // Insert the single row; other events are untouched
+      await NativeEventStore.putEvent(JSON.stringify(newEvent));
       
       console.log('Event saved successfully:', newEvent.id);
       return newEvent;
@@ -120,16 +110,15 @@ class CalendarStorage {
    */
   static async updateEvent(eventId, updateData) {
     try {
-      const events = await this.getAllEvents();
-      const eventIndex = events.findIndex(event => event.id === eventId);
+      const existingJson = await NativeEventStore.getEvent(eventId);
       
-      if (eventIndex === -1) {
+      if (!existingJson) {
         throw new Error(`Event with ID ${eventId} not found`);
       }
 
       // Update event with new data
       const updatedEvent = {
-        ...events[eventIndex],
+        ...JSON.parse(existingJson),
         ...updateData,
         updatedAt: new Date().toISOString()
       };
@@ -140,11 +129,8 @@ class CalendarStorage {
         throw new Error(`Event validation failed: ${validation.errors.join(', ')}`);
       }
 
-      // Replace event in array
-      events[eventIndex] = updatedEvent;
-      
-      // Save back to storage
-      await AsyncStorage.setItem(STORAGE_KEYS.EVENTS, JSON.stringify(events));
+      // Replace the stored row
+      await NativeEventStore.putEvent(JSON.stringify(updatedEvent));
       
       console.log('Event updated successfully:', eventId);
       return updatedEvent;
@@ -161,14 +147,11 @@ class CalendarStorage {
    */
   static async deleteEvent(eventId) {
     try {
-      const events = await this.getAllEvents();
-      const filteredEvents = events.filter(event => event.id !== eventId);
+      const deleted = await NativeEventStore.deleteEvent(eventId);
       
-      if (events.length === filteredEvents.length) {
+      if (!deleted) {
         throw new Error(`Event with ID ${eventId} not found`);
       }
-
-      await AsyncStorage.setItem(STORAGE_KEYS.EVENTS, JSON.stringify(filteredEvents));
       
       console.log('Event deleted successfully:', eventId);
       return true;
@@ -184,7 +167,7 @@ class CalendarStorage {
    */
   static async clearAllEvents() {
     try {
-      await AsyncStorage.setItem(STORAGE_KEYS.EVENTS, JSON.stringify([]));
+      await NativeEventStore.clearAllEvents();
       console.log('All events cleared');
       return true;
     } catch (error) {
@@ -242,11 +225,13 @@ class CalendarStorage {
       if (!currentVersion) {
         // First time setup
         await this.migrateFromLegacyStorage();
-        await AsyncStorage.setItem(STORAGE_KEYS.VERSION, CURRENT_VERSION);
       }
       
-      // Future migrations can be added here
-      // if (currentVersion < '2.0.0') { ... }
+      if (currentVersion !== CURRENT_VERSION) {
+        // 1.0.0 kept every event in one AsyncStorage blob
+        await this.migrateEventsToNativeStore();
+        await AsyncStorage.setItem(STORAGE_KEYS.VERSION, CURRENT_VERSION);
+      }
       
     } catch (error) {
       console.error('Error during migration:', error);
@@ -269,13 +254,28 @@ class CalendarStorage {
   }
 
   /**
-   * Export events as JSON (for backup/sync)
-   * @returns {Promise<string>} JSON string of all events
+   * Move the legacy '@calendar_events' blob into the native store, once
+   * The blob is only removed after the native import committed.
+   * @private
+   */
+  static async migrateEventsToNativeStore() {
+    const blob = await AsyncStorage.getItem(STORAGE_KEYS.EVENTS);
+    if (!blob) return;
+    
+    const imported = await NativeEventStore.migrateLegacyEvents(blob);
+    await AsyncStorage.removeItem(STORAGE_KEYS.EVENTS);
+    console.log(`Migrated ${imported} events to the native event store`);
+  }
+
+  /**
+   * Export events to an NDJSON backup file (for backup/sync)
+   * Streamed natively one event per line; the backup is never built as one string.
+   * @param {string|null} path - Target file, defaults to the app's backups directory
+   * @returns {Promise<Object>} { path, events, bytes }
    */
-  static async exportEvents() {
+  static async exportEvents(path = null) {
     try {
-      const events = await this.getAllEvents();
-      return JSON.stringify(events, null, 2);
+      return await NativeEventStore.exportEventsToFile(path);
     } catch (error) {
       console.error('Error exporting events:', error);
       throw error;
@@ -283,45 +283,32 @@ class CalendarStorage {
   }
 
   /**
-   * Import events from JSON (for backup/sync)
-   * @param {string} eventsJson - JSON string of events
+   * Import events from an NDJSON backup file (for backup/sync)
+   * Records are validated one by one and committed in chunks; invalid ones are skipped.
+   * @param {string} path - Backup file written by exportEvents
    * @param {boolean} replace - Whether to replace existing events
-   * @returns {Promise<number>} Number of events imported
+   * @returns {Promise<Object>} { imported, duplicates, invalid, bytes }
    */
-  static async importEvents(eventsJson, replace = false) {
+  static async importEvents(path, replace = false) {
     try {
-      const importedEvents = JSON.parse(eventsJson);
-      
-      if (!Array.isArray(importedEvents)) {
-        throw new Error('Invalid events data format');
-      }
-
-      // Validate all events
-      for (const eventData of importedEvents) {
-        const validation = CalendarEvent.validate(eventData);
-        if (!validation.isValid) {
-          console.warn('Skipping invalid event:', eventData, validation.errors);
-          continue;
-        }
-      }
-
-      let existingEvents = replace ? [] : await this.getAllEvents();
-      
-      // Merge with existing events (avoiding duplicates by ID)
-      const existingIds = new Set(existingEvents.map(e => e.id));
-      const newEvents = importedEvents.filter(e => !existingIds.has(e.id));
-      
-      const finalEvents = [...existingEvents, ...newEvents];
-      
-      await AsyncStorage.setItem(STORAGE_KEYS.EVENTS, JSON.stringify(finalEvents));
-      
-      console.log(`Imported ${newEvents.length} events`);
-      return newEvents.length;
+      const result = await NativeEventStore.importEventsFromFile(path, replace);
+      console.log(`Imported ${result.imported} events (${result.invalid} invalid, ${result.duplicates} duplicates)`);
+      return result;
     } catch (error) {
       console.error('Error importing events:', error);
       throw error;
     }
   }
+
+  /**
+   * Subscribe to export/import progress
+   * @param {Function} callback - Called with { operation, records, done, total }
+   * @returns {Function} Unsubscribe function
+   */
+  static onTransferProgress(callback) {
+    const subscription = DeviceEventEmitter.addListener('CalendarTransferProgress', callback);
+    return () => subscription.remove();
+  }
 }
 
 export default CalendarStorage;
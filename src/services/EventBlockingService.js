@@ -8,18 +8,22 @@
 
 import AsyncStorage from '@react-native-async-storage/async-storage';
 import { AppState, Alert, DeviceEventEmitter } from 'react-native';
-import AppBlocking from './AppBlocking';
+import AppBlocking, { getBlockedCategoriesStrict } from './AppBlocking';
 import BlockingStatsService from './BlockingStatsService';
+import { getStrictEventsOverlapping, getNextStrictOccurrence } from './CalendarEventStore';
 
 class EventBlockingService {
   constructor() {
     this.isMonitoring = false;
     this.monitoringInterval = null;
+    this.nextStartTimer = null; // Fires at the next strict start falling between ticks
     this.currentBlockingEvent = null;
+    this.currentSessionId = null; // Native session id; manual sessions run independently
     this.autoBlockingEnabled = false;
     this.onStatusChangeCallbacks = [];
     this.appStateSubscription = null;
     this.blockingAttemptListener = null;
+    this.sessionsChangedListener = null;
     this.manuallyOverriddenEvents = new Set(); // Track events that were manually overridden
     
     // Initialize service
@@ -41,6 +45,12 @@ class EventBlockingService {
       // Setup callback for individual blocking attempts
       this.setupBlockingAttemptCallback();
       
+      // Follow sessions ended natively so the event's blocking can be restored
+      this.sessionsChangedListener = DeviceEventEmitter.addListener(
+        'AppBlockingSessionsChanged',
+        () => this.syncSessionFromNative()
+      );
+      
       console.log('EventBlockingService initialized');
     } catch (error) {
       console.error('Error initializing EventBlockingService:', error);
@@ -70,6 +80,29 @@ class EventBlockingService {
     }
   }
 
+  /**
+   * Drop the event's session if native code no longer has it, then restart blocking while the event runs
+   */
+  async syncSessionFromNative() {
+    if (!this.currentSessionId) return;
+    const sessionId = this.currentSessionId;
+    try {
+      const sessions = await AppBlocking.getActiveSessions();
+      if (this.currentSessionId !== sessionId || sessions.some(session => session.id === sessionId)) {
+        return;
+      }
+      console.log(`Session for event ${this.currentBlockingEvent?.title} ended outside the service`);
+      this.currentBlockingEvent = null;
+      this.currentSessionId = null;
+      this.notifyStatusChange();
+      if (this.isMonitoring) {
+        await this.checkCurrentEvents();
+      }
+    } catch (error) {
+      console.error('Error syncing event session:', error);
+    }
+  }
+
   /**
    * Setup app state monitoring to handle background/foreground transitions
    */
@@ -122,6 +155,11 @@ class EventBlockingService {
       this.monitoringInterval = null;
     }
     
+    if (this.nextStartTimer) {
+      clearTimeout(this.nextStartTimer);
+      this.nextStartTimer = null;
+    }
+    
     // Stop any active blocking
     if (this.currentBlockingEvent) {
       this.stopEventBlocking();
@@ -135,24 +173,21 @@ class EventBlockingService {
    * Check for currently active events that should trigger blocking
    */
   async checkCurrentEvents() {
-    if (!this.autoBlockingEnabled || !this.events) return;
+    if (!this.autoBlockingEnabled) return;
 
-    const now = new Date();
-    const currentTime = now.getTime();
+    const currentTime = Date.now();
     
-    // Find active events (currently happening)
-    const activeEvents = this.events.filter(event => {
-      if (!event.date || !event.time) return false;
-      
-      // Only block for strict priority events that haven't been manually overridden
-      if (event.priority !== 'strict') return false;
-      if (this.manuallyOverriddenEvents.has(event.id)) return false;
-      
-      const eventDateTime = new Date(`${event.date}T${event.time}`);
-      const eventEndTime = new Date(eventDateTime.getTime() + (event.duration || 60) * 60000); // Default 1 hour duration
-      
-      return currentTime >= eventDateTime.getTime() && currentTime <= eventEndTime.getTime();
-    });
+    // Strict events happening now, from the native index (default 1 hour duration)
+    let activeEvents;
+    try {
+      activeEvents = await getStrictEventsOverlapping(currentTime, currentTime);
+    } catch (error) {
+      console.error('Error querying active events:', error);
+      return;
+    }
+    
+    // Skip events that have been manually overridden
+    activeEvents = activeEvents.filter(event => !this.manuallyOverriddenEvents.has(event.id));
 
     // Handle blocking state changes
     if (activeEvents.length > 0 && !this.currentBlockingEvent) {
@@ -167,6 +202,34 @@ class EventBlockingService {
     } else if (activeEvents.length > 0 && this.currentBlockingEvent) {
       console.log(`${activeEvents.length} active events found, but blocking already active for: ${this.currentBlockingEvent.title}`);
     }
+
+    await this.scheduleNextStart(currentTime);
+  }
+
+  /**
+   * Arm a timer for the next strict event or occurrence if it starts before the next 30s tick
+   * @param {number} afterTime - Time of the check just made
+   */
+  async scheduleNextStart(afterTime) {
+    if (this.nextStartTimer) {
+      clearTimeout(this.nextStartTimer);
+      this.nextStartTimer = null;
+    }
+    try {
+      const next = await getNextStrictOccurrence(afterTime + 1);
+      if (!next || !this.isMonitoring) return;
+      const [year, month, day] = next.date.split('-').map(Number);
+      const [hours, minutes] = next.time.split(':').map(Number);
+      const delay = new Date(year, month - 1, day, hours, minutes).getTime() - Date.now();
+      if (delay < 30000) {
+        this.nextStartTimer = setTimeout(() => {
+          this.nextStartTimer = null;
+          this.checkCurrentEvents();
+        }, Math.max(0, delay));
+      }
+    } catch (error) {
+      console.error('Error querying next strict event:', error);
+    }
   }
 
   /**
@@ -175,10 +238,11 @@ class EventBlockingService {
    */
   async startEventBlocking(event) {
     try {
-      // Check permissions
+      // Either detection backend will do; usage access is the fallback when accessibility is off
       const hasAccessibility = await AppBlocking.isAccessibilityEnabled();
-      if (!hasAccessibility) {
-        console.log('Accessibility permission not granted, cannot start blocking');
+      const hasUsageAccess = hasAccessibility || await AppBlocking.hasUsageAccess();
+      if (!hasAccessibility && !hasUsageAccess) {
+        console.log('Neither accessibility nor usage access granted, cannot start blocking');
         return false;
       }
 
@@ -187,8 +251,13 @@ class EventBlockingService {
       
       console.log('Retrieved selected apps for blocking:', blockedApps);
       
-      // Ensure we have an array and it's not empty
-      if (!Array.isArray(blockedApps) || blockedApps.length === 0) {
+      const blockedCategories = await getBlockedCategoriesStrict();
+      if (!Array.isArray(blockedApps)) {
+        blockedApps = [];
+      }
+      
+      // Ensure the user configured at least one app or category
+      if (blockedApps.length === 0 && blockedCategories.length === 0) {
         console.warn('No apps selected for blocking! User needs to configure app blocking preferences.');
         
         // Show user notification about missing app selection
@@ -207,9 +276,12 @@ class EventBlockingService {
       const remainingSeconds = Math.max(0, Math.floor((eventEndTime.getTime() - now.getTime()) / 1000));
 
       if (remainingSeconds > 0) {
-        const success = await AppBlocking.startBlocking(remainingSeconds, blockedApps);
-        if (success) {
+        const sessionId = await AppBlocking.startBlockingSession(remainingSeconds, blockedApps, {
+          origin: `calendar:${event.id}`,
+        });
+        if (sessionId) {
           this.currentBlockingEvent = event;
+          this.currentSessionId = sessionId;
           console.log(`Started auto-blocking for event: ${event.title} (${remainingSeconds}s remaining)`);
           
           // Note: Individual blocking attempts will be counted via callback
@@ -233,9 +305,13 @@ class EventBlockingService {
    */
   async stopEventBlocking() {
     try {
-      await AppBlocking.stopBlocking();
+      // Only end this event's session so a concurrent manual session keeps running
+      if (this.currentSessionId) {
+        await AppBlocking.stopBlockingSession(this.currentSessionId);
+      }
       const eventTitle = this.currentBlockingEvent?.title || 'Unknown event';
       this.currentBlockingEvent = null;
+      this.currentSessionId = null;
       console.log(`Stopped auto-blocking for event: ${eventTitle}`);
       
       // Show user notification
@@ -308,23 +384,19 @@ class EventBlockingService {
   /**
    * Clean up overridden events that are no longer active
    */
-  cleanupExpiredOverrides() {
-    if (!this.events || this.manuallyOverriddenEvents.size === 0) return;
-    
-    const now = new Date().getTime();
-    const activeEventIds = new Set();
+  async cleanupExpiredOverrides() {
+    if (this.manuallyOverriddenEvents.size === 0) return;
     
-    // Find currently active events
-    this.events.forEach(event => {
-      if (event.date && event.time) {
-        const eventDateTime = new Date(`${event.date}T${event.time}`);
-        const eventEndTime = new Date(eventDateTime.getTime() + (event.duration || 60) * 60000);
-        
-        if (now >= eventDateTime.getTime() && now <= eventEndTime.getTime()) {
-          activeEventIds.add(event.id);
-        }
-      }
-    });
+    const now = Date.now();
+    let activeEventIds;
+    try {
+      // Only strict events are ever overridden
+      const activeEvents = await getStrictEventsOverlapping(now, now);
+      activeEventIds = new Set(activeEvents.map(event => event.id));
+    } catch (error) {
+      console.error('Error querying active events:', error);
+      return;
+    }
     
     // Remove overrides for events that are no longer active
     for (const eventId of this.manuallyOverriddenEvents) {
@@ -371,6 +443,10 @@ class EventBlockingService {
       this.blockingAttemptListener.remove();
       this.blockingAttemptListener = null;
     }
+    if (this.sessionsChangedListener) {
+      this.sessionsChangedListener.remove();
+      this.sessionsChangedListener = null;
+    }
     this.onStatusChangeCallbacks = [];
   }
 
@@ -393,12 +469,13 @@ class EventBlockingService {
 
   /**
    * Check if user has configured app blocking preferences
-   * @returns {boolean} Whether user has selected apps for blocking
+   * @returns {boolean} Whether user has selected apps or categories for blocking
    */
   async hasConfiguredApps() {
     try {
       const selectedApps = await AppBlocking.getSelectedApps();
-      return selectedApps && selectedApps.length > 0;
+      const blockedCategories = await getBlockedCategoriesStrict();
+      return (selectedApps && selectedApps.length > 0) || blockedCategories.length > 0;
     } catch (error) {
       console.error('Error checking configured apps:', error);
       return false;